@@ -0,0 +1,82 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.account.AccountPurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Purchases from every available core with per-account limits enabled. A single stripe behaves as a global lock,
+ * so comparing noOfStripes shows the cost of serializing all accounts against serializing each account. With
+ * SHARED every thread buys for the same account, which is always serialized.
+ * 
+ * Each purchase is for zero tickets so the limit is never reached, while still taking the account's lock.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class AccountPurchaseLimiterBenchmark {
+
+    public enum Accounts {
+        PER_THREAD, SHARED
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedService {
+        @Param({"1", "256"})
+        public int noOfStripes;
+
+        @Param({"PER_THREAD", "SHARED"})
+        public Accounts accounts;
+
+        TicketServiceImpl ticketService;
+        TicketTypeRequest[] requests;
+        final AtomicLong nextAccountId = new AtomicLong(1000);
+
+        @Setup
+        public void setUp() {
+            StubGateway stubGateway = StubGateway.forProfile(StubGateway.Profile.NOOP, 0);
+            ticketService = new TicketServiceImpl();
+            ticketService.ticketPaymentService = stubGateway;
+            ticketService.seatReservationService = stubGateway;
+            ticketService.accountPurchaseLimiter = new AccountPurchaseLimiter(TicketServiceImpl.maxNoOfTicketsPerTransaction,
+                    Duration.ofMinutes(10), AccountPurchaseLimiter.defaultNoOfBuckets, noOfStripes, System::nanoTime);
+            requests = new TicketTypeRequest[] {new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 0)};
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+        Long accountId;
+
+        @Setup
+        public void setUp(SharedService shared) {
+            accountId = (shared.accounts == Accounts.SHARED) ? 999L : shared.nextAccountId.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void purchaseTickets(SharedService shared, ThreadAccount account) {
+        shared.ticketService.purchaseTickets(account.accountId, shared.requests);
+    }
+}
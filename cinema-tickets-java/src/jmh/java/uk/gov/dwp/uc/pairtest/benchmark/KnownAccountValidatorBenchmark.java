@@ -0,0 +1,63 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.dwp.uc.pairtest.account.AccountBloomFilter;
+import uk.gov.dwp.uc.pairtest.account.KnownAccountValidator;
+
+/**
+ * Cost of checking an account against a snapshot of noOfAccounts known accounts. Unknown accounts usually stop at
+ * the first clear bit, while known accounts read every bit. Accounts are taken in turn from a spread of ids, so
+ * lookups miss the cache as they would for a large snapshot in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KnownAccountValidatorBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int noOfAccounts;
+
+    private KnownAccountValidator validator;
+    private long nextAccountId;
+
+    @Setup
+    public void setUp() {
+        long[] accountIds = new long[noOfAccounts];
+        for (int i = 0; i < noOfAccounts; i++) {
+            // Known accounts are even, unknown accounts odd.
+            accountIds[i] = 2L * i;
+        }
+        validator = new KnownAccountValidator(AccountBloomFilter.of(accountIds, AccountBloomFilter.defaultFalsePositiveRate), null);
+    }
+
+    @Benchmark
+    public boolean knownAccount() {
+        return validator.isValidAccount(nextAccountId() & ~1L);
+    }
+
+    @Benchmark
+    public boolean unknownAccount() {
+        return validator.isValidAccount(nextAccountId() | 1L);
+    }
+
+    private long nextAccountId() {
+        nextAccountId = (nextAccountId + 7919) % (2L * noOfAccounts);
+        return nextAccountId;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+
+/**
+ * Journals complete purchases (INTENT, PAID, RESERVED) from many threads. Each purchase waits for its INTENT record
+ * to be durable, so throughput depends on how many purchases share each fsync. The thread count is fixed above the
+ * number of cores because the threads spend most of their time blocked, as purchases waiting on the gateways would.
+ * journalBatch journals purchaseTicketsBatch-sized batches, which wait once per batch.
+ *
+ * A fresh journal is opened for each iteration. capacityInRecords is the size of each segment, so lower it to
+ * include the cost of rolling to new segments and deleting completed ones.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class PurchaseJournalBenchmark {
+
+    static final int batchSize = 100;
+
+    @State(Scope.Benchmark)
+    public static class SharedJournal {
+        @Param({"1000"})
+        public long flushIntervalMicros;
+
+        @Param({"8000000"})
+        public int capacityInRecords;
+
+        Path path;
+        PurchaseJournal journal;
+        long[] accountIds;
+        int[] totalAmountsToPay;
+        int[] totalSeatsToAllocate;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            path = Files.createTempDirectory("purchase-journal");
+            journal = PurchaseJournal.open(path, capacityInRecords, Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros)));
+            accountIds = new long[batchSize];
+            totalAmountsToPay = new int[batchSize];
+            totalSeatsToAllocate = new int[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                accountIds[i] = i + 1;
+                totalAmountsToPay[i] = 2000;
+                totalSeatsToAllocate[i] = 1;
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            journal.close();
+            try (Stream<Path> segments = Files.list(path)) {
+                for (Path segment : (Iterable<Path>) segments::iterator) {
+                    Files.delete(segment);
+                }
+            }
+            Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public void journalPurchase(SharedJournal shared) {
+        long purchaseId = shared.journal.recordIntent(1L, 2000, 1);
+        shared.journal.recordPaid(purchaseId, 1L, 2000, 1);
+        shared.journal.recordReserved(purchaseId, 1L, 2000, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(batchSize)
+    public void journalBatch(SharedJournal shared) {
+        long firstPurchaseId = shared.journal.recordIntents(shared.accountIds, shared.totalAmountsToPay, shared.totalSeatsToAllocate);
+        shared.journal.recordPaid(firstPurchaseId, shared.accountIds, shared.totalAmountsToPay, shared.totalSeatsToAllocate);
+        shared.journal.recordReserved(firstPurchaseId, shared.accountIds, shared.totalAmountsToPay, shared.totalSeatsToAllocate);
+    }
+}
@@ -0,0 +1,77 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+
+/**
+ * Cost of purchasing from an encoded buffer compared with the object path, for purchases arriving as bytes. The
+ * object path has to decode to a PurchaseOrder first, as a caller receiving bytes would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseOrderCodecBenchmark {
+
+    @Param({"3", "20"})
+    public int requestCount;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private TicketServiceImpl ticketService;
+    private ByteBuffer encodedOrder;
+    private PurchaseOrder purchaseOrder;
+
+    @Setup
+    public void setUp() {
+        StubGateway stubGateway = StubGateway.forProfile(StubGateway.Profile.NOOP, 0);
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = stubGateway;
+        ticketService.seatReservationService = stubGateway;
+        purchaseOrder = new PurchaseOrder(1000L, PurchaseRequests.validRequests(requestCount));
+        encodedOrder = direct ? ByteBuffer.allocateDirect(PurchaseOrderCodec.encodedLength)
+                : ByteBuffer.allocate(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(encodedOrder, purchaseOrder);
+    }
+
+    @Benchmark
+    public void purchaseEncoded() {
+        ticketService.purchaseTickets(encodedOrder.flip());
+    }
+
+    @Benchmark
+    public void purchaseDecoded() {
+        PurchaseOrder decoded = PurchaseOrderCodec.decode(encodedOrder.flip());
+        ticketService.purchaseTickets(decoded.getAccountId(), decoded.getTicketTypeRequests());
+    }
+
+    @Benchmark
+    public void purchaseObject() {
+        ticketService.purchaseTickets(purchaseOrder.getAccountId(), purchaseOrder.getTicketTypeRequests());
+    }
+
+    @Benchmark
+    public void encode() {
+        PurchaseOrderCodec.encode(encodedOrder.clear(), purchaseOrder);
+    }
+}
@@ -0,0 +1,30 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Builds the ticket requests used across benchmarks.
+ */
+public final class PurchaseRequests {
+
+    private PurchaseRequests() {
+    }
+
+    /**
+     * Builds a valid purchase of one ticket per request, starting with an adult and then cycling through child,
+     * infant and adult so that every type is exercised.
+     * 
+     * @param requestCount Number of requests, up to TicketServiceImpl.maxNoOfTicketsPerTransaction
+     * @return Ticket requests
+     */
+    public static TicketTypeRequest[] validRequests(int requestCount) {
+        TicketTypeRequest.Type[] cycle = {
+            TicketTypeRequest.Type.ADULT, TicketTypeRequest.Type.CHILD, TicketTypeRequest.Type.INFANT
+        };
+        TicketTypeRequest[] requests = new TicketTypeRequest[requestCount];
+        for (int i = 0; i < requestCount; i++) {
+            requests[i] = new TicketTypeRequest(cycle[i % cycle.length], 1);
+        }
+        return requests;
+    }
+}
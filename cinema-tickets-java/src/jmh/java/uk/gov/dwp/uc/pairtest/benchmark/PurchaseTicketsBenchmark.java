@@ -0,0 +1,66 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+/**
+ * Single-threaded cost of a valid purchase by number of requests and gateway behaviour.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseTicketsBenchmark {
+
+    @Param({"1", "3", "20"})
+    public int requestCount;
+
+    @Param({"NOOP", "LATENCY"})
+    public StubGateway.Profile gateway;
+
+    @Param({"50"})
+    public long latencyMicros;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private TicketServiceImpl ticketService;
+    private TicketTypeRequest[] requests;
+    private Long accountId;
+
+    @Setup
+    public void setUp() {
+        StubGateway stubGateway = StubGateway.forProfile(gateway, latencyMicros);
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = stubGateway;
+        ticketService.seatReservationService = stubGateway;
+        if (metrics) {
+            ticketService.purchaseMetrics = new PurchaseMetrics();
+        }
+        requests = PurchaseRequests.validRequests(requestCount);
+        accountId = 1000L;
+    }
+
+    @Benchmark
+    public void purchaseTickets() {
+        ticketService.purchaseTickets(accountId, requests);
+    }
+}
@@ -0,0 +1,71 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Purchases from every available core against one shared service instance, each thread using its own account.
+ * Use -t on the command line to run with a different number of threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class PurchaseTicketsContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedService {
+        @Param({"NOOP", "LATENCY"})
+        public StubGateway.Profile gateway;
+
+        @Param({"50"})
+        public long latencyMicros;
+
+        TicketServiceImpl ticketService;
+        TicketTypeRequest[] requests;
+        final AtomicLong nextAccountId = new AtomicLong(1000);
+
+        @Setup
+        public void setUp() {
+            StubGateway stubGateway = StubGateway.forProfile(gateway, latencyMicros);
+            ticketService = new TicketServiceImpl();
+            ticketService.ticketPaymentService = stubGateway;
+            ticketService.seatReservationService = stubGateway;
+            requests = PurchaseRequests.validRequests(3);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+        Long accountId;
+
+        @Setup
+        public void setUp(SharedService shared) {
+            accountId = shared.nextAccountId.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void purchaseTickets(SharedService shared, ThreadAccount account) {
+        shared.ticketService.purchaseTickets(account.accountId, shared.requests);
+    }
+}
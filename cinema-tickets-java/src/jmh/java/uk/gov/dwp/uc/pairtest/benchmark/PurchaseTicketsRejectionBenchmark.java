@@ -0,0 +1,106 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+/**
+ * Cost of purchases rejected by the business rules, both thrown by purchaseTickets and returned as an outcome by
+ * tryPurchaseTickets. Rejections happen before any gateway call, so only the no-op gateway is used.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseTicketsRejectionBenchmark {
+
+    private TicketServiceImpl ticketService;
+    private TicketTypeRequest[] validRequests;
+    private TicketTypeRequest[] unaccompaniedRequests;
+    private TicketTypeRequest[] tooManyRequests;
+    private Long validAccountId;
+    private Long invalidAccountId;
+
+    @Setup
+    public void setUp() {
+        StubGateway stubGateway = StubGateway.forProfile(StubGateway.Profile.NOOP, 0);
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = stubGateway;
+        ticketService.seatReservationService = stubGateway;
+        validRequests = PurchaseRequests.validRequests(3);
+        unaccompaniedRequests = new TicketTypeRequest[] {
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+            new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1)
+        };
+        tooManyRequests = new TicketTypeRequest[] {
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, TicketServiceImpl.maxNoOfTicketsPerTransaction),
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)
+        };
+        validAccountId = 1000L;
+        invalidAccountId = -1L;
+    }
+
+    @Benchmark
+    public Object invalidAccount() {
+        return purchase(invalidAccountId, validRequests);
+    }
+
+    @Benchmark
+    public Object unaccompaniedTickets() {
+        return purchase(validAccountId, unaccompaniedRequests);
+    }
+
+    @Benchmark
+    public Object invalidNumberOfTickets() {
+        return purchase(validAccountId, tooManyRequests);
+    }
+
+    @Benchmark
+    public Object tryInvalidAccount() {
+        return tryPurchase(invalidAccountId, validRequests);
+    }
+
+    @Benchmark
+    public Object tryUnaccompaniedTickets() {
+        return tryPurchase(validAccountId, unaccompaniedRequests);
+    }
+
+    @Benchmark
+    public Object tryInvalidNumberOfTickets() {
+        return tryPurchase(validAccountId, tooManyRequests);
+    }
+
+    private Object purchase(Long accountId, TicketTypeRequest[] requests) {
+        try {
+            ticketService.purchaseTickets(accountId, requests);
+        } catch (InvalidPurchaseException e) {
+            return e;
+        }
+        throw new IllegalStateException("Purchase was expected to be rejected");
+    }
+
+    private Object tryPurchase(Long accountId, TicketTypeRequest[] requests) {
+        PurchaseOutcome outcome = ticketService.tryPurchaseTickets(accountId, requests);
+        if (outcome == PurchaseOutcome.SUCCESS) {
+            throw new IllegalStateException("Purchase was expected to be rejected");
+        }
+        return outcome;
+    }
+}
@@ -0,0 +1,80 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.FixedTicketPriceProvider;
+import uk.gov.dwp.uc.pairtest.sales.SalesAggregator;
+
+/**
+ * Overhead of recording sales, from every available core against one shared aggregator. Compare purchaseTickets
+ * with and without sales for the cost per purchase, and recordSale for the cost of the aggregator alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class SalesAggregatorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedService {
+        @Param({"false", "true"})
+        public boolean sales;
+
+        TicketServiceImpl ticketService;
+        SalesAggregator salesAggregator;
+        TicketTypeRequest[] requests;
+        final AtomicLong nextAccountId = new AtomicLong(1000);
+
+        @Setup
+        public void setUp() {
+            StubGateway stubGateway = StubGateway.forProfile(StubGateway.Profile.NOOP, 0);
+            ticketService = new TicketServiceImpl();
+            ticketService.ticketPaymentService = stubGateway;
+            ticketService.seatReservationService = stubGateway;
+            salesAggregator = new SalesAggregator();
+            if (sales) {
+                ticketService.salesAggregator = salesAggregator;
+            }
+            requests = PurchaseRequests.validRequests(3);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+        Long accountId;
+
+        @Setup
+        public void setUp(SharedService shared) {
+            accountId = shared.nextAccountId.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void purchaseTickets(SharedService shared, ThreadAccount account) {
+        shared.ticketService.purchaseTickets(account.accountId, shared.requests);
+    }
+
+    @Benchmark
+    public void recordSale(SharedService shared) {
+        shared.salesAggregator.recordSale(FixedTicketPriceProvider.standardPrices, 1, 1, 1);
+    }
+}
@@ -0,0 +1,57 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.seatbooking.ScreeningSeats;
+
+/**
+ * Booking and releasing blocks of seats from every available core against one screening. Each operation allocates
+ * a block and releases it again, so the venue never fills up. Use -t to compare scaling with fewer threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ScreeningSeatsBenchmark {
+
+    @Param({"50"})
+    public int noOfRows;
+
+    @Param({"40"})
+    public int seatsPerRow;
+
+    @Param({"1", "4", "20"})
+    public int blockSize;
+
+    private ScreeningSeats seats;
+
+    @Setup
+    public void setUp() {
+        seats = new ScreeningSeats(noOfRows, seatsPerRow);
+    }
+
+    @Benchmark
+    public int allocateAndReleaseBlock() {
+        int firstSeat = seats.allocateBlock(blockSize);
+        if (firstSeat >= 0) {
+            seats.releaseBlock(firstSeat, blockSize);
+        }
+        return firstSeat;
+    }
+}
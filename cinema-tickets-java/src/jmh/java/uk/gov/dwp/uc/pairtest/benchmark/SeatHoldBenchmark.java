@@ -0,0 +1,66 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.seatbooking.ScreeningSeats;
+import uk.gov.dwp.uc.pairtest.hold.SeatHold;
+import uk.gov.dwp.uc.pairtest.hold.SeatHoldService;
+
+/**
+ * Holding and releasing seats from every available core while openHolds other holds are waiting to expire. The
+ * cost of each hold and release should not change with the number of open holds.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class SeatHoldBenchmark {
+
+    @Param({"0", "100000"})
+    public int openHolds;
+
+    @Param({"4"})
+    public int blockSize;
+
+    private SeatHoldService seatHoldService;
+
+    @Setup
+    public void setUp() {
+        // Room for every open hold of one seat, plus plenty of rows for the benchmark threads.
+        int noOfRows = openHolds / ScreeningSeats.maxSeatsPerRow + 100;
+        seatHoldService = new SeatHoldService(new ScreeningSeats(noOfRows, ScreeningSeats.maxSeatsPerRow), Duration.ofHours(1));
+        for (int i = 0; i < openHolds; i++) {
+            seatHoldService.hold(i, 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        seatHoldService.close();
+    }
+
+    @Benchmark
+    public SeatHold holdAndRelease() {
+        SeatHold seatHold = seatHoldService.hold(1L, blockSize);
+        seatHoldService.release(seatHold);
+        return seatHold;
+    }
+}
@@ -0,0 +1,78 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.ring.ShardedPurchaseEngine;
+import uk.gov.dwp.uc.pairtest.ring.WaitStrategy;
+
+/**
+ * Throughput of purchases published to the sharded engine by one publisher, by number of shards and wait
+ * strategy. Each invocation publishes a block of purchases spread across accounts and waits for every outcome, so
+ * the score includes the shards' work and not just publishing. Throughput should grow with shards up to the number
+ * of free cores, less one for the publisher.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedPurchaseEngineBenchmark {
+
+    private static final int purchasesPerInvocation = 4096;
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    @Param({"YIELD", "PARK"})
+    public WaitStrategy waitStrategy;
+
+    private final LongAdder completed = new LongAdder();
+    private ShardedPurchaseEngine engine;
+    private long published;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StubGateway stubGateway = StubGateway.forProfile(StubGateway.Profile.NOOP, 0);
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = stubGateway;
+        ticketService.seatReservationService = stubGateway;
+        engine = new ShardedPurchaseEngine(ticketService, shards, waitStrategy,
+                (correlationId, accountId, outcome) -> completed.increment());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(purchasesPerInvocation)
+    public void publishAndComplete() {
+        for (int i = 0; i < purchasesPerInvocation; i++) {
+            long sequence = published++;
+            engine.publish(sequence, sequence & 1023, 2, 1, 1);
+        }
+        while (completed.sum() < published) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+
+/**
+ * Results of the purchases completed over one period of a load test, recorded from the threads completing them.
+ *
+ * Response time is measured from when each purchase was due to start on the load test's schedule, not from when it
+ * actually started. If the service stalls and the load generator falls behind, the purchases that should have
+ * been sent during the stall are still charged with the wait, rather than the stall being hidden by sending fewer
+ * purchases (coordinated omission). Service time, from the actual start, is kept alongside for comparison.
+ */
+public class LoadStats {
+
+    private final long startNanos;
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    private final LatencyHistogram serviceTimes = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public LoadStats(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @param intendedStartNanos When the purchase was due to start
+     * @param actualStartNanos When the purchase was started
+     * @param endNanos When the purchase completed
+     * @param result Result of the purchase, or null if it failed without one
+     */
+    public void record(long intendedStartNanos, long actualStartNanos, long endNanos, PurchaseResult result) {
+        responseTimes.record(endNanos - intendedStartNanos);
+        serviceTimes.record(endNanos - actualStartNanos);
+        if (result == null || result.getFailure() != null) {
+            failed.increment();
+        } else if (result.isSuccessful()) {
+            succeeded.increment();
+        } else if (PurchaseOutcome.forRejection(result.getRejection()) == PurchaseOutcome.GATEWAY_UNAVAILABLE) {
+            unavailable.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public LatencyHistogram getResponseTimes() {
+        return responseTimes;
+    }
+
+    public LatencyHistogram getServiceTimes() {
+        return serviceTimes;
+    }
+
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    /**
+     * @return Purchases rejected for breaking a business rule
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Purchases refused because a gateway was unavailable
+     */
+    public long getUnavailable() {
+        return unavailable.sum();
+    }
+
+    /**
+     * @return Purchases that failed with an exception from a gateway
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getCompleted() {
+        return getSucceeded() + getRejected() + getUnavailable() + getFailed();
+    }
+}
@@ -0,0 +1,245 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.metrics.LatencySnapshot;
+
+/**
+ * Open-loop load and soak test for TicketServiceImpl against stub gateways.
+ *
+ * Purchases are started at a fixed rate on a schedule worked out in advance, whatever the service's response time,
+ * as real customers do not wait for each other. Each purchase goes through purchaseTicketsAsync, so the thread
+ * keeping the schedule never blocks on the gateways. Progress is printed every report interval, and a summary of
+ * everything after the warm up at the end.
+ *
+ * Run with: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="rate=5000 duration=300"
+ */
+public class LoadTest {
+
+    // Purchases due sooner than this are started by spinning rather than parking, which is not precise enough.
+    private static final long spinThresholdNanos = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final long drainTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+    private final LoadTestConfig config;
+    private final TicketServiceImpl ticketService;
+    private final PrintStream out;
+    private final LongAdder inFlight = new LongAdder();
+
+    private volatile LoadStats intervalStats;
+    // Null during warm up.
+    private volatile LoadStats measuredStats;
+
+    public LoadTest(LoadTestConfig config, TicketServiceImpl ticketService, PrintStream out) {
+        this.config = config;
+        this.ticketService = ticketService;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        StubGateway stubGateway = new StubGateway(TimeUnit.MICROSECONDS.toNanos(config.getLatencyMicros()));
+        stubGateway.setSlowCalls(config.getSlowRate(), Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(config.getSlowLatencyMicros())));
+        stubGateway.setFailureRate(config.getFailureRate());
+
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = stubGateway;
+        ticketService.seatReservationService = stubGateway;
+        ticketService.setMaxInFlightGatewayCalls(config.getMaxInFlight());
+
+        new LoadTest(config, ticketService, System.out).run();
+    }
+
+    /**
+     * Runs the warm up and the measured period, then waits for purchases still in flight.
+     *
+     * @return Results of the measured period
+     */
+    public LoadStats run() throws InterruptedException {
+        out.println("Load test " + config);
+        out.println(String.format("%8s %9s %9s %9s %9s %9s %9s %8s %8s %8s %9s %7s %8s",
+                "elapsed", "done/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99", "reject%", "error%",
+                "inflight", "heap MB", "gc", "gc ms"));
+
+        long start = System.nanoTime();
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        intervalStats = new LoadStats(start);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        GcTotals gcTotals = new GcTotals();
+        long reportIntervalNanos = TimeUnit.SECONDS.toNanos(config.getReportIntervalSeconds());
+        reporter.scheduleAtFixedRate(() -> report(start, gcTotals), reportIntervalNanos, reportIntervalNanos, TimeUnit.NANOSECONDS);
+
+        try {
+            generateLoad(start, warmupEnd, end);
+            long drainDeadline = System.nanoTime() + drainTimeoutNanos;
+            while (inFlight.sum() > 0 && System.nanoTime() < drainDeadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            reporter.shutdown();
+            reporter.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        LoadStats measured = measuredStats;
+        summarise(measured, end - warmupEnd);
+        return measured;
+    }
+
+    /**
+     * Starts purchases on schedule until the end. The schedule is fixed from the start time, so if this thread
+     * falls behind it catches up by starting the overdue purchases straight away rather than dropping them.
+     */
+    private void generateLoad(long start, long warmupEnd, long end) {
+        PurchaseMix purchaseMix = new PurchaseMix(config, 42);
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) config.getRate();
+
+        for (long i = 0;; i++) {
+            long intendedStart = start + (long) (i * intervalNanos);
+            if (intendedStart - end >= 0) {
+                return;
+            }
+            if (measuredStats == null && intendedStart - warmupEnd >= 0) {
+                measuredStats = new LoadStats(warmupEnd);
+            }
+
+            long wait = intendedStart - System.nanoTime();
+            if (wait > spinThresholdNanos) {
+                LockSupport.parkNanos(wait - spinThresholdNanos);
+            }
+            while (System.nanoTime() - intendedStart < 0) {
+                Thread.onSpinWait();
+            }
+
+            startPurchase(purchaseMix.next(), intendedStart);
+        }
+    }
+
+    private void startPurchase(PurchaseOrder purchaseOrder, long intendedStart) {
+        LoadStats measured = measuredStats;
+        inFlight.increment();
+        long actualStart = System.nanoTime();
+        ticketService.purchaseTicketsAsync(purchaseOrder.getAccountId(), purchaseOrder.getTicketTypeRequests())
+                .whenComplete((result, failure) -> {
+                    long now = System.nanoTime();
+                    // Counted in the interval it completes in, and in the measured period if it started in it.
+                    intervalStats.record(intendedStart, actualStart, now, result);
+                    if (measured != null) {
+                        measured.record(intendedStart, actualStart, now, result);
+                    }
+                    inFlight.decrement();
+                });
+    }
+
+    private void report(long start, GcTotals gcTotals) {
+        long now = System.nanoTime();
+        LoadStats interval = intervalStats;
+        intervalStats = new LoadStats(now);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long gcCount = gcTotals.getCollectionCount();
+        long gcMillis = gcTotals.getCollectionMillis();
+        LatencySnapshot responseTimes = interval.getResponseTimes().snapshot();
+        LatencySnapshot serviceTimes = interval.getServiceTimes().snapshot();
+        long completed = interval.getCompleted();
+        double seconds = (now - interval.getStartNanos()) / 1e9;
+
+        out.println(String.format("%7ds %9.0f %9.2f %9.2f %9.2f %9.2f %9.2f %8.2f %8.2f %8d %9d %7d %8d",
+                TimeUnit.NANOSECONDS.toSeconds(now - start),
+                completed / seconds,
+                toMillis(responseTimes.getP50Nanos()),
+                toMillis(responseTimes.getP99Nanos()),
+                toMillis(responseTimes.getP999Nanos()),
+                toMillis(responseTimes.getMaxNanos()),
+                toMillis(serviceTimes.getP99Nanos()),
+                percentage(interval.getRejected(), completed),
+                percentage(interval.getFailed() + interval.getUnavailable(), completed),
+                inFlight.sum(),
+                memory.getHeapMemoryUsage().getUsed() / (1024 * 1024),
+                gcCount - gcTotals.lastCount,
+                gcMillis - gcTotals.lastMillis));
+        gcTotals.lastCount = gcCount;
+        gcTotals.lastMillis = gcMillis;
+    }
+
+    private void summarise(LoadStats measured, long measuredNanos) {
+        if (measured == null) {
+            out.println("No purchases were started after the warm up");
+            return;
+        }
+        LatencySnapshot responseTimes = measured.getResponseTimes().snapshot();
+        LatencySnapshot serviceTimes = measured.getServiceTimes().snapshot();
+        long completed = measured.getCompleted();
+
+        out.println();
+        out.println(String.format("Target rate       %d/s, achieved %.0f/s", config.getRate(), completed / (measuredNanos / 1e9)));
+        out.println(String.format("Completed         %d, %d still in flight", completed, inFlight.sum()));
+        out.println(String.format("Succeeded         %d", measured.getSucceeded()));
+        out.println(String.format("Rejected          %d (%.2f%%)", measured.getRejected(), percentage(measured.getRejected(), completed)));
+        out.println(String.format("Unavailable       %d (%.2f%%)", measured.getUnavailable(), percentage(measured.getUnavailable(), completed)));
+        out.println(String.format("Failed            %d (%.2f%%)", measured.getFailed(), percentage(measured.getFailed(), completed)));
+        out.println("Response time ms, from the scheduled start:");
+        printLatencies(responseTimes);
+        out.println("Service time ms, from the actual start:");
+        printLatencies(serviceTimes);
+    }
+
+    private void printLatencies(LatencySnapshot snapshot) {
+        out.println(String.format("  mean %.2f  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f",
+                toMillis(snapshot.getMeanNanos()), toMillis(snapshot.getP50Nanos()), toMillis(snapshot.getP90Nanos()),
+                toMillis(snapshot.getP99Nanos()), toMillis(snapshot.getP999Nanos()), toMillis(snapshot.getMaxNanos())));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static double percentage(long part, long whole) {
+        return (whole == 0) ? 0 : 100.0 * part / whole;
+    }
+
+    /**
+     * Garbage collection totals across every collector, with the totals at the last report.
+     */
+    private static final class GcTotals {
+        long lastCount;
+        long lastMillis;
+
+        long getCollectionCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(collector.getCollectionCount(), 0);
+            }
+            return count;
+        }
+
+        long getCollectionMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(collector.getCollectionTime(), 0);
+            }
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable Object
+ *
+ * Load test options, given on the command line as name=value pairs. Every option has a default:
+ * <pre>
+ *   rate=1000               Purchases started per second, whatever the service's response time
+ *   duration=60             Seconds to run for after warm up
+ *   warmup=10               Seconds to run for before measuring
+ *   reportInterval=5        Seconds between progress lines
+ *   mix=6:3:1               Relative weights of ADULT:CHILD:INFANT tickets after each purchase's first adult
+ *   maxTickets=6            Tickets per valid purchase are spread evenly from 1 to this
+ *   invalidShare=0.05       Fraction of purchases that break a business rule
+ *   accounts=100000         Purchases are spread evenly across account ids from 1 to this
+ *   latencyMicros=2000      Time each gateway call takes
+ *   slowRate=0.01           Fraction of gateway calls that take slowLatencyMicros instead
+ *   slowLatencyMicros=50000 Time each slow gateway call takes
+ *   failureRate=0           Fraction of gateway calls that fail
+ *   maxInFlight=10000       Cap on purchases calling the gateways at once
+ * </pre>
+ */
+public class LoadTestConfig {
+
+    private final Map<String, String> options;
+
+    private LoadTestConfig(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /**
+     * @param args name=value pairs
+     * @return LoadTestConfig
+     * @throws IllegalArgumentException if an option is not known or not name=value.
+     */
+    public static LoadTestConfig parse(String... args) {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        options.put("rate", "1000");
+        options.put("duration", "60");
+        options.put("warmup", "10");
+        options.put("reportInterval", "5");
+        options.put("mix", "6:3:1");
+        options.put("maxTickets", "6");
+        options.put("invalidShare", "0.05");
+        options.put("accounts", "100000");
+        options.put("latencyMicros", "2000");
+        options.put("slowRate", "0.01");
+        options.put("slowLatencyMicros", "50000");
+        options.put("failureRate", "0");
+        options.put("maxInFlight", "10000");
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1 || !options.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + options.keySet());
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        LoadTestConfig config = new LoadTestConfig(options);
+        if (config.getRate() < 1 || config.getMaxTickets() < 1 || config.getAccounts() < 1) {
+            throw new IllegalArgumentException("rate, maxTickets and accounts must be at least one");
+        }
+        config.getMixWeights();
+        return config;
+    }
+
+    public int getRate() {
+        return Integer.parseInt(options.get("rate"));
+    }
+
+    public int getDurationSeconds() {
+        return Integer.parseInt(options.get("duration"));
+    }
+
+    public int getWarmupSeconds() {
+        return Integer.parseInt(options.get("warmup"));
+    }
+
+    public int getReportIntervalSeconds() {
+        return Integer.parseInt(options.get("reportInterval"));
+    }
+
+    /**
+     * @return Weights of ADULT, CHILD and INFANT tickets, in TicketTypeRequest.Type order
+     */
+    public int[] getMixWeights() {
+        String[] parts = options.get("mix").split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("mix must be ADULT:CHILD:INFANT weights");
+        }
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Integer.parseInt(parts[i]);
+        }
+        return weights;
+    }
+
+    public int getMaxTickets() {
+        return Integer.parseInt(options.get("maxTickets"));
+    }
+
+    public double getInvalidShare() {
+        return Double.parseDouble(options.get("invalidShare"));
+    }
+
+    public int getAccounts() {
+        return Integer.parseInt(options.get("accounts"));
+    }
+
+    public long getLatencyMicros() {
+        return Long.parseLong(options.get("latencyMicros"));
+    }
+
+    public double getSlowRate() {
+        return Double.parseDouble(options.get("slowRate"));
+    }
+
+    public long getSlowLatencyMicros() {
+        return Long.parseLong(options.get("slowLatencyMicros"));
+    }
+
+    public double getFailureRate() {
+        return Double.parseDouble(options.get("failureRate"));
+    }
+
+    public int getMaxInFlight() {
+        return Integer.parseInt(options.get("maxInFlight"));
+    }
+
+    @Override
+    public String toString() {
+        return options.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import java.util.Random;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Generates synthetic purchases for the load test.
+ *
+ * A valid purchase has between one and maxTickets tickets: the first is always an adult, and each of the rest is
+ * drawn from the mix weights. An invalid purchase breaks one business rule, chosen evenly from an invalid account,
+ * too many tickets and children without an adult.
+ */
+public class PurchaseMix {
+
+    private static final TicketTypeRequest.Type[] types = TicketTypeRequest.Type.values();
+
+    private final Random random;
+    private final int[] cumulativeWeights;
+    private final int maxTickets;
+    private final double invalidShare;
+    private final int accounts;
+
+    /**
+     * @param config Load test options
+     * @param seed Seed for the random choices, so that a run can be repeated
+     */
+    public PurchaseMix(LoadTestConfig config, long seed) {
+        this.random = new Random(seed);
+        int[] weights = config.getMixWeights();
+        this.cumulativeWeights = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        if (total < 1) {
+            throw new IllegalArgumentException("mix must have a positive weight");
+        }
+        this.maxTickets = Math.min(config.getMaxTickets(), TicketServiceImpl.maxNoOfTicketsPerTransaction);
+        this.invalidShare = config.getInvalidShare();
+        this.accounts = config.getAccounts();
+    }
+
+    /**
+     * Not thread safe, call from the thread starting the purchases.
+     *
+     * @return The next purchase
+     */
+    public PurchaseOrder next() {
+        long accountId = 1 + random.nextInt(accounts);
+        if (random.nextDouble() < invalidShare) {
+            return nextInvalid(accountId);
+        }
+
+        int[] counts = new int[types.length];
+        counts[TicketTypeRequest.Type.ADULT.ordinal()] = 1;
+        int noOfTickets = 1 + random.nextInt(maxTickets);
+        for (int i = 1; i < noOfTickets; i++) {
+            counts[nextType()]++;
+        }
+
+        int noOfRequests = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                noOfRequests++;
+            }
+        }
+        TicketTypeRequest[] ticketTypeRequests = new TicketTypeRequest[noOfRequests];
+        int request = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                ticketTypeRequests[request++] = new TicketTypeRequest(types[i], counts[i]);
+            }
+        }
+        return new PurchaseOrder(accountId, ticketTypeRequests);
+    }
+
+    private int nextType() {
+        int choice = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int type = 0;
+        while (choice >= cumulativeWeights[type]) {
+            type++;
+        }
+        return type;
+    }
+
+    private PurchaseOrder nextInvalid(long accountId) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return new PurchaseOrder(-accountId, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+            case 1:
+                return new PurchaseOrder(accountId,
+                        new TicketTypeRequest(TicketTypeRequest.Type.ADULT, TicketServiceImpl.maxNoOfTicketsPerTransaction + 1));
+            default:
+                return new PurchaseOrder(accountId, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package thirdparty.paymentgateway;
+
+public interface BatchTicketPaymentService {
+
+    /**
+     * Takes a payment for each account, where accountIds[i] pays totalAmountsToPay[i].
+     * 
+     * Returns null if every payment was taken, otherwise an array where element i is the exception payment i
+     * failed with, or null if it was taken. Throwing means it is not known which payments were taken.
+     */
+    RuntimeException[] makePayments(long[] accountIds, int[] totalAmountsToPay);
+
+}
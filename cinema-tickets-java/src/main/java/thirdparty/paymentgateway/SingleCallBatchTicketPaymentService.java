@@ -0,0 +1,31 @@
+package thirdparty.paymentgateway;
+
+/**
+ * Adapts a TicketPaymentService that only takes one payment per call to the batch interface. A payment that fails
+ * does not stop the payments after it being taken.
+ */
+public class SingleCallBatchTicketPaymentService implements BatchTicketPaymentService {
+
+    private final TicketPaymentService ticketPaymentService;
+
+    public SingleCallBatchTicketPaymentService(TicketPaymentService ticketPaymentService) {
+        this.ticketPaymentService = ticketPaymentService;
+    }
+
+    @Override
+    public RuntimeException[] makePayments(long[] accountIds, int[] totalAmountsToPay) {
+        RuntimeException[] failures = null;
+        for (int i = 0; i < accountIds.length; i++) {
+            try {
+                ticketPaymentService.makePayment(accountIds[i], totalAmountsToPay[i]);
+            } catch (RuntimeException e) {
+                if (failures == null) {
+                    failures = new RuntimeException[accountIds.length];
+                }
+                failures[i] = e;
+            }
+        }
+        return failures;
+    }
+
+}
@@ -0,0 +1,13 @@
+package thirdparty.seatbooking;
+
+public interface BatchSeatReservationService {
+
+    /**
+     * Reserves seats for each account, where accountIds[i] is allocated totalSeatsToAllocate[i] seats.
+     * 
+     * Returns null if every reservation was made, otherwise an array where element i is the exception reservation
+     * i failed with, or null if it was made. Throwing means it is not known which reservations were made.
+     */
+    RuntimeException[] reserveSeats(long[] accountIds, int[] totalSeatsToAllocate);
+
+}
@@ -0,0 +1,47 @@
+package thirdparty.seatbooking;
+
+/**
+ * SeatReservationService allocating seats for one screening from an in-process ScreeningSeats map.
+ * Each reservation is given adjacent seats in a single row.
+ */
+public class InventorySeatReservationService implements SeatReservationService {
+
+    private final ScreeningSeats screeningSeats;
+
+    public InventorySeatReservationService(ScreeningSeats screeningSeats) {
+        this.screeningSeats = screeningSeats;
+    }
+
+    /**
+     * @throws SeatsUnavailableException if no row has enough adjacent free seats.
+     */
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        reserveBlock(accountId, totalSeatsToAllocate);
+    }
+
+    /**
+     * Reserves adjacent seats, returning where they are so that they can later be released with
+     * ScreeningSeats.releaseBlock.
+     * 
+     * @param accountId Account the seats are for
+     * @param totalSeatsToAllocate Number of seats
+     * @return Number of the first seat reserved, or -1 if no seats were requested.
+     * @throws SeatsUnavailableException if no row has enough adjacent free seats.
+     */
+    public int reserveBlock(long accountId, int totalSeatsToAllocate) {
+        if (totalSeatsToAllocate == 0) {
+            return -1;
+        }
+
+        int firstSeat = -1;
+        if (totalSeatsToAllocate <= screeningSeats.getSeatsPerRow()) {
+            firstSeat = screeningSeats.allocateBlock(totalSeatsToAllocate);
+        }
+        if (firstSeat < 0) {
+            throw new SeatsUnavailableException("No block of " + totalSeatsToAllocate + " seats available for account " + accountId);
+        }
+        return firstSeat;
+    }
+
+}
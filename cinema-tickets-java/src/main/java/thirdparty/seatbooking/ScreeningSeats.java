@@ -0,0 +1,178 @@
+package thirdparty.seatbooking;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free seat map for a single screening.
+ * 
+ * Each row of the venue is one 64 bit word, with a set bit for each allocated seat. A contiguous block of seats
+ * always lies within one row, so allocating or releasing a block is a single compare-and-set on that row's word,
+ * and other threads see either none or all of the block. This limits rows to 64 seats, but venues of any number of
+ * rows can be held in a few words per hundred seats. There is no shared count of seats remaining for every
+ * booking to update; it is counted from the rows' words when asked for.
+ * 
+ * Seats are numbered from zero, row by row, so seat n is in row n / seatsPerRow.
+ */
+public class ScreeningSeats {
+
+    public static final int maxSeatsPerRow = Long.SIZE;
+
+    private final int noOfRows;
+    private final int seatsPerRow;
+    private final long fullRow;
+    private final AtomicLongArray rows;
+
+    public ScreeningSeats(int noOfRows, int seatsPerRow) {
+        if (noOfRows < 1) {
+            throw new IllegalArgumentException("noOfRows must be at least one");
+        }
+        if (seatsPerRow < 1 || seatsPerRow > maxSeatsPerRow) {
+            throw new IllegalArgumentException("seatsPerRow must be between 1 and " + maxSeatsPerRow);
+        }
+        this.noOfRows = noOfRows;
+        this.seatsPerRow = seatsPerRow;
+        this.fullRow = getBlockMask(seatsPerRow, 0);
+        this.rows = new AtomicLongArray(noOfRows);
+    }
+
+    public int getCapacity() {
+        return noOfRows * seatsPerRow;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    /**
+     * Counts the free seats row by row, so while seats are being allocated or released the total may mix rows read
+     * before and after a change, but each row's count is exact.
+     * 
+     * @return Number of seats not allocated
+     */
+    public int getRemainingSeats() {
+        int allocatedSeats = 0;
+        for (int row = 0; row < noOfRows; row++) {
+            allocatedSeats += Long.bitCount(rows.get(row));
+        }
+        return getCapacity() - allocatedSeats;
+    }
+
+    /**
+     * Allocates a block of adjacent seats in the same row.
+     * 
+     * The search starts from a random row so that concurrent bookings spread across the venue rather than all
+     * competing for the first row with space.
+     * 
+     * @param noOfSeats Size of the block, between 1 and seatsPerRow
+     * @return Number of the first seat in the block, or -1 if no row has enough adjacent free seats.
+     */
+    public int allocateBlock(int noOfSeats) {
+        if (noOfSeats < 1 || noOfSeats > seatsPerRow) {
+            throw new IllegalArgumentException("noOfSeats must be between 1 and " + seatsPerRow);
+        }
+
+        int startRow = ThreadLocalRandom.current().nextInt(noOfRows);
+        for (int i = 0; i < noOfRows; i++) {
+            int row = startRow + i;
+            if (row >= noOfRows) {
+                row -= noOfRows;
+            }
+
+            int firstSeatInRow = allocateBlockInRow(row, noOfSeats);
+            if (firstSeatInRow >= 0) {
+                return row * seatsPerRow + firstSeatInRow;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Releases a block of seats previously returned by allocateBlock.
+     * 
+     * @param firstSeat Number of the first seat in the block
+     * @param noOfSeats Size of the block
+     * @throws IllegalArgumentException if the block is outside the venue or spans rows.
+     * @throws IllegalStateException if any seat in the block is not allocated.
+     */
+    public void releaseBlock(int firstSeat, int noOfSeats) {
+        int row = firstSeat / seatsPerRow;
+        int firstSeatInRow = firstSeat % seatsPerRow;
+        if (firstSeat < 0 || row >= noOfRows || noOfSeats < 1 || firstSeatInRow + noOfSeats > seatsPerRow) {
+            throw new IllegalArgumentException("Block of " + noOfSeats + " from seat " + firstSeat + " is not within one row");
+        }
+
+        long block = getBlockMask(noOfSeats, firstSeatInRow);
+        while (true) {
+            long allocated = rows.get(row);
+            if ((allocated & block) != block) {
+                throw new IllegalStateException("Block of " + noOfSeats + " from seat " + firstSeat + " is not allocated");
+            }
+            if (rows.compareAndSet(row, allocated, allocated & ~block)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param seat Seat number
+     * @return true if the seat is currently allocated.
+     * @throws IllegalArgumentException if the seat is outside the venue.
+     */
+    public boolean isAllocated(int seat) {
+        if (seat < 0 || seat >= getCapacity()) {
+            throw new IllegalArgumentException("Seat " + seat + " is not within the venue");
+        }
+        return (rows.get(seat / seatsPerRow) & (1L << (seat % seatsPerRow))) != 0;
+    }
+
+    /**
+     * Finds and claims a run of free seats within a row, retrying if another thread changes the row in between.
+     * 
+     * @param row Row number
+     * @param noOfSeats Size of the block
+     * @return Position of the first seat within the row, or -1 if the row has no run long enough.
+     */
+    private int allocateBlockInRow(int row, int noOfSeats) {
+        while (true) {
+            long allocated = rows.get(row);
+            if (allocated == fullRow) {
+                return -1;
+            }
+
+            int firstSeatInRow = findFreeRun(~allocated & fullRow, noOfSeats);
+            if (firstSeatInRow < 0) {
+                return -1;
+            }
+            if (rows.compareAndSet(row, allocated, allocated | getBlockMask(noOfSeats, firstSeatInRow))) {
+                return firstSeatInRow;
+            }
+        }
+    }
+
+    /**
+     * Finds the lowest position at which the free bits contain a run of the given length.
+     * 
+     * After the loop, bit p of runStarts is set only if bits p to p + covered - 1 are all free. Each pass doubles
+     * the length covered, so the search takes O(log noOfSeats) steps whatever the row length.
+     * 
+     * @param free Bit set of free seats in a row
+     * @param noOfSeats Run length
+     * @return Position of the start of the run, or -1 if there is none.
+     */
+    private static int findFreeRun(long free, int noOfSeats) {
+        long runStarts = free;
+        int covered = 1;
+        while (covered < noOfSeats && runStarts != 0) {
+            int shift = Math.min(covered, noOfSeats - covered);
+            runStarts &= runStarts >>> shift;
+            covered += shift;
+        }
+        return runStarts == 0 ? -1 : Long.numberOfTrailingZeros(runStarts);
+    }
+
+    private static long getBlockMask(int noOfSeats, int firstSeatInRow) {
+        long block = (noOfSeats == Long.SIZE) ? -1L : (1L << noOfSeats) - 1;
+        return block << firstSeatInRow;
+    }
+}
@@ -0,0 +1,54 @@
+package thirdparty.seatbooking;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process seat inventory holding a ScreeningSeats map for each screening.
+ */
+public class SeatInventory {
+
+    private final ConcurrentMap<Long, ScreeningSeats> screenings = new ConcurrentHashMap<Long, ScreeningSeats>();
+
+    /**
+     * Adds a screening with every seat free.
+     * 
+     * @param screeningId Screening id
+     * @param noOfRows Rows in the venue
+     * @param seatsPerRow Seats in each row, at most ScreeningSeats.maxSeatsPerRow
+     * @return Seat map for the screening
+     * @throws IllegalStateException if the screening already exists.
+     */
+    public ScreeningSeats addScreening(long screeningId, int noOfRows, int seatsPerRow) {
+        ScreeningSeats seats = new ScreeningSeats(noOfRows, seatsPerRow);
+        if (screenings.putIfAbsent(screeningId, seats) != null) {
+            throw new IllegalStateException("Screening " + screeningId + " already exists");
+        }
+        return seats;
+    }
+
+    /**
+     * @param screeningId Screening id
+     * @return Seat map for the screening
+     * @throws IllegalArgumentException if the screening does not exist.
+     */
+    public ScreeningSeats getScreening(long screeningId) {
+        ScreeningSeats seats = screenings.get(screeningId);
+        if (seats == null) {
+            throw new IllegalArgumentException("Screening " + screeningId + " does not exist");
+        }
+        return seats;
+    }
+
+    public void removeScreening(long screeningId) {
+        screenings.remove(screeningId);
+    }
+
+    /**
+     * @param screeningId Screening id
+     * @return Seats not yet allocated for the screening
+     */
+    public int getRemainingSeats(long screeningId) {
+        return getScreening(screeningId).getRemainingSeats();
+    }
+}
@@ -0,0 +1,12 @@
+package thirdparty.seatbooking;
+
+/**
+ * Thrown when a screening has no block of adjacent free seats large enough for a reservation.
+ */
+public class SeatsUnavailableException extends RuntimeException {
+
+    public SeatsUnavailableException(String message) {
+        super(message);
+    }
+
+}
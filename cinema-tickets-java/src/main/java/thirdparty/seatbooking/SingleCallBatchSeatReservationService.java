@@ -0,0 +1,31 @@
+package thirdparty.seatbooking;
+
+/**
+ * Adapts a SeatReservationService that only makes one reservation per call to the batch interface. A reservation
+ * that fails does not stop the reservations after it being made.
+ */
+public class SingleCallBatchSeatReservationService implements BatchSeatReservationService {
+
+    private final SeatReservationService seatReservationService;
+
+    public SingleCallBatchSeatReservationService(SeatReservationService seatReservationService) {
+        this.seatReservationService = seatReservationService;
+    }
+
+    @Override
+    public RuntimeException[] reserveSeats(long[] accountIds, int[] totalSeatsToAllocate) {
+        RuntimeException[] failures = null;
+        for (int i = 0; i < accountIds.length; i++) {
+            try {
+                seatReservationService.reserveSeat(accountIds[i], totalSeatsToAllocate[i]);
+            } catch (RuntimeException e) {
+                if (failures == null) {
+                    failures = new RuntimeException[accountIds.length];
+                }
+                failures[i] = e;
+            }
+        }
+        return failures;
+    }
+
+}
@@ -1,5 +1,11 @@
 package uk.gov.dwp.uc.pairtest;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
 
@@ -7,4 +13,52 @@ public interface TicketService {
 
     void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException;
 
+    /**
+     * Purchases tickets for a purchase encoded by PurchaseOrderCodec, reading it in place at the buffer's position.
+     * The position is moved past the purchase whether or not it is valid.
+     * 
+     * @param encodedOrder Buffer positioned at an encoded purchase
+     * @throws java.nio.BufferUnderflowException if fewer than PurchaseOrderCodec.encodedLength bytes remain.
+     */
+    void purchaseTickets(ByteBuffer encodedOrder) throws InvalidPurchaseException;
+
+    /**
+     * Purchases tickets as purchaseTickets does, but reports a rejection as its outcome instead of throwing, for
+     * callers where rejections are common enough that throwing would dominate the cost of the purchase.
+     * 
+     * @param accountId
+     * @param ticketTypeRequests
+     * @return SUCCESS, or the reason the purchase was rejected. A failing gateway call is still thrown.
+     */
+    PurchaseOutcome tryPurchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests);
+
+    /**
+     * Purchases tickets for an encoded purchase as purchaseTickets does, but reports a rejection as its outcome
+     * instead of throwing.
+     * 
+     * @param encodedOrder Buffer positioned at an encoded purchase
+     * @return SUCCESS, or the reason the purchase was rejected. A failing gateway call is still thrown.
+     * @throws java.nio.BufferUnderflowException if fewer than PurchaseOrderCodec.encodedLength bytes remain.
+     */
+    PurchaseOutcome tryPurchaseTickets(ByteBuffer encodedOrder);
+
+    /**
+     * Purchases tickets for many orders at once, with payments and reservations for all valid orders made together.
+     * 
+     * @param purchaseOrders Orders to purchase
+     * @return Result for each order, in the same order as purchaseOrders. An order a gateway fails has the failure
+     *         in its result, and the other orders are still purchased.
+     */
+    PurchaseResult[] purchaseTicketsBatch(PurchaseOrder... purchaseOrders);
+
+    /**
+     * Purchases tickets without blocking the calling thread on the payment and seat reservation calls.
+     * 
+     * @param accountId
+     * @param ticketTypeRequests
+     * @return Future completed with the result of the purchase, including rejections by the business rules. It
+     *         completes exceptionally only if a gateway call fails.
+     */
+    CompletableFuture<PurchaseResult> purchaseTicketsAsync(Long accountId, TicketTypeRequest... ticketTypeRequests);
+
 }
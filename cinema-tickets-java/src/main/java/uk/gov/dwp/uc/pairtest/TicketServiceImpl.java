@@ -1,125 +1,1002 @@
 package uk.gov.dwp.uc.pairtest;
 
-import java.util.HashMap;
-import java.util.Map;
-import javax.inject.Inject;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+import thirdparty.paymentgateway.SingleCallBatchTicketPaymentService;
 import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.BatchSeatReservationService;
 import thirdparty.seatbooking.SeatReservationService;
+import thirdparty.seatbooking.SeatsUnavailableException;
+import thirdparty.seatbooking.SingleCallBatchSeatReservationService;
+import uk.gov.dwp.uc.pairtest.account.AccountPurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.account.AccountValidator;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
 import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
-import uk.gov.dwp.uc.pairtest.exception.InvalidTicketTypeException;
-import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.hold.SeatHold;
+import uk.gov.dwp.uc.pairtest.hold.SeatHoldExpiredException;
+import uk.gov.dwp.uc.pairtest.hold.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+import uk.gov.dwp.uc.pairtest.pricing.FixedTicketPriceProvider;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPriceProvider;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+import uk.gov.dwp.uc.pairtest.sales.SalesAggregator;
 
 
 public class TicketServiceImpl implements TicketService {
-    @Inject
+    // Called directly on the purchasing thread, so wrap them in ResilientTicketPaymentService and
+    // ResilientSeatReservationService to keep a slow or failing gateway from holding up every purchase. Passed to
+    // the constructor rather than injected by reflection, so the service starts the same way in a native image.
     public TicketPaymentService ticketPaymentService;
-    @Inject
     public SeatReservationService seatReservationService;
 
+    // Optional batch capable gateways used by purchaseTicketsBatch. When not set, the single call services above are
+    // used once per order instead.
+    public BatchTicketPaymentService batchTicketPaymentService;
+    public BatchSeatReservationService batchSeatReservationService;
+
+    // Optional limit on tickets per account across concurrent purchases. When not set, the maximum number of tickets
+    // only applies within each purchase.
+    public AccountPurchaseLimiter accountPurchaseLimiter;
+
+    // Optional check that an account exists and is open. Its in-memory part is made with the business rules on the
+    // caller's thread, and the full check just before payment, on the virtual thread for purchaseTicketsAsync. Use
+    // a KnownAccountValidator so unknown accounts are rejected from memory. When not set, any non-negative account
+    // id is accepted and unknown accounts fail at the payment gateway.
+    public AccountValidator accountValidator;
+
+    // Optional latency and outcome recording. When not set, purchases do not read the clock at all.
+    public PurchaseMetrics purchaseMetrics;
+
+    // Optional live tickets sold and revenue per type of ticket over time, for dashboards. When not set, nothing is
+    // recorded.
+    public SalesAggregator salesAggregator;
+
+    // Optional record of each purchase's progress, so that purchases paid for but not reserved can be recovered
+    // after a crash. When not set, nothing is recorded.
+    public PurchaseJournal purchaseJournal;
+
+    // Optional two-phase reservation for purchaseTickets and purchaseTicketsAsync. When set, seats are held before
+    // payment and the hold confirmed after it, instead of reserving through seatReservationService once paid.
+    public SeatHoldService seatHoldService;
+
     public static final int maxNoOfTicketsPerTransaction = 20;
 
-    private static final int adultTicketPrice = 2000;
-    private static final int childTicketPrice = 1000;
-    private static final int infantTicketPrice = 0;
+    // Default cap on purchases from purchaseTicketsAsync that are calling the gateways at the same time.
+    public static final int defaultMaxInFlightGatewayCalls = 10000;
+
+    // Prices are read once per purchase, so a provider that makes a remote call should be wrapped in a
+    // CachingTicketPriceProvider.
+    public TicketPriceProvider ticketPriceProvider = new FixedTicketPriceProvider();
+
+    // Decision table verdicts, stored as negative values so that any non-negative entry is a total price.
+    private static final int verdictUnaccompanied = -1;
+
+    // Cached so that unpacking a rejection from a validate method does not copy the values array.
+    private static final PurchaseOutcome[] outcomes = PurchaseOutcome.values();
+
+    // Every valid (adult, child, infants present) combination under maxNoOfTicketsPerTransaction for the standard
+    // prices, built once at class load. See getDecisionTableIndex for the layout.
+    private static final DecisionTable standardDecisionTable = new DecisionTable(FixedTicketPriceProvider.standardPrices);
+
+    // Rebuilt only when the prices from ticketPriceProvider change.
+    private volatile DecisionTable decisionTable = standardDecisionTable;
+
+    // Replaced as a whole when the cap changes, so purchases already holding a permit release it to the semaphore
+    // they acquired it from.
+    private volatile Semaphore inFlightGatewayCalls = new Semaphore(defaultMaxInFlightGatewayCalls);
+
+    /**
+     * Creates a service with no gateways, for callers that set the gateway fields themselves.
+     */
+    public TicketServiceImpl() {
+    }
+
+    public TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService) {
+        this(ticketPaymentService, seatReservationService, null, null);
+    }
+
+    /**
+     * @param ticketPaymentService
+     * @param seatReservationService
+     * @param batchTicketPaymentService Batch payments for purchaseTicketsBatch, or null to call ticketPaymentService
+     *        once per order
+     * @param batchSeatReservationService Batch reservations for purchaseTicketsBatch, or null to call
+     *        seatReservationService once per order
+     */
+    public TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+            BatchTicketPaymentService batchTicketPaymentService, BatchSeatReservationService batchSeatReservationService) {
+        this.ticketPaymentService = ticketPaymentService;
+        this.seatReservationService = seatReservationService;
+        this.batchTicketPaymentService = batchTicketPaymentService;
+        this.batchSeatReservationService = batchSeatReservationService;
+    }
 
     /**
-     * Should only have private methods other than the one below.
+     * Should only have private methods other than the ones below.
      */
 
     @Override
     public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        throwIfRejected(tryPurchaseTickets(accountId, ticketTypeRequests));
+    }
+
+    @Override
+    public void purchaseTickets(ByteBuffer encodedOrder) throws InvalidPurchaseException {
+        throwIfRejected(tryPurchaseTickets(encodedOrder));
+    }
+
+    @Override
+    public PurchaseOutcome tryPurchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        PurchaseMetrics metrics = getEnabledMetrics();
+        long stageStart = (metrics == null) ? 0 : System.nanoTime();
+        PurchaseOutcome outcome;
+        try {
+            DecisionTable pricedDecisionTable = getDecisionTable();
+            stageStart = recordStageLatency(metrics, PurchaseStage.PRICING, stageStart);
+
+            long validatedPurchase = validatePurchase(pricedDecisionTable, accountId, ticketTypeRequests);
+            if (validatedPurchase < 0) {
+                recordStageLatency(metrics, PurchaseStage.VALIDATION, stageStart);
+                outcome = getRejectionOutcome(validatedPurchase);
+            } else {
+                outcome = purchaseValidated(metrics, stageStart, accountId, validatedPurchase);
+            }
+            if (outcome == PurchaseOutcome.SUCCESS) {
+                recordSale(pricedDecisionTable.ticketPrices, ticketTypeRequests);
+            }
+        } catch (InvalidPurchaseException e) {
+            // Refused by a gateway that is unavailable, which is reported like any other rejection.
+            outcome = PurchaseOutcome.forRejection(e);
+        } catch (RuntimeException e) {
+            recordOutcome(metrics, PurchaseOutcome.GATEWAY_FAILURE);
+            throw e;
+        }
+        recordOutcome(metrics, outcome);
+        return outcome;
+    }
+
+    @Override
+    public PurchaseOutcome tryPurchaseTickets(ByteBuffer encodedOrder) {
+        // The buffer is moved past the purchase before anything is checked, so a rejected purchase does not stop
+        // the caller reading the next one. Fields are then read in place, without decoding to request objects.
+        int offset = encodedOrder.position();
+        if (encodedOrder.remaining() < PurchaseOrderCodec.encodedLength) {
+            throw new BufferUnderflowException();
+        }
+        encodedOrder.position(offset + PurchaseOrderCodec.encodedLength);
+        long accountId = PurchaseOrderCodec.getAccountId(encodedOrder, offset);
+
+        PurchaseMetrics metrics = getEnabledMetrics();
+        long stageStart = (metrics == null) ? 0 : System.nanoTime();
+        PurchaseOutcome outcome;
+        try {
+            DecisionTable pricedDecisionTable = getDecisionTable();
+            stageStart = recordStageLatency(metrics, PurchaseStage.PRICING, stageStart);
+
+            int noOfAdultTickets = PurchaseOrderCodec.getNoOfAdultTickets(encodedOrder, offset);
+            int noOfChildTickets = PurchaseOrderCodec.getNoOfChildTickets(encodedOrder, offset);
+            int noOfInfantTickets = PurchaseOrderCodec.getNoOfInfantTickets(encodedOrder, offset);
+            long validatedPurchase = validateEncodedPurchase(pricedDecisionTable, accountId, noOfAdultTickets,
+                    noOfChildTickets, noOfInfantTickets);
+            if (validatedPurchase < 0) {
+                recordStageLatency(metrics, PurchaseStage.VALIDATION, stageStart);
+                outcome = getRejectionOutcome(validatedPurchase);
+            } else {
+                outcome = purchaseValidated(metrics, stageStart, accountId, validatedPurchase);
+            }
+            SalesAggregator sales = salesAggregator;
+            if (outcome == PurchaseOutcome.SUCCESS && sales != null) {
+                sales.recordSale(pricedDecisionTable.ticketPrices, noOfAdultTickets, noOfChildTickets, noOfInfantTickets);
+            }
+        } catch (InvalidPurchaseException e) {
+            // Refused by a gateway that is unavailable, which is reported like any other rejection.
+            outcome = PurchaseOutcome.forRejection(e);
+        } catch (RuntimeException e) {
+            recordOutcome(metrics, PurchaseOutcome.GATEWAY_FAILURE);
+            throw e;
+        }
+        recordOutcome(metrics, outcome);
+        return outcome;
+    }
+
+    @Override
+    public PurchaseResult[] purchaseTicketsBatch(PurchaseOrder... purchaseOrders) {
+        // Validate every order in one pass, then charge and reserve all valid orders with a single call each.
+        // Invalid orders, and orders a gateway fails, are reported in their result rather than thrown, so they do
+        // not affect the rest of the batch.
+        PurchaseResult[] results = new PurchaseResult[purchaseOrders.length];
+        long[] accountIds = new long[purchaseOrders.length];
+        long[] limitBuckets = new long[purchaseOrders.length];
+        int[] orderIndexes = new int[purchaseOrders.length];
+        int[] totalAmountsToPay = new int[purchaseOrders.length];
+        int[] totalSeatsToAllocate = new int[purchaseOrders.length];
+        int noOfValidOrders = 0;
+        PurchaseMetrics metrics = getEnabledMetrics();
+        // One set of prices for the whole batch.
+        DecisionTable pricedDecisionTable = getDecisionTable();
+
+        for (int i = 0; i < purchaseOrders.length; i++) {
+            PurchaseOrder purchaseOrder = purchaseOrders[i];
+            try {
+                long validatedPurchase = checkValidated(validatePurchase(pricedDecisionTable, purchaseOrder.getAccountId(),
+                        purchaseOrder.getTicketTypeRequests()));
+                checkMightBeValidAccount(purchaseOrder.getAccountId());
+                limitBuckets[noOfValidOrders] = acquireAccountLimit(purchaseOrder.getAccountId(), getNoOfSeatsToReserve(validatedPurchase));
+                orderIndexes[noOfValidOrders] = i;
+                accountIds[noOfValidOrders] = purchaseOrder.getAccountId();
+                totalAmountsToPay[noOfValidOrders] = getTotalAmountToPay(validatedPurchase);
+                totalSeatsToAllocate[noOfValidOrders] = getNoOfSeatsToReserve(validatedPurchase);
+                results[i] = PurchaseResult.success(purchaseOrder.getAccountId(),
+                        totalAmountsToPay[noOfValidOrders], totalSeatsToAllocate[noOfValidOrders], pricedDecisionTable.ticketPrices);
+                noOfValidOrders++;
+            } catch (InvalidPurchaseException e) {
+                results[i] = PurchaseResult.rejected(purchaseOrder.getAccountId(), e);
+                recordOutcome(metrics, PurchaseOutcome.forRejection(e));
+            }
+        }
+
+        // The full account checks may be remote, so they are made for every valid order at once rather than in turn
+        // in the loop above.
+        boolean[] validAccounts;
+        try {
+            validAccounts = areValidAccounts(accountIds, noOfValidOrders);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < noOfValidOrders; i++) {
+                releaseAccountLimit(accountIds[i], totalSeatsToAllocate[i], limitBuckets[i]);
+                recordOutcome(metrics, PurchaseOutcome.GATEWAY_FAILURE);
+            }
+            throw e;
+        }
+        int noOfCheckedOrders = 0;
+        for (int i = 0; i < noOfValidOrders; i++) {
+            if (validAccounts[i]) {
+                accountIds[noOfCheckedOrders] = accountIds[i];
+                limitBuckets[noOfCheckedOrders] = limitBuckets[i];
+                totalAmountsToPay[noOfCheckedOrders] = totalAmountsToPay[i];
+                totalSeatsToAllocate[noOfCheckedOrders] = totalSeatsToAllocate[i];
+                noOfCheckedOrders++;
+            } else {
+                releaseAccountLimit(accountIds[i], totalSeatsToAllocate[i], limitBuckets[i]);
+                results[orderIndexes[i]] = PurchaseResult.rejected(purchaseOrders[orderIndexes[i]].getAccountId(),
+                        InvalidAccountException.stackless);
+                recordOutcome(metrics, PurchaseOutcome.INVALID_ACCOUNT);
+            }
+        }
+        noOfValidOrders = noOfCheckedOrders;
+
+        if (noOfValidOrders > 0) {
+            if (noOfValidOrders < purchaseOrders.length) {
+                accountIds = Arrays.copyOf(accountIds, noOfValidOrders);
+                totalAmountsToPay = Arrays.copyOf(totalAmountsToPay, noOfValidOrders);
+                totalSeatsToAllocate = Arrays.copyOf(totalSeatsToAllocate, noOfValidOrders);
+            }
+            PurchaseJournal journal = purchaseJournal;
+            int noOfBatchedOrders = noOfValidOrders;
+            try {
+                long firstPurchaseId = (journal == null) ? 0 : journal.recordIntents(accountIds, totalAmountsToPay, totalSeatsToAllocate);
+                // Journal ids for the orders left in the batch, which no longer follow on from firstPurchaseId once
+                // failed orders have been removed.
+                long[] purchaseIds = new long[noOfValidOrders];
+                for (int i = 0; i < noOfValidOrders; i++) {
+                    purchaseIds[i] = firstPurchaseId + i;
+                }
+                RuntimeException[] paymentFailures;
+                boolean paymentsReported = false;
+                try {
+                    paymentFailures = getBatchTicketPaymentService().makePayments(accountIds, totalAmountsToPay);
+                    paymentsReported = true;
+                } catch (RuntimeException e) {
+                    // Some orders may have been charged before the call failed, so every order is left as an intent
+                    // in the journal for recovery to reconcile.
+                    paymentFailures = new RuntimeException[noOfValidOrders];
+                    Arrays.fill(paymentFailures, e);
+                }
+                if (paymentFailures != null) {
+                    noOfValidOrders = removeFailedOrders(metrics, results, paymentFailures, false, paymentsReported,
+                            noOfValidOrders, purchaseIds, accountIds, limitBuckets, orderIndexes, totalAmountsToPay, totalSeatsToAllocate);
+                }
+
+                if (noOfValidOrders > 0) {
+                    if (journal != null) {
+                        if (noOfValidOrders == noOfBatchedOrders) {
+                            journal.recordPaid(firstPurchaseId, accountIds, totalAmountsToPay, totalSeatsToAllocate);
+                        } else {
+                            for (int i = 0; i < noOfValidOrders; i++) {
+                                journal.recordPaid(purchaseIds[i], accountIds[i], totalAmountsToPay[i], totalSeatsToAllocate[i]);
+                            }
+                        }
+                    }
+                    RuntimeException[] reservationFailures;
+                    try {
+                        reservationFailures = getBatchSeatReservationService().reserveSeats(
+                                Arrays.copyOf(accountIds, noOfValidOrders), Arrays.copyOf(totalSeatsToAllocate, noOfValidOrders));
+                    } catch (RuntimeException e) {
+                        reservationFailures = new RuntimeException[noOfValidOrders];
+                        Arrays.fill(reservationFailures, e);
+                    }
+                    if (reservationFailures != null) {
+                        noOfValidOrders = removeFailedOrders(metrics, results, reservationFailures, true, false, noOfValidOrders,
+                                purchaseIds, accountIds, limitBuckets, orderIndexes, totalAmountsToPay, totalSeatsToAllocate);
+                    }
+                    if (journal != null) {
+                        if (noOfValidOrders == noOfBatchedOrders) {
+                            journal.recordReserved(firstPurchaseId, accountIds, totalAmountsToPay, totalSeatsToAllocate);
+                        } else {
+                            for (int i = 0; i < noOfValidOrders; i++) {
+                                journal.recordReserved(purchaseIds[i], accountIds[i], totalAmountsToPay[i], totalSeatsToAllocate[i]);
+                            }
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Failed orders have already been removed, so only the orders left in the batch are ended here.
+                PurchaseOutcome outcome = (e instanceof InvalidPurchaseException)
+                        ? PurchaseOutcome.forRejection((InvalidPurchaseException) e) : PurchaseOutcome.GATEWAY_FAILURE;
+                for (int i = 0; i < noOfValidOrders; i++) {
+                    releaseAccountLimit(accountIds[i], totalSeatsToAllocate[i], limitBuckets[i]);
+                    recordOutcome(metrics, outcome);
+                }
+                throw e;
+            }
+            for (int i = 0; i < noOfValidOrders; i++) {
+                recordOutcome(metrics, PurchaseOutcome.SUCCESS);
+            }
+            for (int i = 0; i < purchaseOrders.length; i++) {
+                if (results[i].isSuccessful()) {
+                    recordSale(pricedDecisionTable.ticketPrices, purchaseOrders[i].getTicketTypeRequests());
+                }
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public CompletableFuture<PurchaseResult> purchaseTicketsAsync(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        // Validation is cheap, so it runs on the calling thread and rejections complete straight away. The full
+        // account check, which may be remote, and the blocking gateway calls move to a virtual thread, which waits
+        // for a permit before calling the gateways if the cap has been reached.
+        PurchaseMetrics metrics = getEnabledMetrics();
+        long validationStart = (metrics == null) ? 0 : System.nanoTime();
+        DecisionTable pricedDecisionTable;
+        long validatedPurchase;
+        long limitBucket;
+        try {
+            pricedDecisionTable = getDecisionTable();
+            validationStart = recordStageLatency(metrics, PurchaseStage.PRICING, validationStart);
+            validatedPurchase = checkValidated(validatePurchase(pricedDecisionTable, accountId, ticketTypeRequests));
+            checkMightBeValidAccount(accountId);
+            limitBucket = acquireAccountLimit(accountId, getNoOfSeatsToReserve(validatedPurchase));
+            recordStageLatency(metrics, PurchaseStage.VALIDATION, validationStart);
+        } catch (InvalidPurchaseException e) {
+            recordStageLatency(metrics, PurchaseStage.VALIDATION, validationStart);
+            recordOutcome(metrics, PurchaseOutcome.forRejection(e));
+            return CompletableFuture.completedFuture(PurchaseResult.rejected(accountId, e));
+        }
+
+        int totalAmountToPay = getTotalAmountToPay(validatedPurchase);
+        int noOfSeatsToReserve = getNoOfSeatsToReserve(validatedPurchase);
+        Semaphore permits = inFlightGatewayCalls;
+        CompletableFuture<PurchaseResult> result = new CompletableFuture<PurchaseResult>();
+
+        Thread.startVirtualThread(() -> {
+            try {
+                checkAccount(metrics, accountId);
+                permits.acquire();
+                try {
+                    // Time spent waiting for a permit is not part of either gateway stage.
+                    makePaymentAndReservation(metrics, accountId, totalAmountToPay, noOfSeatsToReserve);
+                } finally {
+                    permits.release();
+                }
+                recordOutcome(metrics, PurchaseOutcome.SUCCESS);
+                recordSale(pricedDecisionTable.ticketPrices, ticketTypeRequests);
+                result.complete(PurchaseResult.success(accountId, totalAmountToPay, noOfSeatsToReserve, pricedDecisionTable.ticketPrices));
+            } catch (InvalidPurchaseException e) {
+                // Refused by the account check, or by a gateway that is unavailable, which is reported like any
+                // other rejection.
+                releaseAccountLimit(accountId, noOfSeatsToReserve, limitBucket);
+                recordOutcome(metrics, PurchaseOutcome.forRejection(e));
+                result.complete(PurchaseResult.rejected(accountId, e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                releaseAccountLimit(accountId, noOfSeatsToReserve, limitBucket);
+                recordOutcome(metrics, PurchaseOutcome.GATEWAY_FAILURE);
+                result.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                releaseAccountLimit(accountId, noOfSeatsToReserve, limitBucket);
+                recordOutcome(metrics, PurchaseOutcome.GATEWAY_FAILURE);
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Completes a validated purchase for tryPurchaseTickets: checks the account in memory and applies its limit,
+     * makes the full account check, then charges and reserves, giving the tickets back to the limit if any of
+     * that fails. The VALIDATION stage ends once the in-memory checks are made, whether or not they pass.
+     * 
+     * @return SUCCESS, INVALID_ACCOUNT if the account is unknown or closed, or INVALID_NUMBER_OF_TICKETS if the
+     *         account would exceed its limit.
+     */
+    private PurchaseOutcome purchaseValidated(PurchaseMetrics metrics, long stageStart, long accountId, long validatedPurchase) {
+        int noOfSeatsToReserve = getNoOfSeatsToReserve(validatedPurchase);
+        boolean mightBeValidAccount = mightBeValidAccount(accountId);
+        long limitBucket = mightBeValidAccount ? tryAcquireAccountLimit(accountId, noOfSeatsToReserve) : 0;
+        recordStageLatency(metrics, PurchaseStage.VALIDATION, stageStart);
+        if (!mightBeValidAccount) {
+            return PurchaseOutcome.INVALID_ACCOUNT;
+        }
+        if (limitBucket == AccountPurchaseLimiter.limitExceeded) {
+            return PurchaseOutcome.INVALID_NUMBER_OF_TICKETS;
+        }
+
+        try {
+            // The full check may be remote, so it is left until every in-memory check has passed.
+            if (!isValidAccount(metrics, accountId)) {
+                releaseAccountLimit(accountId, noOfSeatsToReserve, limitBucket);
+                return PurchaseOutcome.INVALID_ACCOUNT;
+            }
+
+            // At this point ticket requests are valid, so we progress with charging and then reserving.
+            makePaymentAndReservation(metrics, accountId, getTotalAmountToPay(validatedPurchase), noOfSeatsToReserve);
+        } catch (RuntimeException e) {
+            releaseAccountLimit(accountId, noOfSeatsToReserve, limitBucket);
+            throw e;
+        }
+        return PurchaseOutcome.SUCCESS;
+    }
+
+    /**
+     * Charges and then reserves seats for a validated purchase, recording its progress in the journal and the
+     * latency of each call. With a seatHoldService, the seats are held before charging, so a purchase that cannot
+     * be seated is not charged, and the hold is confirmed as the reservation.
+     * 
+     * A payment call that throws is taken to have not charged the account, so the purchase is journaled as
+     * resolved and any hold released. A hold that expired during payment is replaced by reserving another block
+     * of seats. If the reservation call throws, or no block is left to replace an expired hold, the purchase stays
+     * paid but unreserved in the journal, for recovery to replay.
+     */
+    private void makePaymentAndReservation(PurchaseMetrics metrics, long accountId, int totalAmountToPay, int noOfSeatsToReserve) {
+        SeatHoldService holds = seatHoldService;
+        SeatHold seatHold = (holds == null) ? null : holds.hold(accountId, noOfSeatsToReserve);
+
+        PurchaseJournal journal = purchaseJournal;
+        long purchaseId = 0;
+        long stageStart = 0;
+        try {
+            if (journal != null) {
+                purchaseId = journal.recordIntent(accountId, totalAmountToPay, noOfSeatsToReserve);
+            }
+            stageStart = (metrics == null) ? 0 : System.nanoTime();
+            try {
+                ticketPaymentService.makePayment(accountId, totalAmountToPay);
+            } catch (RuntimeException e) {
+                if (journal != null) {
+                    journal.recordResolved(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve);
+                }
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            if (seatHold != null) {
+                holds.release(seatHold);
+            }
+            throw e;
+        }
+        stageStart = recordStageLatency(metrics, PurchaseStage.PAYMENT, stageStart);
+        if (journal != null) {
+            journal.recordPaid(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve);
+        }
+
+        try {
+            if (seatHold != null) {
+                confirmHold(holds, seatHold);
+            } else {
+                seatReservationService.reserveSeat(accountId, noOfSeatsToReserve);
+            }
+        } catch (InvalidPurchaseException e) {
+            // The account has been charged, so a refusal now is a failure rather than a rejection.
+            throw new ReservationFailedException(e);
+        }
+        recordStageLatency(metrics, PurchaseStage.RESERVATION, stageStart);
+        if (journal != null) {
+            journal.recordReserved(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve);
+        }
+    }
+
+    /**
+     * Confirms the hold taken before payment. If it expired while the payment was taken its seats may have been
+     * sold again, so the account, which has now been charged, is given another block of seats instead.
+     * 
+     * @throws ReservationFailedException if the hold expired and no other block of seats is free.
+     */
+    private static void confirmHold(SeatHoldService holds, SeatHold seatHold) {
+        try {
+            holds.confirm(seatHold);
+        } catch (SeatHoldExpiredException expired) {
+            try {
+                holds.reserveSeat(seatHold.getAccountId(), seatHold.getNoOfSeats());
+            } catch (SeatsUnavailableException e) {
+                e.addSuppressed(expired);
+                throw new ReservationFailedException(e);
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of purchases from purchaseTicketsAsync that may be calling the gateways at once.
+     * Purchases over the cap wait on their virtual thread until a call completes.
+     * 
+     * @param maxInFlightGatewayCalls Maximum concurrent purchases calling the gateways, at least one.
+     * @throws IllegalArgumentException if maxInFlightGatewayCalls is less than one.
+     */
+    public void setMaxInFlightGatewayCalls(int maxInFlightGatewayCalls) {
+        if (maxInFlightGatewayCalls < 1) {
+            throw new IllegalArgumentException("maxInFlightGatewayCalls must be at least one");
+        }
+        inFlightGatewayCalls = new Semaphore(maxInFlightGatewayCalls);
+    }
+
+    /**
+     * Applies checks and business rules to a purchase, returning the amount to pay and seats to reserve packed into
+     * a single value so that validation does not allocate. Use getTotalAmountToPay and getNoOfSeatsToReserve to
+     * unpack it. A rejection is returned as a negative value rather than thrown, so that tryPurchaseTickets never
+     * throws for a broken rule; use getRejectionOutcome to unpack it, or checkValidated to throw it.
+     * 
+     * @param pricedDecisionTable Decision table for the prices to charge
+     * @param accountId
+     * @param ticketTypeRequests
+     * @return Total amount to pay in the high 32 bits, number of seats to reserve in the low 32 bits, or negative
+     *         if the purchase breaks a business rule.
+     */
+    private static long validatePurchase(DecisionTable pricedDecisionTable, Long accountId, TicketTypeRequest... ticketTypeRequests) {
         // Collate totals per type of ticket in requests, then apply checks and business rules using the totals
-        // before requesting payment and reservations.
+        // before requesting payment and reservations. Totals are kept in primitive locals and the verdict and
+        // price are read from the precomputed decision table, so nothing is allocated on this path.
 
         // Check account number is valid before iterating requests
+        if (accountId == null || accountId < 0) {
+            return rejected(PurchaseOutcome.INVALID_ACCOUNT);
+        }
+
+        // Totals are longs so that many large requests cannot overflow back into the valid range.
+        long noOfAdultTickets = 0;
+        long noOfChildTickets = 0;
+        long noOfInfantTickets = 0;
+        for (TicketTypeRequest ticketTypeRequest : ticketTypeRequests) {
+            int noOfTickets = ticketTypeRequest.getNoOfTickets();
+            if (noOfTickets < 0) {
+                return rejected(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS);
+            }
+
+            TicketTypeRequest.Type type = ticketTypeRequest.getTicketType();
+            if (type == null) {
+                return rejected(PurchaseOutcome.INVALID_TICKET_TYPE);
+            }
+
+            switch (type) {
+                case ADULT:
+                    noOfAdultTickets += noOfTickets;
+                    break;
+                case CHILD:
+                    noOfChildTickets += noOfTickets;
+                    break;
+                case INFANT:
+                    noOfInfantTickets += noOfTickets;
+                    break;
+                default:
+                    return rejected(PurchaseOutcome.INVALID_TICKET_TYPE);
+            }
+        }
+
+        return validateTickets(pricedDecisionTable, noOfAdultTickets, noOfChildTickets, noOfInfantTickets);
+    }
+
+    /**
+     * Applies checks and business rules to a purchase read from its binary encoding. The counts are already
+     * totalled per type, so only their signs need checking before the rules shared with validatePurchase.
+     * 
+     * @return Total amount to pay in the high 32 bits, number of seats to reserve in the low 32 bits, or negative
+     *         if the purchase breaks a business rule.
+     */
+    private static long validateEncodedPurchase(DecisionTable pricedDecisionTable, long accountId, int noOfAdultTickets,
+            int noOfChildTickets, int noOfInfantTickets) {
         if (accountId < 0) {
-            throw new InvalidAccountException();
+            return rejected(PurchaseOutcome.INVALID_ACCOUNT);
         }
+        if (noOfAdultTickets < 0 || noOfChildTickets < 0 || noOfInfantTickets < 0) {
+            return rejected(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS);
+        }
+        return validateTickets(pricedDecisionTable, noOfAdultTickets, noOfChildTickets, noOfInfantTickets);
+    }
 
-        Map <TicketTypeRequest.Type, Integer> collatedTicketTotals = getTicketTypeTotals(ticketTypeRequests);
-        Integer noOfTicketsRequiringAccompaniment = collatedTicketTotals.get(TicketTypeRequest.Type.INFANT) + collatedTicketTotals.get(TicketTypeRequest.Type.CHILD);
-        Integer noOfTicketsThatAccompany = collatedTicketTotals.get(TicketTypeRequest.Type.ADULT);
-        Integer noOfReservableSeats = collatedTicketTotals.get(TicketTypeRequest.Type.CHILD) + collatedTicketTotals.get(TicketTypeRequest.Type.ADULT);
-        Integer noOfPayableTickets = collatedTicketTotals.get(TicketTypeRequest.Type.CHILD) + collatedTicketTotals.get(TicketTypeRequest.Type.ADULT);
+    /**
+     * Applies the business rules to the non-negative totals of each type of ticket in a purchase.
+     * 
+     * @return Total amount to pay in the high 32 bits, number of seats to reserve in the low 32 bits, or negative
+     *         if the purchase breaks a business rule.
+     */
+    private static long validateTickets(DecisionTable pricedDecisionTable, long noOfAdultTickets, long noOfChildTickets,
+            long noOfInfantTickets) {
+        long noOfPayableTickets = noOfAdultTickets + noOfChildTickets;
 
         // Business rule: Maximum of 20 tickets
         // This could be in a single request, or spread across multiple requests, so we check against the total.
-        if (noOfPayableTickets > maxNoOfTicketsPerTransaction) {
-            throw new InvalidNumberOfTicketsException();
+        // Infants are not counted, but their total must still fit the int the payment is calculated in.
+        if (noOfPayableTickets > maxNoOfTicketsPerTransaction || noOfInfantTickets > Integer.MAX_VALUE) {
+            return rejected(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS);
         }
-        
+        int noOfReservableSeats = (int) noOfPayableTickets;
+
         // Business rule: Child and Infant tickets cannot be purchased without Adult tickets.
-        if (noOfTicketsRequiringAccompaniment > 0 && noOfTicketsThatAccompany == 0) {
-            throw new UnaccompaniedTicketsException();
+        int decision = pricedDecisionTable.table[getDecisionTableIndex((int) noOfAdultTickets, (int) noOfChildTickets, (int) noOfInfantTickets)];
+        if (decision == verdictUnaccompanied) {
+            return rejected(PurchaseOutcome.UNACCOMPANIED_TICKETS);
         }
 
-        // At this point ticket requests are valid, so we progress with charging and then reserving.
-        // Note the business rules do not explicitly exclude zero requests or zero tickets, this loop treats all equally.
-        int total = 0;
-        for (TicketTypeRequest.Type type :TicketTypeRequest.Type.values()) {
-            int pricePerTicket = getPriceInPenceForTicketType(type);
-            total += pricePerTicket * collatedTicketTotals.get(type);
+        // Note the business rules do not explicitly exclude zero requests or zero tickets, the table treats all equally.
+        // Infants are not limited by maxNoOfTicketsPerTransaction, so their price is applied outside the table.
+        long total = decision + noOfInfantTickets * pricedDecisionTable.infantTicketPrice;
+        if (total > Integer.MAX_VALUE) {
+            return rejected(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS);
         }
-        
-        ticketPaymentService.makePayment(accountId, total);
-        seatReservationService.reserveSeat(accountId, noOfReservableSeats);
+
+        return (total << 32) | noOfReservableSeats;
+    }
+
+    private boolean isValidAccount(long accountId) {
+        AccountValidator validator = accountValidator;
+        return validator == null || validator.isValidAccount(accountId);
     }
 
     /**
-     * Gets the price in pence for the type of ticket.
-     * 
-     * @param type TicketTypeRequest.Type
-     * @return Price in pence
-     * @throws InvalidTicketTypeException if the type is not recognised.
+     * Makes the full account check, recording its latency as the ACCOUNT_CHECK stage, as the validator may be
+     * remote.
      */
-    private int getPriceInPenceForTicketType(TicketTypeRequest.Type type) throws InvalidTicketTypeException {
-        // Currently hard-coded values, replace in future with a call to a service
-        if (type == TicketTypeRequest.Type.INFANT) {
-            return infantTicketPrice;
+    private boolean isValidAccount(PurchaseMetrics metrics, long accountId) {
+        AccountValidator validator = accountValidator;
+        if (validator == null) {
+            return true;
         }
-        if (type == TicketTypeRequest.Type.CHILD) {
-            return childTicketPrice;
+        long stageStart = (metrics == null) ? 0 : System.nanoTime();
+        boolean validAccount = validator.isValidAccount(accountId);
+        recordStageLatency(metrics, PurchaseStage.ACCOUNT_CHECK, stageStart);
+        return validAccount;
+    }
+
+    private void checkAccount(PurchaseMetrics metrics, long accountId) throws InvalidAccountException {
+        if (!isValidAccount(metrics, accountId)) {
+            throw InvalidAccountException.stackless;
         }
-        if (type == TicketTypeRequest.Type.ADULT) {
-            return adultTicketPrice;
+    }
+
+    private boolean mightBeValidAccount(long accountId) {
+        AccountValidator validator = accountValidator;
+        return validator == null || validator.mightBeValidAccount(accountId);
+    }
+
+    private void checkMightBeValidAccount(long accountId) throws InvalidAccountException {
+        if (!mightBeValidAccount(accountId)) {
+            throw InvalidAccountException.stackless;
         }
-        throw new InvalidTicketTypeException();
     }
 
     /**
-     * Collates the total number of tickets by ticket type, with all types present regardless of whether there
-     * are tickets requested of the type.
+     * Makes the full account check for each account on its own virtual thread, so that a remote validator is
+     * called for a whole batch at once rather than once per order in turn.
+     *
+     * @return Whether each of the first noOfAccounts accounts is valid
+     */
+    private boolean[] areValidAccounts(long[] accountIds, int noOfAccounts) {
+        boolean[] validAccounts = new boolean[noOfAccounts];
+        AccountValidator validator = accountValidator;
+        if (validator == null || noOfAccounts == 1) {
+            for (int i = 0; i < noOfAccounts; i++) {
+                validAccounts[i] = isValidAccount(accountIds[i]);
+            }
+            return validAccounts;
+        }
+        CompletableFuture<?>[] checks = new CompletableFuture<?>[noOfAccounts];
+        // Closing the executor waits for every check to finish.
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < noOfAccounts; i++) {
+                int account = i;
+                checks[i] = CompletableFuture.runAsync(() -> validAccounts[account] = validator.isValidAccount(accountIds[account]), executor);
+            }
+        }
+        try {
+            CompletableFuture.allOf(checks).join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+        }
+        return validAccounts;
+    }
+
+    /**
+     * Records the tickets against the account's limit, if accounts are limited across purchases.
      * 
-     * Negative numbers of tickets in requests are checked for to prevent inappropriate totals. Any negative values
-     * found in a request will cause an InvalidNumberOfTicketsException.
+     * @param accountId
+     * @param noOfTickets Payable tickets in the purchase
+     * @return Bucket to release the tickets from if the purchase does not complete.
+     * @throws InvalidNumberOfTicketsException if the account would exceed its limit.
+     */
+    private long acquireAccountLimit(long accountId, int noOfTickets) throws InvalidNumberOfTicketsException {
+        long limitBucket = tryAcquireAccountLimit(accountId, noOfTickets);
+        if (limitBucket == AccountPurchaseLimiter.limitExceeded) {
+            throw InvalidNumberOfTicketsException.stackless;
+        }
+        return limitBucket;
+    }
+
+    /**
+     * As acquireAccountLimit, but returns AccountPurchaseLimiter.limitExceeded rather than throwing.
+     */
+    private long tryAcquireAccountLimit(long accountId, int noOfTickets) {
+        AccountPurchaseLimiter limiter = accountPurchaseLimiter;
+        return (limiter == null) ? 0 : limiter.tryAcquire(accountId, noOfTickets);
+    }
+
+    private void releaseAccountLimit(long accountId, int noOfTickets, long limitBucket) {
+        if (accountPurchaseLimiter != null) {
+            accountPurchaseLimiter.release(accountId, noOfTickets, limitBucket);
+        }
+    }
+
+    /**
+     * Packs a rejection into a negative result for the validate methods. Negative values can never be a validated
+     * purchase, as the amount to pay in the high bits is never negative.
+     */
+    private static long rejected(PurchaseOutcome outcome) {
+        return ~(long) outcome.ordinal();
+    }
+
+    private static PurchaseOutcome getRejectionOutcome(long validatedPurchase) {
+        return outcomes[(int) ~validatedPurchase];
+    }
+
+    /**
+     * @param validatedPurchase Result of a validate method
+     * @return validatedPurchase, if the purchase was valid.
+     * @throws InvalidPurchaseException if the purchase breaks a business rule, as the rule's stackless instance.
+     */
+    private static long checkValidated(long validatedPurchase) throws InvalidPurchaseException {
+        if (validatedPurchase < 0) {
+            throw getRejectionOutcome(validatedPurchase).getRejection();
+        }
+        return validatedPurchase;
+    }
+
+    private static void throwIfRejected(PurchaseOutcome outcome) throws InvalidPurchaseException {
+        if (outcome != PurchaseOutcome.SUCCESS) {
+            throw outcome.getRejection();
+        }
+    }
+
+    private PurchaseMetrics getEnabledMetrics() {
+        PurchaseMetrics metrics = purchaseMetrics;
+        return (metrics != null && metrics.isEnabled()) ? metrics : null;
+    }
+
+    /**
+     * Records the latency of a stage if metrics are enabled.
      * 
-     * @param ticketTypeRequests
-     * @return Map keyed with TicketTypeRequest.Type to total number of tickets from all requests with that type.
-     * @throws InvalidNumberOfTicketsException if a negative number of tickets specified in a request.
+     * @param metrics Metrics from getEnabledMetrics, null if disabled
+     * @param stage Stage that has just completed
+     * @param stageStart System.nanoTime when the stage started
+     * @return System.nanoTime now, the start of the next stage, or zero if disabled.
      */
-    private Map <TicketTypeRequest.Type, Integer> getTicketTypeTotals(TicketTypeRequest... ticketTypeRequests) throws InvalidNumberOfTicketsException {
-        Map <TicketTypeRequest.Type, Integer> totals = new HashMap <TicketTypeRequest.Type, Integer>(3);
+    private static long recordStageLatency(PurchaseMetrics metrics, PurchaseStage stage, long stageStart) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.recordLatency(stage, now - stageStart);
+        return now;
+    }
 
-        // Ensure all ticket types are present as keys
-        for (TicketTypeRequest.Type ticketType : TicketTypeRequest.Type.values()) {
-            totals.put(ticketType, 0);
+    private static void recordOutcome(PurchaseMetrics metrics, PurchaseOutcome outcome) {
+        if (metrics != null) {
+            metrics.recordOutcome(outcome);
         }
-        // Calculate value totals
-        TicketTypeRequest.Type type;
+    }
+
+    /**
+     * Adds a completed purchase to the sales figures, if they are being recorded. The requests have already been
+     * validated, so every type is set and the totals fit in an int.
+     */
+    private void recordSale(TicketPrices ticketPrices, TicketTypeRequest... ticketTypeRequests) {
+        SalesAggregator sales = salesAggregator;
+        if (sales == null) {
+            return;
+        }
+        int noOfAdultTickets = 0;
+        int noOfChildTickets = 0;
+        int noOfInfantTickets = 0;
         for (TicketTypeRequest ticketTypeRequest : ticketTypeRequests) {
-            if (ticketTypeRequest.getNoOfTickets() < 0) {
-                throw new InvalidNumberOfTicketsException();
+            switch (ticketTypeRequest.getTicketType()) {
+                case ADULT:
+                    noOfAdultTickets += ticketTypeRequest.getNoOfTickets();
+                    break;
+                case CHILD:
+                    noOfChildTickets += ticketTypeRequest.getNoOfTickets();
+                    break;
+                default:
+                    noOfInfantTickets += ticketTypeRequest.getNoOfTickets();
+                    break;
+            }
+        }
+        sales.recordSale(ticketPrices, noOfAdultTickets, noOfChildTickets, noOfInfantTickets);
+    }
+
+    private static int getTotalAmountToPay(long validatedPurchase) {
+        return (int) (validatedPurchase >>> 32);
+    }
+
+    private static int getNoOfSeatsToReserve(long validatedPurchase) {
+        return (int) validatedPurchase;
+    }
+
+    /**
+     * Ends each batched order that a gateway failed, and moves the orders left to the front of the batch arrays.
+     * Only an order known not to have been charged is journaled as resolved; any other unpaid order stays an intent
+     * for recovery to reconcile. Before payment a refusal is reported as a rejection, and after payment every
+     * failure leaves the order paid but unreserved in the journal, for recovery to replay.
+     * 
+     * @param failures Failure for each order, or null for an order the gateway call succeeded for
+     * @param paid Whether the orders have been charged
+     * @param notCharged Whether the failed orders are known not to have been charged
+     * @return Number of orders left in the batch
+     */
+    private int removeFailedOrders(PurchaseMetrics metrics, PurchaseResult[] results, RuntimeException[] failures,
+            boolean paid, boolean notCharged, int noOfOrders, long[] purchaseIds, long[] accountIds, long[] limitBuckets, int[] orderIndexes,
+            int[] totalAmountsToPay, int[] totalSeatsToAllocate) {
+        PurchaseJournal journal = purchaseJournal;
+        int noOfOrdersLeft = 0;
+        for (int i = 0; i < noOfOrders; i++) {
+            RuntimeException failure = failures[i];
+            if (failure == null) {
+                purchaseIds[noOfOrdersLeft] = purchaseIds[i];
+                accountIds[noOfOrdersLeft] = accountIds[i];
+                limitBuckets[noOfOrdersLeft] = limitBuckets[i];
+                orderIndexes[noOfOrdersLeft] = orderIndexes[i];
+                totalAmountsToPay[noOfOrdersLeft] = totalAmountsToPay[i];
+                totalSeatsToAllocate[noOfOrdersLeft] = totalSeatsToAllocate[i];
+                noOfOrdersLeft++;
+                continue;
             }
 
-            type = ticketTypeRequest.getTicketType();
-            Integer total = totals.get(type);
-            totals.put(type, (total == null) ? ticketTypeRequest.getNoOfTickets() : total + ticketTypeRequest.getNoOfTickets());
+            if (notCharged && journal != null) {
+                journal.recordResolved(purchaseIds[i], accountIds[i], totalAmountsToPay[i], totalSeatsToAllocate[i]);
+            }
+            releaseAccountLimit(accountIds[i], totalSeatsToAllocate[i], limitBuckets[i]);
+            if (paid && failure instanceof InvalidPurchaseException) {
+                // The order has been charged, so a refusal now is a failure rather than a rejection.
+                failure = new ReservationFailedException(failure);
+            }
+            if (failure instanceof InvalidPurchaseException) {
+                results[orderIndexes[i]] = PurchaseResult.rejected(accountIds[i], (InvalidPurchaseException) failure);
+                recordOutcome(metrics, PurchaseOutcome.forRejection((InvalidPurchaseException) failure));
+            } else {
+                results[orderIndexes[i]] = PurchaseResult.failed(accountIds[i], failure);
+                recordOutcome(metrics, PurchaseOutcome.GATEWAY_FAILURE);
+            }
         }
+        return noOfOrdersLeft;
+    }
 
-        return totals;
+    /**
+     * Gets the batch payment service, falling back to one call per order on the single payment service if no batch
+     * capable service has been provided.
+     * 
+     * @return BatchTicketPaymentService
+     */
+    private BatchTicketPaymentService getBatchTicketPaymentService() {
+        if (batchTicketPaymentService != null) {
+            return batchTicketPaymentService;
+        }
+        return new SingleCallBatchTicketPaymentService(ticketPaymentService);
+    }
+
+    /**
+     * Gets the batch seat reservation service, falling back to one call per order on the single seat reservation
+     * service if no batch capable service has been provided.
+     * 
+     * @return BatchSeatReservationService
+     */
+    private BatchSeatReservationService getBatchSeatReservationService() {
+        if (batchSeatReservationService != null) {
+            return batchSeatReservationService;
+        }
+        return new SingleCallBatchSeatReservationService(seatReservationService);
+    }
+
+    /**
+     * Gets the decision table for the current ticket prices, rebuilding it if the prices have changed since the
+     * table was last built.
+     * 
+     * @return DecisionTable
+     */
+    private DecisionTable getDecisionTable() {
+        TicketPrices ticketPrices = ticketPriceProvider.getTicketPrices();
+        DecisionTable current = decisionTable;
+        if (!current.ticketPrices.equals(ticketPrices)) {
+            current = new DecisionTable(ticketPrices);
+            decisionTable = current;
+        }
+        return current;
+    }
+
+    /**
+     * Gets the position in the decision table for a set of ticket totals.
+     * 
+     * The table is laid out as [adult][child][infants present], where the infant axis only records whether any
+     * infant tickets were requested. Infants do not count towards maxNoOfTicketsPerTransaction, so their exact
+     * number cannot bound the table, and only their presence affects the verdict.
+     * 
+     * @param noOfAdultTickets Total adult tickets, between zero and maxNoOfTicketsPerTransaction
+     * @param noOfChildTickets Total child tickets, between zero and maxNoOfTicketsPerTransaction
+     * @param noOfInfantTickets Total infant tickets, zero or more
+     * @return Index into the decision table
+     */
+    private static int getDecisionTableIndex(int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets) {
+        int infantsPresent = (noOfInfantTickets > 0) ? 1 : 0;
+        return ((noOfAdultTickets * (maxNoOfTicketsPerTransaction + 1)) + noOfChildTickets) * 2 + infantsPresent;
+    }
+
+    /**
+     * Immutable decision table for one set of ticket prices, holding either the total price in pence of the adult
+     * and child tickets, or a negative verdict if the combination breaks a business rule.
+     * 
+     * Combinations exceeding maxNoOfTicketsPerTransaction are left as zero, as they are rejected before the table
+     * is consulted.
+     */
+    private static final class DecisionTable {
+        final TicketPrices ticketPrices;
+        final int infantTicketPrice;
+        final int[] table;
+
+        DecisionTable(TicketPrices ticketPrices) {
+            int size = maxNoOfTicketsPerTransaction + 1;
+            int adultPrice = ticketPrices.getPriceInPence(TicketTypeRequest.Type.ADULT);
+            int childPrice = ticketPrices.getPriceInPence(TicketTypeRequest.Type.CHILD);
+
+            this.ticketPrices = ticketPrices;
+            this.infantTicketPrice = ticketPrices.getPriceInPence(TicketTypeRequest.Type.INFANT);
+            this.table = new int[size * size * 2];
+
+            for (int adults = 0; adults <= maxNoOfTicketsPerTransaction; adults++) {
+                for (int children = 0; adults + children <= maxNoOfTicketsPerTransaction; children++) {
+                    for (int infants = 0; infants <= 1; infants++) {
+                        boolean requiresAccompaniment = children > 0 || infants > 0;
+                        int index = getDecisionTableIndex(adults, children, infants);
+                        if (requiresAccompaniment && adults == 0) {
+                            table[index] = verdictUnaccompanied;
+                        } else {
+                            // Exact arithmetic so that prices too high for a full order fail here, not at purchase.
+                            table[index] = Math.addExact(Math.multiplyExact(adults, adultPrice), Math.multiplyExact(children, childPrice));
+                        }
+                    }
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,179 @@
+package uk.gov.dwp.uc.pairtest.account;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Immutable Object
+ *
+ * Compact set of account ids that can say an account is definitely not in the set, or that it might be. Each
+ * account sets noOfHashes bits in a bit array sized for the requested false positive rate, which takes around ten
+ * bits per account at one percent rather than the 64 bits of storing the id.
+ *
+ * The bits for an account all fall within one 512 bit block, the size of a cache line, so checking an account
+ * misses the cache at most once however large the set. This costs a slightly higher false positive rate than
+ * spreading the bits over the whole array, which rounding the array up to a power of two more than makes up for.
+ */
+public class AccountBloomFilter {
+
+    public static final double defaultFalsePositiveRate = 0.01;
+
+    private static final int maxNoOfHashes = 16;
+    private static final int bitsPerBlock = 512;
+    private static final int wordsPerBlock = bitsPerBlock / 64;
+    // Largest bit array a long[] can hold.
+    private static final long maxNoOfBits = 1L << 36;
+
+    private final long[] words;
+    private final long blockMask;
+    private final int noOfHashes;
+    private final int noOfAccounts;
+    private final double falsePositiveRate;
+
+    private AccountBloomFilter(long[] words, int noOfHashes, int noOfAccounts, double falsePositiveRate) {
+        this.words = words;
+        this.blockMask = words.length / wordsPerBlock - 1;
+        this.noOfHashes = noOfHashes;
+        this.noOfAccounts = noOfAccounts;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Builds a filter holding the accounts.
+     *
+     * @param accountIds Accounts in the set, in any order
+     * @param falsePositiveRate Chance that an account not in the set is reported as possibly in it, between 0 and 1
+     * @return AccountBloomFilter
+     * @throws IllegalArgumentException if the rate is not between 0 and 1, or the filter would be too large.
+     */
+    public static AccountBloomFilter of(long[] accountIds, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        int noOfAccounts = Math.max(accountIds.length, 1);
+        // Optimal size is -n ln(p) / ln(2)^2, rounded up to a power of two so an index is a mask rather than a division.
+        double noOfBitsNeeded = Math.ceil(-noOfAccounts * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        if (noOfBitsNeeded > maxNoOfBits) {
+            throw new IllegalArgumentException("Too many accounts for the false positive rate");
+        }
+        long noOfBits = Math.max(Long.highestOneBit((long) noOfBitsNeeded - 1) << 1, bitsPerBlock);
+        int noOfHashes = (int) Math.min(Math.max(Math.round((double) noOfBits / noOfAccounts * Math.log(2)), 1), maxNoOfHashes);
+
+        AccountBloomFilter filter = new AccountBloomFilter(new long[(int) (noOfBits >>> 6)], noOfHashes, accountIds.length,
+                falsePositiveRate);
+        for (long accountId : accountIds) {
+            filter.add(accountId);
+        }
+        return filter;
+    }
+
+    /**
+     * Builds a filter from a snapshot file with one decimal account id per line. Blank lines are ignored.
+     *
+     * @param snapshotFile
+     * @param falsePositiveRate Chance that an account not in the file is reported as possibly in it
+     * @return AccountBloomFilter
+     * @throws IOException if the file cannot be read or a line is not an account id.
+     */
+    public static AccountBloomFilter load(Path snapshotFile, double falsePositiveRate) throws IOException {
+        long[] accountIds = new long[1024];
+        int noOfAccounts = 0;
+        try (BufferedReader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.US_ASCII)) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (noOfAccounts == accountIds.length) {
+                    accountIds = Arrays.copyOf(accountIds, noOfAccounts * 2);
+                }
+                try {
+                    accountIds[noOfAccounts++] = Long.parseLong(line);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Not an account id at line " + lineNumber + " of " + snapshotFile);
+                }
+            }
+        }
+        return of(Arrays.copyOf(accountIds, noOfAccounts), falsePositiveRate);
+    }
+
+    /**
+     * @param accountId
+     * @return False if the account is definitely not in the set, true if it might be.
+     */
+    public boolean mightContain(long accountId) {
+        long hash = mix(accountId);
+        int block = (int) ((hash & blockMask) * wordsPerBlock);
+        int index = (int) (hash >>> 32);
+        // The step is odd so that every probe lands on a different bit of the block.
+        int step = (index >>> 16) | 1;
+        for (int i = 0; i < noOfHashes; i++) {
+            int bit = index & (bitsPerBlock - 1);
+            if ((words[block + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            index += step;
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of accounts the filter was built from
+     */
+    public int getNoOfAccounts() {
+        return noOfAccounts;
+    }
+
+    /**
+     * @return Size of the bit array
+     */
+    public long getNoOfBits() {
+        return (long) words.length << 6;
+    }
+
+    public int getNoOfHashes() {
+        return noOfHashes;
+    }
+
+    /**
+     * @return False positive rate the filter was sized for
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Only called while building, before the filter is published.
+     */
+    private void add(long accountId) {
+        long hash = mix(accountId);
+        int block = (int) ((hash & blockMask) * wordsPerBlock);
+        int index = (int) (hash >>> 32);
+        int step = (index >>> 16) | 1;
+        for (int i = 0; i < noOfHashes; i++) {
+            int bit = index & (bitsPerBlock - 1);
+            words[block + (bit >>> 6)] |= 1L << bit;
+            index += step;
+        }
+    }
+
+    /**
+     * Spreads sequential account ids across the whole hash, so that the low bits choosing the block and the high
+     * bits choosing bits within it are both well mixed.
+     */
+    private static long mix(long accountId) {
+        long hash = accountId * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
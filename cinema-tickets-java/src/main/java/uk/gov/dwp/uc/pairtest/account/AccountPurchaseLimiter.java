@@ -0,0 +1,300 @@
+package uk.gov.dwp.uc.pairtest.account;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of tickets each account can buy over a rolling window, across any number of concurrent
+ * purchases.
+ * 
+ * Accounts are spread over a fixed array of stripes, each with its own lock and its own map of the accounts on it,
+ * so purchases for the same account are checked and recorded one at a time while purchases for accounts on other
+ * stripes carry on in parallel without sharing any state. Each account keeps a small ring of time buckets covering
+ * the window, and tickets recorded in buckets older than the window no longer count towards the limit.
+ * 
+ * Each stripe forgets its accounts with no tickets left in the window at most once a window, on the first purchase
+ * after the window has passed, so memory stays bounded as accounts come and go without a housekeeping thread.
+ */
+public class AccountPurchaseLimiter {
+
+    public static final int defaultNoOfStripes = 256;
+    public static final int defaultNoOfBuckets = 10;
+
+    // Returned by tryAcquire when the tickets would exceed the limit. Buckets can be negative, as they are derived
+    // from System.nanoTime, so -1 cannot be used.
+    public static final long limitExceeded = Long.MIN_VALUE;
+
+    private final int maxTicketsPerWindow;
+    private final long bucketNanos;
+    private final int noOfBuckets;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongSupplier nanoClock;
+
+    public AccountPurchaseLimiter(int maxTicketsPerWindow, Duration window) {
+        this(maxTicketsPerWindow, window, defaultNoOfBuckets, defaultNoOfStripes, System::nanoTime);
+    }
+
+    /**
+     * @param maxTicketsPerWindow Most tickets an account can buy within the window
+     * @param window Length of the rolling window
+     * @param noOfBuckets Number of buckets the window is split into, more buckets expire tickets more smoothly
+     * @param noOfStripes Number of locks, rounded up to a power of two
+     * @param nanoClock Source of System.nanoTime style timestamps
+     */
+    public AccountPurchaseLimiter(int maxTicketsPerWindow, Duration window, int noOfBuckets, int noOfStripes, LongSupplier nanoClock) {
+        if (maxTicketsPerWindow < 0 || noOfBuckets < 1 || noOfStripes < 1 || window.toNanos() < noOfBuckets) {
+            throw new IllegalArgumentException("Invalid limiter configuration");
+        }
+        this.maxTicketsPerWindow = maxTicketsPerWindow;
+        this.noOfBuckets = noOfBuckets;
+        this.bucketNanos = window.toNanos() / noOfBuckets;
+        this.nanoClock = nanoClock;
+
+        int size = Integer.highestOneBit(noOfStripes - 1) << 1;
+        size = Math.max(size, 1);
+        long bucket = getCurrentBucket();
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(bucket);
+        }
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     * Records tickets against the account if they keep it within the limit for the window.
+     * 
+     * @param accountId Account buying the tickets
+     * @param noOfTickets Number of tickets counted towards the limit
+     * @return The bucket the tickets were recorded in, to pass to release, or limitExceeded if they would exceed the
+     *         limit.
+     */
+    public long tryAcquire(long accountId, int noOfTickets) {
+        long hash = hash(accountId);
+        Stripe stripe = getStripe(hash);
+        stripe.lock.lock();
+        try {
+            long bucket = getCurrentBucket();
+            if (bucket - stripe.sweptBucket >= noOfBuckets) {
+                stripe.removeIdle(bucket);
+            }
+            TicketWindow ticketWindow = stripe.get(accountId, hash);
+            if (ticketWindow == null) {
+                ticketWindow = new TicketWindow(noOfBuckets);
+                stripe.put(accountId, hash, ticketWindow);
+            }
+            if (ticketWindow.getTotal(bucket) + noOfTickets > maxTicketsPerWindow) {
+                return limitExceeded;
+            }
+            ticketWindow.add(bucket, noOfTickets);
+            return bucket;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes tickets recorded by tryAcquire, for a purchase that did not complete.
+     * 
+     * @param accountId Account the tickets were recorded against
+     * @param noOfTickets Number of tickets recorded
+     * @param bucket Bucket returned by tryAcquire
+     */
+    public void release(long accountId, int noOfTickets, long bucket) {
+        long hash = hash(accountId);
+        Stripe stripe = getStripe(hash);
+        stripe.lock.lock();
+        try {
+            TicketWindow ticketWindow = stripe.get(accountId, hash);
+            if (ticketWindow != null) {
+                ticketWindow.remove(bucket, noOfTickets);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @param accountId Account
+     * @return Tickets counted against the account in the current window.
+     */
+    public int getTicketsInWindow(long accountId) {
+        long hash = hash(accountId);
+        Stripe stripe = getStripe(hash);
+        stripe.lock.lock();
+        try {
+            TicketWindow ticketWindow = stripe.get(accountId, hash);
+            return (ticketWindow == null) ? 0 : ticketWindow.getTotal(getCurrentBucket());
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of accounts being tracked, including idle accounts not yet forgotten
+     */
+    public int getNoOfAccounts() {
+        int noOfAccounts = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                noOfAccounts += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return noOfAccounts;
+    }
+
+    /**
+     * Forgets accounts with no tickets left in the window straight away, rather than waiting for each stripe's
+     * next purchase after a window has passed.
+     */
+    public void removeIdleAccounts() {
+        long bucket = getCurrentBucket();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.removeIdle(bucket);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private long getCurrentBucket() {
+        return Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+    }
+
+    private static long hash(long accountId) {
+        // Spread sequential account ids across stripes.
+        return accountId * 0x9E3779B97F4A7C15L;
+    }
+
+    private Stripe getStripe(long hash) {
+        return stripes[(int) (hash >>> 32) & stripeMask];
+    }
+
+    /**
+     * One lock and the accounts on it, in an open addressing map keyed by the primitive account id so that looking
+     * an account up does not box its id. Only accessed while holding the lock.
+     */
+    private static final class Stripe {
+        private static final int minCapacity = 8;
+
+        final ReentrantLock lock = new ReentrantLock();
+        long[] accountIds = new long[minCapacity];
+        TicketWindow[] ticketWindows = new TicketWindow[minCapacity];
+        int size;
+        // Bucket idle accounts were last removed in.
+        long sweptBucket;
+
+        Stripe(long bucket) {
+            sweptBucket = bucket;
+        }
+
+        TicketWindow get(long accountId, long hash) {
+            int mask = ticketWindows.length - 1;
+            for (int slot = (int) hash & mask; ticketWindows[slot] != null; slot = (slot + 1) & mask) {
+                if (accountIds[slot] == accountId) {
+                    return ticketWindows[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds an account that is not already on the stripe.
+         */
+        void put(long accountId, long hash, TicketWindow ticketWindow) {
+            if ((size + 1) * 2 > ticketWindows.length) {
+                rebuild(ticketWindows.length * 2, false, 0);
+            }
+            insert(accountId, hash, ticketWindow);
+            size++;
+        }
+
+        void removeIdle(long currentBucket) {
+            sweptBucket = currentBucket;
+            int capacity = minCapacity;
+            while (capacity < size * 2) {
+                capacity *= 2;
+            }
+            rebuild(capacity, true, currentBucket);
+        }
+
+        /**
+         * Moves the accounts into new tables of the given capacity. Rebuilding keeps removal simple with linear probing, and happens at most once a window.
+         *
+         * @param capacity Power of two at least twice the number of accounts kept
+         * @param removeIdle Whether to leave out accounts with no tickets in the window
+         * @param currentBucket Current bucket, used only when removing idle accounts
+         */
+        private void rebuild(int capacity, boolean removeIdle, long currentBucket) {
+            long[] oldAccountIds = accountIds;
+            TicketWindow[] oldTicketWindows = ticketWindows;
+            accountIds = new long[capacity];
+            ticketWindows = new TicketWindow[capacity];
+            size = 0;
+            for (int i = 0; i < oldTicketWindows.length; i++) {
+                TicketWindow ticketWindow = oldTicketWindows[i];
+                if (ticketWindow != null && (!removeIdle || ticketWindow.getTotal(currentBucket) != 0)) {
+                    insert(oldAccountIds[i], hash(oldAccountIds[i]), ticketWindow);
+                    size++;
+                }
+            }
+        }
+
+        private void insert(long accountId, long hash, TicketWindow ticketWindow) {
+            int mask = ticketWindows.length - 1;
+            int slot = (int) hash & mask;
+            while (ticketWindows[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            accountIds[slot] = accountId;
+            ticketWindows[slot] = ticketWindow;
+        }
+    }
+
+    /**
+     * Ring of ticket counts per bucket for one account. Only accessed while holding the account's stripe lock.
+     */
+    private static final class TicketWindow {
+        private final long[] buckets;
+        private final int[] counts;
+
+        TicketWindow(int noOfBuckets) {
+            buckets = new long[noOfBuckets];
+            counts = new int[noOfBuckets];
+            Arrays.fill(buckets, limitExceeded);
+        }
+
+        int getTotal(long currentBucket) {
+            int total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > currentBucket - buckets.length) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        void add(long bucket, int noOfTickets) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+            if (buckets[slot] != bucket) {
+                buckets[slot] = bucket;
+                counts[slot] = 0;
+            }
+            counts[slot] += noOfTickets;
+        }
+
+        void remove(long bucket, int noOfTickets) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+            if (buckets[slot] == bucket) {
+                counts[slot] -= noOfTickets;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package uk.gov.dwp.uc.pairtest.account;
+
+public interface AccountValidator {
+
+    /**
+     * @param accountId Non-negative account id
+     * @return Whether tickets may be purchased for the account, false if it is unknown or closed.
+     */
+    boolean isValidAccount(long accountId);
+
+    /**
+     * In-memory part of isValidAccount that never blocks, so that it can be made on the caller's thread with the
+     * business rules. An account it accepts must still pass isValidAccount before it is charged.
+     *
+     * @param accountId Non-negative account id
+     * @return false if the account is certainly unknown, true if it may be valid.
+     */
+    default boolean mightBeValidAccount(long accountId) {
+        return true;
+    }
+
+}
@@ -0,0 +1,69 @@
+package uk.gov.dwp.uc.pairtest.account;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Validates accounts against an in-memory snapshot of known accounts, so that an unknown account is rejected in
+ * nanoseconds instead of failing at the payment gateway. Accounts the snapshot might contain are passed on to an
+ * optional authoritative validator, which catches the snapshot's false positives and any account closed since it
+ * was taken. mightBeValidAccount checks only the snapshot, so a possibly remote authoritative validator can be
+ * left until just before payment and kept off the caller's thread.
+ *
+ * The snapshot is replaced as a whole, so it can be reloaded while purchases carry on with the previous one.
+ */
+public class KnownAccountValidator implements AccountValidator {
+
+    private final AccountValidator authoritativeValidator;
+
+    private volatile AccountBloomFilter knownAccounts;
+
+    /**
+     * Creates the validator, loading the first snapshot on the calling thread.
+     *
+     * @param snapshotFile File with one account id per line
+     * @param falsePositiveRate Chance that an unknown account reaches the authoritative validator
+     * @param authoritativeValidator Slower exact check of accounts the snapshot might contain, or null to accept them
+     * @throws IOException if the snapshot cannot be loaded.
+     */
+    public KnownAccountValidator(Path snapshotFile, double falsePositiveRate, AccountValidator authoritativeValidator) throws IOException {
+        this(AccountBloomFilter.load(snapshotFile, falsePositiveRate), authoritativeValidator);
+    }
+
+    public KnownAccountValidator(AccountBloomFilter knownAccounts, AccountValidator authoritativeValidator) {
+        this.knownAccounts = knownAccounts;
+        this.authoritativeValidator = authoritativeValidator;
+    }
+
+    @Override
+    public boolean isValidAccount(long accountId) {
+        if (!knownAccounts.mightContain(accountId)) {
+            return false;
+        }
+        return authoritativeValidator == null || authoritativeValidator.isValidAccount(accountId);
+    }
+
+    @Override
+    public boolean mightBeValidAccount(long accountId) {
+        return knownAccounts.mightContain(accountId);
+    }
+
+    /**
+     * Replaces the snapshot with one loaded from the file, sized for the same false positive rate. If the file
+     * cannot be loaded the current snapshot is kept.
+     *
+     * @param snapshotFile File with one account id per line
+     * @throws IOException if the snapshot cannot be loaded.
+     */
+    public void reload(Path snapshotFile) throws IOException {
+        knownAccounts = AccountBloomFilter.load(snapshotFile, knownAccounts.getFalsePositiveRate());
+    }
+
+    public void setKnownAccounts(AccountBloomFilter knownAccounts) {
+        this.knownAccounts = knownAccounts;
+    }
+
+    public AccountBloomFilter getKnownAccounts() {
+        return knownAccounts;
+    }
+}
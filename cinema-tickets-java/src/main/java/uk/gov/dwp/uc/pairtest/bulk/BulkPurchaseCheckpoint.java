@@ -0,0 +1,87 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Immutable Object
+ *
+ * How far a bulk purchase run has got: every line before ordersOffset has its result written before resultsOffset.
+ * Saved as a single text line, replacing the previous checkpoint atomically so a crash leaves one or the other.
+ */
+public class BulkPurchaseCheckpoint {
+
+    public static final BulkPurchaseCheckpoint start = new BulkPurchaseCheckpoint(0, 0, 0);
+
+    private final long ordersOffset;
+    private final long noOfLines;
+    private final long resultsOffset;
+
+    public BulkPurchaseCheckpoint(long ordersOffset, long noOfLines, long resultsOffset) {
+        this.ordersOffset = ordersOffset;
+        this.noOfLines = noOfLines;
+        this.resultsOffset = resultsOffset;
+    }
+
+    /**
+     * @param checkpointFile
+     * @return Checkpoint saved in the file, or start if there is no file.
+     * @throws IOException if the file cannot be read or is not a checkpoint.
+     */
+    public static BulkPurchaseCheckpoint load(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return start;
+        }
+        String[] parts = Files.readString(checkpointFile, StandardCharsets.US_ASCII).trim().split(" ");
+        try {
+            if (parts.length == 3) {
+                return new BulkPurchaseCheckpoint(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Not a bulk purchase checkpoint: " + checkpointFile);
+    }
+
+    /**
+     * Replaces the checkpoint in the file with this one.
+     *
+     * @param checkpointFile
+     * @throws IOException
+     */
+    public void save(Path checkpointFile) throws IOException {
+        Path saving = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.writeString(saving, ordersOffset + " " + noOfLines + " " + resultsOffset + "\n", StandardCharsets.US_ASCII);
+        Files.move(saving, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Offset in the order file of the first line not yet completed
+     */
+    public long getOrdersOffset() {
+        return ordersOffset;
+    }
+
+    /**
+     * @return Lines of the order file completed, including any header and blank lines
+     */
+    public long getNoOfLines() {
+        return noOfLines;
+    }
+
+    /**
+     * @return Length of the results file holding the completed lines' results
+     */
+    public long getResultsOffset() {
+        return resultsOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkPurchaseCheckpoint[ordersOffset=" + ordersOffset + ", noOfLines=" + noOfLines
+                + ", resultsOffset=" + resultsOffset + "]";
+    }
+}
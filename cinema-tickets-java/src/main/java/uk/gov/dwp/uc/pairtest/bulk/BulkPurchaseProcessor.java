@@ -0,0 +1,326 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Purchases every order in a large order file, writing a result line for each order as it goes and checkpointing
+ * its progress so that a stopped run can resume where it left off.
+ *
+ * The file is read through a FileChannel in fixed size chunks, and each line parsed from the chunk's bytes into a
+ * PurchaseOrderCodec encoding, so no objects are created per line. Each order is then purchased on its own virtual
+ * thread through purchaseTickets(ByteBuffer), which validates with the business rules and calls the gateways, so
+ * validation runs across every core. At most maxInFlight orders are outstanding at once, counting orders that have
+ * completed but are waiting for an earlier, slower order so that results are written in file order. Memory use is
+ * fixed by the chunk size and maxInFlight, whatever the size of the file.
+ *
+ * Results are written as lineNumber,OUTCOME with the PurchaseOutcome name, or MALFORMED for a line that is not an
+ * order, and line numbers counting from one. Header and blank lines have no result. Every checkpointInterval
+ * lines, the results are forced to disk and the checkpoint saved. Orders started after the last checkpoint are
+ * purchased again on resume, so a journal is needed to avoid charging twice across a crash.
+ */
+public class BulkPurchaseProcessor {
+
+    public static final int defaultReadBufferSize = 1 << 20;
+    public static final int defaultCheckpointInterval = 10_000;
+
+    // Outcome codes in a slot, other than PurchaseOutcome ordinals.
+    private static final int outcomeMalformed = -1;
+    private static final int outcomeNoResult = -2;
+
+    private static final byte[][] outcomeNames = new byte[PurchaseOutcome.values().length][];
+    private static final byte[] malformedName = "MALFORMED".getBytes(StandardCharsets.US_ASCII);
+    static {
+        for (PurchaseOutcome outcome : PurchaseOutcome.values()) {
+            outcomeNames[outcome.ordinal()] = outcome.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // Longest result line: a 19 digit line number, a comma, the longest name and a newline.
+    private static final int maxResultLength = 64;
+    private static final int resultsBufferSize = 1 << 16;
+
+    private static final long waitNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final TicketService ticketService;
+    private final int maxInFlight;
+    private final int readBufferSize;
+    private final int checkpointInterval;
+
+    public BulkPurchaseProcessor(TicketService ticketService, int maxInFlight) {
+        this(ticketService, maxInFlight, defaultReadBufferSize, defaultCheckpointInterval);
+    }
+
+    /**
+     * @param ticketService Service to purchase each order through
+     * @param maxInFlight Maximum orders outstanding at once, at least one.
+     * @param readBufferSize Bytes read from the order file at a time, also the longest line that can be an order.
+     * @param checkpointInterval Lines completed between checkpoints, at least one.
+     * @throws IllegalArgumentException if an argument is less than one.
+     */
+    public BulkPurchaseProcessor(TicketService ticketService, int maxInFlight, int readBufferSize, int checkpointInterval) {
+        if (maxInFlight < 1 || readBufferSize < 1 || checkpointInterval < 1) {
+            throw new IllegalArgumentException("maxInFlight, readBufferSize and checkpointInterval must be at least one");
+        }
+        this.ticketService = ticketService;
+        this.maxInFlight = maxInFlight;
+        this.readBufferSize = readBufferSize;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Purchases the orders in a file from the checkpoint onwards, or from the start if there is no checkpoint. The
+     * results file is cut back to the checkpoint before results are added, so it never repeats a line. Once the run
+     * completes, the checkpoint is at the end of the file, so delete it to process the same file again.
+     *
+     * @param ordersFile Orders, one per line
+     * @param format Format of the lines
+     * @param resultsFile Created if it does not exist
+     * @param checkpointFile Created if it does not exist
+     * @return Summary of this run
+     * @throws IOException if a file cannot be read or written. The last saved checkpoint still stands.
+     */
+    public BulkPurchaseSummary process(Path ordersFile, OrderFileFormat format, Path resultsFile, Path checkpointFile) throws IOException {
+        BulkPurchaseCheckpoint checkpoint = BulkPurchaseCheckpoint.load(checkpointFile);
+        try (FileChannel orders = FileChannel.open(ordersFile, StandardOpenOption.READ);
+             FileChannel results = FileChannel.open(resultsFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            results.truncate(checkpoint.getResultsOffset());
+            results.position(checkpoint.getResultsOffset());
+            orders.position(checkpoint.getOrdersOffset());
+
+            Run run = new Run(format, results, checkpointFile, checkpoint);
+            run.readOrders(orders);
+            run.awaitOrders(0);
+            return new BulkPurchaseSummary(checkpoint, run.saveCheckpoint(), run.outcomeCounts, run.noOfMalformedLines);
+        }
+    }
+
+    /**
+     * State of one call to process. Lines are read, and results written, only on the calling thread. Each order
+     * outstanding has a slot in a ring of maxInFlight, reused once the order's result is written.
+     */
+    private final class Run {
+        private final OrderFileFormat format;
+        private final FileChannel results;
+        private final Path checkpointFile;
+        private final Thread reader = Thread.currentThread();
+
+        private final long[] fields = new long[OrderFileFormat.noOfFields];
+        private final ByteBuffer[] encodedOrders = new ByteBuffer[maxInFlight];
+        private final int[] outcomes = new int[maxInFlight];
+        private final long[] lineNumbers = new long[maxInFlight];
+        private final long[] endOffsets = new long[maxInFlight];
+        // Sequence number of the order that last completed in each slot, set by the purchasing thread.
+        private final AtomicLongArray completedSequences = new AtomicLongArray(maxInFlight);
+        private final ByteBuffer resultsBuffer = ByteBuffer.allocateDirect(resultsBufferSize);
+
+        private final long[] outcomeCounts = new long[PurchaseOutcome.values().length];
+        private long noOfMalformedLines;
+
+        private long noOfLines;
+        private long nextSequence;
+        private long nextSequenceToWrite;
+        private long completedOrdersOffset;
+        private long completedNoOfLines;
+        private int linesSinceCheckpoint;
+
+        Run(OrderFileFormat format, FileChannel results, Path checkpointFile, BulkPurchaseCheckpoint checkpoint) {
+            this.format = format;
+            this.results = results;
+            this.checkpointFile = checkpointFile;
+            this.noOfLines = checkpoint.getNoOfLines();
+            this.completedOrdersOffset = checkpoint.getOrdersOffset();
+            this.completedNoOfLines = checkpoint.getNoOfLines();
+            ByteBuffer encodedBlock = ByteBuffer.allocateDirect(maxInFlight * PurchaseOrderCodec.encodedLength);
+            for (int slot = 0; slot < maxInFlight; slot++) {
+                encodedOrders[slot] = encodedBlock.slice(slot * PurchaseOrderCodec.encodedLength, PurchaseOrderCodec.encodedLength);
+                completedSequences.set(slot, -1);
+            }
+        }
+
+        /**
+         * Reads the file in chunks, starting each line's order as it is found. A line left incomplete at the end of
+         * a chunk is moved to the start of the buffer to be finished by the next read. A line longer than the whole
+         * buffer is skipped up to its line separator and reported as malformed.
+         */
+        void readOrders(FileChannel orders) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(readBufferSize);
+            long bufferOffset = orders.position();
+            boolean skippingLongLine = false;
+
+            while (true) {
+                boolean endOfFile = orders.read(buffer) < 0;
+                int limit = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) != '\n') {
+                        continue;
+                    }
+                    if (skippingLongLine) {
+                        startLine(buffer, 0, 0, bufferOffset + i + 1, false);
+                        skippingLongLine = false;
+                    } else {
+                        startLine(buffer, lineStart, i, bufferOffset + i + 1, true);
+                    }
+                    lineStart = i + 1;
+                }
+
+                if (endOfFile) {
+                    if (skippingLongLine) {
+                        startLine(buffer, 0, 0, bufferOffset + limit, false);
+                    } else if (lineStart < limit) {
+                        startLine(buffer, lineStart, limit, bufferOffset + limit, true);
+                    }
+                    return;
+                }
+
+                if (lineStart == 0 && limit == buffer.capacity()) {
+                    skippingLongLine = true;
+                    lineStart = limit;
+                }
+                buffer.limit(limit).position(lineStart);
+                buffer.compact();
+                bufferOffset += lineStart;
+            }
+        }
+
+        /**
+         * @param start Absolute index of the line in buffer
+         * @param end Absolute index of the line separator in buffer
+         * @param endOffset Offset in the file after the line separator
+         * @param wellFormed false for a line already known to be malformed
+         */
+        private void startLine(ByteBuffer buffer, int start, int end, long endOffset, boolean wellFormed) throws IOException {
+            noOfLines++;
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            awaitOrders(maxInFlight - 1);
+
+            long sequence = nextSequence++;
+            int slot = (int) (sequence % maxInFlight);
+            lineNumbers[slot] = noOfLines;
+            endOffsets[slot] = endOffset;
+
+            if (wellFormed && (start == end || (noOfLines == 1 && format.isHeader(buffer, start, end)))) {
+                complete(slot, sequence, outcomeNoResult);
+            } else if (!wellFormed || !format.parse(buffer, start, end, fields)) {
+                complete(slot, sequence, outcomeMalformed);
+            } else {
+                ByteBuffer encodedOrder = encodedOrders[slot];
+                encodedOrder.clear();
+                PurchaseOrderCodec.encode(encodedOrder, fields[OrderFileFormat.fieldAccountId],
+                        (int) fields[OrderFileFormat.fieldAdult], (int) fields[OrderFileFormat.fieldChild],
+                        (int) fields[OrderFileFormat.fieldInfant]);
+                Thread.startVirtualThread(() -> complete(slot, sequence, purchase(encodedOrder.flip())));
+            }
+            writeCompleted();
+        }
+
+        private int purchase(ByteBuffer encodedOrder) {
+            try {
+                return ticketService.tryPurchaseTickets(encodedOrder).ordinal();
+            } catch (RuntimeException e) {
+                return PurchaseOutcome.GATEWAY_FAILURE.ordinal();
+            }
+        }
+
+        private void complete(int slot, long sequence, int outcome) {
+            outcomes[slot] = outcome;
+            completedSequences.set(slot, sequence);
+            if (Thread.currentThread() != reader) {
+                LockSupport.unpark(reader);
+            }
+        }
+
+        /**
+         * Writes completed results until no more than maxOutstanding orders are outstanding.
+         */
+        void awaitOrders(int maxOutstanding) throws IOException {
+            while (true) {
+                writeCompleted();
+                if (nextSequence - nextSequenceToWrite <= maxOutstanding) {
+                    return;
+                }
+                LockSupport.parkNanos(this, waitNanos);
+            }
+        }
+
+        /**
+         * Writes the results of the orders completed in file order, stopping at the first still outstanding.
+         */
+        private void writeCompleted() throws IOException {
+            while (nextSequenceToWrite < nextSequence) {
+                int slot = (int) (nextSequenceToWrite % maxInFlight);
+                if (completedSequences.get(slot) != nextSequenceToWrite) {
+                    return;
+                }
+                int outcome = outcomes[slot];
+                if (outcome != outcomeNoResult) {
+                    writeResult(lineNumbers[slot], (outcome == outcomeMalformed) ? malformedName : outcomeNames[outcome]);
+                    if (outcome == outcomeMalformed) {
+                        noOfMalformedLines++;
+                    } else {
+                        outcomeCounts[outcome]++;
+                    }
+                }
+                completedOrdersOffset = endOffsets[slot];
+                completedNoOfLines = lineNumbers[slot];
+                nextSequenceToWrite++;
+
+                if (++linesSinceCheckpoint >= checkpointInterval) {
+                    saveCheckpoint();
+                }
+            }
+        }
+
+        private void writeResult(long lineNumber, byte[] outcomeName) throws IOException {
+            if (resultsBuffer.remaining() < maxResultLength) {
+                flushResults();
+            }
+            putDigits(resultsBuffer, lineNumber);
+            resultsBuffer.put((byte) ',').put(outcomeName).put((byte) '\n');
+        }
+
+        private void flushResults() throws IOException {
+            resultsBuffer.flip();
+            while (resultsBuffer.hasRemaining()) {
+                results.write(resultsBuffer);
+            }
+            resultsBuffer.clear();
+        }
+
+        /**
+         * Forces the results written so far to disk, then records them in the checkpoint.
+         */
+        BulkPurchaseCheckpoint saveCheckpoint() throws IOException {
+            flushResults();
+            results.force(false);
+            BulkPurchaseCheckpoint checkpoint = new BulkPurchaseCheckpoint(completedOrdersOffset, completedNoOfLines, results.position());
+            checkpoint.save(checkpointFile);
+            linesSinceCheckpoint = 0;
+            return checkpoint;
+        }
+    }
+
+    private static void putDigits(ByteBuffer buffer, long value) {
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+}
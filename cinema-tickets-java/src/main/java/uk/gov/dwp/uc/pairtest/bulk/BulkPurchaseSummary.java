@@ -0,0 +1,55 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Immutable Object
+ *
+ * Counts of the orders completed by one bulk purchase run, which after a resume excludes the lines completed before
+ * the checkpoint it resumed from.
+ */
+public class BulkPurchaseSummary {
+
+    private final BulkPurchaseCheckpoint resumedFrom;
+    private final BulkPurchaseCheckpoint finishedAt;
+    private final long[] outcomeCounts;
+    private final long noOfMalformedLines;
+
+    public BulkPurchaseSummary(BulkPurchaseCheckpoint resumedFrom, BulkPurchaseCheckpoint finishedAt, long[] outcomeCounts,
+            long noOfMalformedLines) {
+        this.resumedFrom = resumedFrom;
+        this.finishedAt = finishedAt;
+        this.outcomeCounts = outcomeCounts.clone();
+        this.noOfMalformedLines = noOfMalformedLines;
+    }
+
+    public BulkPurchaseCheckpoint getResumedFrom() {
+        return resumedFrom;
+    }
+
+    public BulkPurchaseCheckpoint getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getCount(PurchaseOutcome outcome) {
+        return outcomeCounts[outcome.ordinal()];
+    }
+
+    /**
+     * @return Lines that were not an order in the file's format
+     */
+    public long getNoOfMalformedLines() {
+        return noOfMalformedLines;
+    }
+
+    /**
+     * @return Orders purchased or rejected, excluding malformed lines
+     */
+    public long getNoOfOrders() {
+        long noOfOrders = 0;
+        for (long count : outcomeCounts) {
+            noOfOrders += count;
+        }
+        return noOfOrders;
+    }
+}
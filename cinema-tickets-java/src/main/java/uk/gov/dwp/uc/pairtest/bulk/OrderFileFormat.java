@@ -0,0 +1,200 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line formats of a bulk order file, one order per line, each parsed straight from the bytes read from the file.
+ * <pre>
+ *   CSV     accountId,adult,child,infant
+ *           1000,2,1,0
+ *   NDJSON  {"accountId": 1000, "adult": 2, "child": 1}
+ * </pre>
+ * A CSV file may start with a header line, which is skipped. NDJSON keys may be in any order, and a missing ticket
+ * type has no tickets. Both formats give the total tickets of each type, as PurchaseOrderCodec encodes them.
+ */
+public enum OrderFileFormat {
+    CSV {
+        @Override
+        boolean isHeader(ByteBuffer buffer, int start, int end) {
+            return start < end && Character.isLetter(buffer.get(start));
+        }
+
+        @Override
+        boolean parse(ByteBuffer buffer, int start, int end, long[] fields) {
+            int position = start;
+            for (int field = 0; field < noOfFields; field++) {
+                if (field > 0) {
+                    if (position >= end || buffer.get(position) != ',') {
+                        return false;
+                    }
+                    position++;
+                }
+                position = parseNumber(buffer, position, end, fields, field);
+                if (position < 0) {
+                    return false;
+                }
+            }
+            return position == end && fitsFields(fields);
+        }
+    },
+    NDJSON {
+        @Override
+        boolean isHeader(ByteBuffer buffer, int start, int end) {
+            return false;
+        }
+
+        @Override
+        boolean parse(ByteBuffer buffer, int start, int end, long[] fields) {
+            fields[fieldAccountId] = -1;
+            fields[fieldAdult] = 0;
+            fields[fieldChild] = 0;
+            fields[fieldInfant] = 0;
+            boolean hasAccountId = false;
+
+            int position = skipWhitespace(buffer, start, end);
+            if (position >= end || buffer.get(position) != '{') {
+                return false;
+            }
+            position = skipWhitespace(buffer, position + 1, end);
+            if (position < end && buffer.get(position) == '}') {
+                return false;
+            }
+            while (true) {
+                if (position >= end || buffer.get(position) != '"') {
+                    return false;
+                }
+                int keyStart = position + 1;
+                int keyEnd = keyStart;
+                while (keyEnd < end && buffer.get(keyEnd) != '"') {
+                    keyEnd++;
+                }
+                if (keyEnd >= end) {
+                    return false;
+                }
+                int field = fieldForKey(buffer, keyStart, keyEnd);
+                if (field < 0) {
+                    return false;
+                }
+                hasAccountId |= (field == fieldAccountId);
+
+                position = skipWhitespace(buffer, keyEnd + 1, end);
+                if (position >= end || buffer.get(position) != ':') {
+                    return false;
+                }
+                position = parseNumber(buffer, skipWhitespace(buffer, position + 1, end), end, fields, field);
+                if (position < 0) {
+                    return false;
+                }
+                position = skipWhitespace(buffer, position, end);
+                if (position >= end) {
+                    return false;
+                }
+                byte separator = buffer.get(position);
+                if (separator == '}') {
+                    return skipWhitespace(buffer, position + 1, end) == end && hasAccountId && fitsFields(fields);
+                }
+                if (separator != ',') {
+                    return false;
+                }
+                position = skipWhitespace(buffer, position + 1, end);
+            }
+        }
+    };
+
+    static final int fieldAccountId = 0;
+    static final int fieldAdult = 1;
+    static final int fieldChild = 2;
+    static final int fieldInfant = 3;
+    static final int noOfFields = 4;
+
+    private static final byte[][] keys = {
+        "accountId".getBytes(StandardCharsets.US_ASCII), "adult".getBytes(StandardCharsets.US_ASCII),
+        "child".getBytes(StandardCharsets.US_ASCII), "infant".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    // More digits than this cannot be a long.
+    private static final int maxDigits = 18;
+
+    /**
+     * @param buffer Bytes read from the file
+     * @param start Absolute index of the first byte of the line
+     * @param end Absolute index after the last byte of the line, excluding the line separator
+     * @return Whether the line is a header rather than an order. Only asked of the file's first line.
+     */
+    abstract boolean isHeader(ByteBuffer buffer, int start, int end);
+
+    /**
+     * Parses an order line without allocating.
+     *
+     * @param buffer Bytes read from the file
+     * @param start Absolute index of the first byte of the line
+     * @param end Absolute index after the last byte of the line, excluding the line separator
+     * @param fields Set to the account id and total adult, child and infant tickets, indexed by the field constants
+     * @return false if the line is not an order in this format, or a total does not fit the encoding.
+     */
+    abstract boolean parse(ByteBuffer buffer, int start, int end, long[] fields);
+
+    /**
+     * @return Index after the number, or -1 if there is no number at start.
+     */
+    private static int parseNumber(ByteBuffer buffer, int start, int end, long[] fields, int field) {
+        int position = start;
+        boolean negative = position < end && buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        int digitsStart = position;
+        long value = 0;
+        while (position < end) {
+            byte digit = buffer.get(position);
+            if (digit < '0' || digit > '9') {
+                break;
+            }
+            value = value * 10 + (digit - '0');
+            position++;
+        }
+        if (position == digitsStart || position - digitsStart > maxDigits) {
+            return -1;
+        }
+        fields[field] = negative ? -value : value;
+        return position;
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        while (position < end && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int fieldForKey(ByteBuffer buffer, int start, int end) {
+        for (int field = 0; field < keys.length; field++) {
+            byte[] key = keys[field];
+            if (key.length == end - start && matches(buffer, start, key)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Ticket totals are ints in the encoding. Negative totals still parse, to be rejected by the business rules.
+    private static boolean fitsFields(long[] fields) {
+        for (int field = fieldAdult; field < noOfFields; field++) {
+            if (fields[field] < Integer.MIN_VALUE || fields[field] > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
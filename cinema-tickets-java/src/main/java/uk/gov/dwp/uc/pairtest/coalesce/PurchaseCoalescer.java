@@ -0,0 +1,334 @@
+package uk.gov.dwp.uc.pairtest.coalesce;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidTicketTypeException;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+import uk.gov.dwp.uc.pairtest.timer.TimingWheel;
+
+/**
+ * Optional front end to TicketServiceImpl that merges purchases for the same account made within a short window
+ * into one purchase, so they share a single payment and reservation.
+ *
+ * The first purchase for an account opens a batch, and the batch is purchased once the window has passed, once it
+ * holds maxPurchasesPerBatch purchases, or as soon as the next purchase would take it over
+ * maxNoOfTicketsPerTransaction, in which case that purchase starts the next batch. The business rules are applied
+ * to the merged purchase, so a child ticket sent just after the adult tickets it goes with is accepted. Checks that
+ * only concern a single purchase, such as a negative number of tickets, reject it straight away without affecting
+ * the batch.
+ *
+ * Each caller gets its own result: its own seats, and the price of its own tickets at the prices the merged
+ * purchase was charged at, so the shares add up to the amount charged. A rejection or gateway failure of the
+ * merged purchase is given to every purchase in it.
+ *
+ * Windows are tracked in a TimingWheel, so batches are purchased up to one tick after their window.
+ */
+public class PurchaseCoalescer implements Closeable {
+
+    public static final Duration defaultTickDuration = Duration.ofMillis(1);
+
+    private final TicketServiceImpl ticketService;
+    private final long windowNanos;
+    private final int maxPurchasesPerBatch;
+    private final long tickNanos;
+    private final LongSupplier nanoClock;
+    private final TimingWheel<Batch> timingWheel;
+    private final ConcurrentHashMap<Long, Batch> openBatches = new ConcurrentHashMap<Long, Batch>();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    public PurchaseCoalescer(TicketServiceImpl ticketService, Duration window, int maxPurchasesPerBatch) {
+        this(ticketService, window, maxPurchasesPerBatch, defaultTickDuration, System::nanoTime);
+    }
+
+    /**
+     * Creates the coalescer and starts the thread that purchases batches at the end of their window.
+     *
+     * @param ticketService Service the merged purchases are made through
+     * @param window How long a batch waits for more purchases
+     * @param maxPurchasesPerBatch Purchases that end a batch early, at least one.
+     * @param tickDuration How often batches are checked for the end of their window
+     * @param nanoClock Source of System.nanoTime style timestamps
+     */
+    public PurchaseCoalescer(TicketServiceImpl ticketService, Duration window, int maxPurchasesPerBatch, Duration tickDuration,
+            LongSupplier nanoClock) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        if (maxPurchasesPerBatch < 1) {
+            throw new IllegalArgumentException("maxPurchasesPerBatch must be at least one");
+        }
+        this.ticketService = ticketService;
+        this.windowNanos = window.toNanos();
+        this.maxPurchasesPerBatch = maxPurchasesPerBatch;
+        this.tickNanos = tickDuration.toNanos();
+        this.nanoClock = nanoClock;
+        this.timingWheel = new TimingWheel<Batch>(tickDuration, nanoClock.getAsLong());
+
+        flusher = new Thread(this::purchasePeriodically, "purchase-coalescer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Adds a purchase to the account's open batch. Once closed, purchases go straight to the ticket service.
+     *
+     * @param accountId
+     * @param ticketTypeRequests
+     * @return Future completed with this purchase's share of the merged purchase, including rejections by the
+     *         business rules. It completes exceptionally only if a gateway call fails.
+     */
+    public CompletableFuture<PurchaseResult> purchaseTicketsAsync(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        if (closed) {
+            return ticketService.purchaseTicketsAsync(accountId, ticketTypeRequests);
+        }
+        Purchase purchase;
+        try {
+            purchase = collate(accountId, ticketTypeRequests);
+        } catch (InvalidPurchaseException e) {
+            return CompletableFuture.completedFuture(PurchaseResult.rejected(accountId, e));
+        }
+
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(accountId, this::openBatch);
+            boolean added = false;
+            boolean full = false;
+            synchronized (batch) {
+                if (batch.closed) {
+                    // Being purchased, so this purchase goes in a new batch.
+                    openBatches.remove(accountId, batch);
+                    continue;
+                }
+                if (batch.fits(purchase)) {
+                    batch.add(purchase);
+                    added = true;
+                    full = batch.purchases.size() >= maxPurchasesPerBatch;
+                } else {
+                    full = true;
+                }
+                if (closed) {
+                    // close() may have run since the check above and missed this batch, so it is purchased here
+                    // rather than left waiting for a flusher that has stopped.
+                    full = true;
+                }
+                batch.closed = full;
+            }
+            if (full) {
+                purchase(batch);
+            }
+            if (added) {
+                return purchase.result;
+            }
+        }
+    }
+
+    /**
+     * Purchases every batch that has reached the end of its window. Called by the coalescer's thread once per tick.
+     *
+     * @return Number of batches purchased
+     */
+    public int purchaseDueBatches() {
+        return timingWheel.advance(nanoClock.getAsLong(), this::closeAndPurchase);
+    }
+
+    /**
+     * @return Number of batches waiting for more purchases
+     */
+    public int getNoOfOpenBatches() {
+        return openBatches.size();
+    }
+
+    /**
+     * Stops the coalescer's thread and purchases every open batch without waiting for its window.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Batch batch : openBatches.values()) {
+            closeAndPurchase(batch);
+        }
+    }
+
+    private Batch openBatch(Long accountId) {
+        Batch batch = new Batch(accountId);
+        batch.timeout = timingWheel.schedule(batch, nanoClock.getAsLong() + windowNanos);
+        return batch;
+    }
+
+    private void closeAndPurchase(Batch batch) {
+        synchronized (batch) {
+            if (batch.closed) {
+                return;
+            }
+            batch.closed = true;
+        }
+        purchase(batch);
+    }
+
+    /**
+     * Purchases a closed batch as one purchase. No purchase can be added to the batch once it is closed.
+     */
+    private void purchase(Batch batch) {
+        openBatches.remove(batch.accountId, batch);
+        timingWheel.cancel(batch.timeout);
+
+        List<TicketTypeRequest> merged = new ArrayList<TicketTypeRequest>(3);
+        if (batch.noOfAdultTickets > 0) {
+            merged.add(new TicketTypeRequest(TicketTypeRequest.Type.ADULT, batch.noOfAdultTickets));
+        }
+        if (batch.noOfChildTickets > 0) {
+            merged.add(new TicketTypeRequest(TicketTypeRequest.Type.CHILD, batch.noOfChildTickets));
+        }
+        if (batch.noOfInfantTickets > 0) {
+            merged.add(new TicketTypeRequest(TicketTypeRequest.Type.INFANT, (int) batch.noOfInfantTickets));
+        }
+
+        CompletableFuture<PurchaseResult> mergedResult;
+        try {
+            mergedResult = ticketService.purchaseTicketsAsync(batch.accountId, merged.toArray(new TicketTypeRequest[0]));
+        } catch (RuntimeException e) {
+            mergedResult = CompletableFuture.failedFuture(e);
+        }
+        mergedResult.whenComplete((result, failure) -> complete(batch, result, failure));
+    }
+
+    private void complete(Batch batch, PurchaseResult mergedResult, Throwable failure) {
+        if (failure != null) {
+            for (Purchase purchase : batch.purchases) {
+                purchase.result.completeExceptionally(failure);
+            }
+            return;
+        }
+        if (!mergedResult.isSuccessful()) {
+            for (Purchase purchase : batch.purchases) {
+                purchase.result.complete(PurchaseResult.rejected(batch.accountId, mergedResult.getRejection()));
+            }
+            return;
+        }
+
+        // The prices may have changed since the merged purchase was priced, so shares use the prices it was charged at.
+        TicketPrices ticketPrices = mergedResult.getTicketPrices();
+        for (Purchase purchase : batch.purchases) {
+            purchase.result.complete(PurchaseResult.success(batch.accountId, (int) purchase.getPrice(ticketPrices),
+                    purchase.noOfAdultTickets + purchase.noOfChildTickets, ticketPrices));
+        }
+    }
+
+    /**
+     * Totals the tickets of each type in a single purchase, rejecting it if it could not be valid in any batch.
+     */
+    private static Purchase collate(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        if (accountId == null || accountId < 0) {
+            throw InvalidAccountException.stackless;
+        }
+        long noOfAdultTickets = 0;
+        long noOfChildTickets = 0;
+        long noOfInfantTickets = 0;
+        for (TicketTypeRequest ticketTypeRequest : ticketTypeRequests) {
+            int noOfTickets = ticketTypeRequest.getNoOfTickets();
+            if (noOfTickets < 0) {
+                throw InvalidNumberOfTicketsException.stackless;
+            }
+            TicketTypeRequest.Type type = ticketTypeRequest.getTicketType();
+            if (type == null) {
+                throw InvalidTicketTypeException.stackless;
+            }
+            switch (type) {
+                case ADULT:
+                    noOfAdultTickets += noOfTickets;
+                    break;
+                case CHILD:
+                    noOfChildTickets += noOfTickets;
+                    break;
+                default:
+                    noOfInfantTickets += noOfTickets;
+                    break;
+            }
+        }
+        if (noOfAdultTickets + noOfChildTickets > TicketServiceImpl.maxNoOfTicketsPerTransaction
+                || noOfInfantTickets > Integer.MAX_VALUE) {
+            throw InvalidNumberOfTicketsException.stackless;
+        }
+        return new Purchase((int) noOfAdultTickets, (int) noOfChildTickets, (int) noOfInfantTickets);
+    }
+
+    private void purchasePeriodically() {
+        while (!closed) {
+            LockSupport.parkNanos(this, tickNanos);
+            purchaseDueBatches();
+        }
+    }
+
+    /**
+     * One caller's purchase, with the future for its result.
+     */
+    private static final class Purchase {
+        final int noOfAdultTickets;
+        final int noOfChildTickets;
+        final int noOfInfantTickets;
+        final CompletableFuture<PurchaseResult> result = new CompletableFuture<PurchaseResult>();
+
+        Purchase(int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets) {
+            this.noOfAdultTickets = noOfAdultTickets;
+            this.noOfChildTickets = noOfChildTickets;
+            this.noOfInfantTickets = noOfInfantTickets;
+        }
+
+        long getPrice(TicketPrices ticketPrices) {
+            return (long) noOfAdultTickets * ticketPrices.getPriceInPence(TicketTypeRequest.Type.ADULT)
+                    + (long) noOfChildTickets * ticketPrices.getPriceInPence(TicketTypeRequest.Type.CHILD)
+                    + (long) noOfInfantTickets * ticketPrices.getPriceInPence(TicketTypeRequest.Type.INFANT);
+        }
+    }
+
+    /**
+     * Purchases for one account waiting to be merged. Purchases are only added, and closed only set, while holding
+     * the batch's monitor, and the purchases are only read after it is closed.
+     */
+    private static final class Batch {
+        final long accountId;
+        final List<Purchase> purchases = new ArrayList<Purchase>();
+        TimingWheel.Timeout<Batch> timeout;
+        boolean closed;
+        int noOfAdultTickets;
+        int noOfChildTickets;
+        long noOfInfantTickets;
+
+        Batch(long accountId) {
+            this.accountId = accountId;
+        }
+
+        boolean fits(Purchase purchase) {
+            return noOfAdultTickets + noOfChildTickets + purchase.noOfAdultTickets + purchase.noOfChildTickets
+                    <= TicketServiceImpl.maxNoOfTicketsPerTransaction
+                    && noOfInfantTickets + purchase.noOfInfantTickets <= Integer.MAX_VALUE;
+        }
+
+        void add(Purchase purchase) {
+            purchases.add(purchase);
+            noOfAdultTickets += purchase.noOfAdultTickets;
+            noOfChildTickets += purchase.noOfChildTickets;
+            noOfInfantTickets += purchase.noOfInfantTickets;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package uk.gov.dwp.uc.pairtest.codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Compact fixed-width binary encoding of a purchase, with the tickets of each type totalled:
+ * <pre>
+ *   offset  0  long  account id
+ *   offset  8  int   adult tickets
+ *   offset 12  int   child tickets
+ *   offset 16  int   infant tickets
+ * </pre>
+ * Fields are always big-endian, whatever the byte order set on the buffer, and work the same on heap and direct
+ * buffers. The absolute getters read a field in place without moving the buffer or creating any objects, so an
+ * encoded purchase can be validated straight from the buffer it arrived in.
+ */
+public final class PurchaseOrderCodec {
+
+    public static final int encodedLength = 20;
+
+    private static final int accountIdOffset = 0;
+    private static final int adultOffset = 8;
+    private static final int childOffset = 12;
+    private static final int infantOffset = 16;
+
+    private static final VarHandle longField = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle intField = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private PurchaseOrderCodec() {
+    }
+
+    /**
+     * Writes a purchase at the buffer's position and moves the position past it.
+     *
+     * @param buffer
+     * @param accountId
+     * @param noOfAdultTickets
+     * @param noOfChildTickets
+     * @param noOfInfantTickets
+     * @throws BufferOverflowException if fewer than encodedLength bytes remain.
+     */
+    public static void encode(ByteBuffer buffer, long accountId, int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets) {
+        int offset = buffer.position();
+        if (buffer.remaining() < encodedLength) {
+            throw new BufferOverflowException();
+        }
+        encode(buffer, offset, accountId, noOfAdultTickets, noOfChildTickets, noOfInfantTickets);
+        buffer.position(offset + encodedLength);
+    }
+
+    /**
+     * Writes a purchase at an absolute index, leaving the buffer's position alone, so that several threads can
+     * write different purchases into the same buffer.
+     *
+     * @param buffer
+     * @param offset Absolute index to write the purchase at
+     * @param accountId
+     * @param noOfAdultTickets
+     * @param noOfChildTickets
+     * @param noOfInfantTickets
+     * @throws IndexOutOfBoundsException if the purchase does not fit within the buffer's limit.
+     */
+    public static void encode(ByteBuffer buffer, int offset, long accountId, int noOfAdultTickets, int noOfChildTickets,
+            int noOfInfantTickets) {
+        longField.set(buffer, offset + accountIdOffset, accountId);
+        intField.set(buffer, offset + adultOffset, noOfAdultTickets);
+        intField.set(buffer, offset + childOffset, noOfChildTickets);
+        intField.set(buffer, offset + infantOffset, noOfInfantTickets);
+    }
+
+    /**
+     * Writes a purchase order at the buffer's position and moves the position past it. Requests for the same type
+     * are added together. Nothing is checked against the business rules, so an order that would be rejected is
+     * encoded as it is and rejected when purchased. A type with any negative request is encoded as -1 rather than
+     * its total, so the negative request is still rejected and cannot be cancelled out by another request.
+     *
+     * @param buffer
+     * @param purchaseOrder
+     * @throws IllegalArgumentException if the account is null, a request has no type, or a type's total does not
+     *         fit the field.
+     * @throws BufferOverflowException if fewer than encodedLength bytes remain.
+     */
+    public static void encode(ByteBuffer buffer, PurchaseOrder purchaseOrder) {
+        Long accountId = purchaseOrder.getAccountId();
+        if (accountId == null) {
+            throw new IllegalArgumentException("Account id cannot be null");
+        }
+        long noOfAdultTickets = 0;
+        long noOfChildTickets = 0;
+        long noOfInfantTickets = 0;
+        for (TicketTypeRequest ticketTypeRequest : purchaseOrder.getTicketTypeRequests()) {
+            TicketTypeRequest.Type type = ticketTypeRequest.getTicketType();
+            if (type == null) {
+                throw new IllegalArgumentException("Ticket type cannot be null");
+            }
+            switch (type) {
+                case ADULT:
+                    noOfAdultTickets = addTickets(noOfAdultTickets, ticketTypeRequest.getNoOfTickets());
+                    break;
+                case CHILD:
+                    noOfChildTickets = addTickets(noOfChildTickets, ticketTypeRequest.getNoOfTickets());
+                    break;
+                default:
+                    noOfInfantTickets = addTickets(noOfInfantTickets, ticketTypeRequest.getNoOfTickets());
+                    break;
+            }
+        }
+        encode(buffer, accountId, toField(noOfAdultTickets), toField(noOfChildTickets), toField(noOfInfantTickets));
+    }
+
+    /**
+     * Reads the purchase at the buffer's position into a new PurchaseOrder, with one request per type that has
+     * tickets, and moves the position past it. For callers that need the object form; the absolute getters do
+     * not allocate.
+     *
+     * @param buffer
+     * @return PurchaseOrder
+     * @throws BufferUnderflowException if fewer than encodedLength bytes remain.
+     */
+    public static PurchaseOrder decode(ByteBuffer buffer) {
+        int offset = buffer.position();
+        if (buffer.remaining() < encodedLength) {
+            throw new BufferUnderflowException();
+        }
+        int[] counts = {getNoOfAdultTickets(buffer, offset), getNoOfChildTickets(buffer, offset), getNoOfInfantTickets(buffer, offset)};
+        TicketTypeRequest.Type[] types = TicketTypeRequest.Type.values();
+        int noOfRequests = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                noOfRequests++;
+            }
+        }
+        TicketTypeRequest[] ticketTypeRequests = new TicketTypeRequest[noOfRequests];
+        int request = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                ticketTypeRequests[request++] = new TicketTypeRequest(types[i], counts[i]);
+            }
+        }
+        PurchaseOrder purchaseOrder = new PurchaseOrder(getAccountId(buffer, offset), ticketTypeRequests);
+        buffer.position(offset + encodedLength);
+        return purchaseOrder;
+    }
+
+    /**
+     * @param buffer
+     * @param offset Absolute index of the start of the encoded purchase
+     * @return Account id
+     * @throws IndexOutOfBoundsException if the purchase does not fit within the buffer's limit.
+     */
+    public static long getAccountId(ByteBuffer buffer, int offset) {
+        return (long) longField.get(buffer, offset + accountIdOffset);
+    }
+
+    public static int getNoOfAdultTickets(ByteBuffer buffer, int offset) {
+        return (int) intField.get(buffer, offset + adultOffset);
+    }
+
+    public static int getNoOfChildTickets(ByteBuffer buffer, int offset) {
+        return (int) intField.get(buffer, offset + childOffset);
+    }
+
+    public static int getNoOfInfantTickets(ByteBuffer buffer, int offset) {
+        return (int) intField.get(buffer, offset + infantOffset);
+    }
+
+    /**
+     * @return Total of a type with the tickets of another request added, or -1 once any request was negative
+     */
+    private static long addTickets(long noOfTickets, int noOfRequestedTickets) {
+        return (noOfTickets < 0 || noOfRequestedTickets < 0) ? -1 : noOfTickets + noOfRequestedTickets;
+    }
+
+    private static int toField(long noOfTickets) {
+        if (noOfTickets < Integer.MIN_VALUE || noOfTickets > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Total tickets of a type must fit in an int");
+        }
+        return (int) noOfTickets;
+    }
+}
@@ -0,0 +1,27 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Immutable Object
+ * 
+ * The account and ticket requests for a single purchase.
+ */
+
+public class PurchaseOrder {
+
+    private final Long accountId;
+    private final TicketTypeRequest[] ticketTypeRequests;
+
+    public PurchaseOrder(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        this.accountId = accountId;
+        this.ticketTypeRequests = ticketTypeRequests.clone();
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public TicketTypeRequest[] getTicketTypeRequests() {
+        return ticketTypeRequests.clone();
+    }
+
+}
@@ -0,0 +1,77 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidTicketTypeException;
+import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+
+/**
+ * How a purchase ended, with one value for each reason a purchase can be rejected.
+ */
+public enum PurchaseOutcome {
+    SUCCESS,
+    INVALID_ACCOUNT,
+    INVALID_NUMBER_OF_TICKETS,
+    INVALID_TICKET_TYPE,
+    UNACCOMPANIED_TICKETS,
+    // Rejected before the account was charged, as a gateway was overloaded, failing or timing out.
+    GATEWAY_UNAVAILABLE,
+    // Rejected with an InvalidPurchaseException that has no more specific outcome.
+    INVALID_PURCHASE,
+    // A payment or reservation call failed after the purchase was validated, including a reservation refused after
+    // payment.
+    GATEWAY_FAILURE;
+
+    /**
+     * Gets the outcome for a purchase rejected with the exception.
+     * 
+     * @param rejection Exception the purchase was rejected with
+     * @return PurchaseOutcome
+     */
+    public static PurchaseOutcome forRejection(InvalidPurchaseException rejection) {
+        if (rejection instanceof InvalidAccountException) {
+            return INVALID_ACCOUNT;
+        }
+        if (rejection instanceof InvalidNumberOfTicketsException) {
+            return INVALID_NUMBER_OF_TICKETS;
+        }
+        if (rejection instanceof InvalidTicketTypeException) {
+            return INVALID_TICKET_TYPE;
+        }
+        if (rejection instanceof UnaccompaniedTicketsException) {
+            return UNACCOMPANIED_TICKETS;
+        }
+        if (rejection instanceof GatewayUnavailableException) {
+            return GATEWAY_UNAVAILABLE;
+        }
+        return INVALID_PURCHASE;
+    }
+
+    /**
+     * Gets the shared stackless exception for a rejected outcome, so that a purchase reported by outcome can be
+     * rethrown without creating an exception.
+     * 
+     * @return Stackless exception that forRejection maps back to this outcome
+     * @throws IllegalArgumentException if the outcome is SUCCESS or GATEWAY_FAILURE, which are not rejections.
+     */
+    public InvalidPurchaseException getRejection() {
+        switch (this) {
+            case INVALID_ACCOUNT:
+                return InvalidAccountException.stackless;
+            case INVALID_NUMBER_OF_TICKETS:
+                return InvalidNumberOfTicketsException.stackless;
+            case INVALID_TICKET_TYPE:
+                return InvalidTicketTypeException.stackless;
+            case UNACCOMPANIED_TICKETS:
+                return UnaccompaniedTicketsException.stackless;
+            case GATEWAY_UNAVAILABLE:
+                return GatewayUnavailableException.stackless;
+            case INVALID_PURCHASE:
+                return InvalidPurchaseException.stackless;
+            default:
+                throw new IllegalArgumentException(this + " is not a rejection");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+
+/**
+ * Immutable Object
+ * 
+ * The outcome of a single purchase, either the amount paid and seats reserved, the reason it was rejected, or the
+ * gateway failure it ended with.
+ */
+
+public class PurchaseResult {
+
+    private final Long accountId;
+    private final int totalAmountPaid;
+    private final int noOfSeatsReserved;
+    private final TicketPrices ticketPrices;
+    private final InvalidPurchaseException rejection;
+    private final RuntimeException failure;
+
+    private PurchaseResult(Long accountId, int totalAmountPaid, int noOfSeatsReserved, TicketPrices ticketPrices,
+            InvalidPurchaseException rejection, RuntimeException failure) {
+        this.accountId = accountId;
+        this.totalAmountPaid = totalAmountPaid;
+        this.noOfSeatsReserved = noOfSeatsReserved;
+        this.ticketPrices = ticketPrices;
+        this.rejection = rejection;
+        this.failure = failure;
+    }
+
+    public static PurchaseResult success(Long accountId, int totalAmountPaid, int noOfSeatsReserved) {
+        return new PurchaseResult(accountId, totalAmountPaid, noOfSeatsReserved, null, null, null);
+    }
+
+    public static PurchaseResult success(Long accountId, int totalAmountPaid, int noOfSeatsReserved, TicketPrices ticketPrices) {
+        return new PurchaseResult(accountId, totalAmountPaid, noOfSeatsReserved, ticketPrices, null, null);
+    }
+
+    public static PurchaseResult rejected(Long accountId, InvalidPurchaseException rejection) {
+        return new PurchaseResult(accountId, 0, 0, null, rejection, null);
+    }
+
+    public static PurchaseResult failed(Long accountId, RuntimeException failure) {
+        return new PurchaseResult(accountId, 0, 0, null, null, failure);
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public boolean isSuccessful() {
+        return rejection == null && failure == null;
+    }
+
+    public int getTotalAmountPaid() {
+        return totalAmountPaid;
+    }
+
+    public int getNoOfSeatsReserved() {
+        return noOfSeatsReserved;
+    }
+
+    /**
+     * @return Prices the purchase was charged at, or null if it was not successful or the prices were not given.
+     */
+    public TicketPrices getTicketPrices() {
+        return ticketPrices;
+    }
+
+    /**
+     * @return The exception the purchase was rejected with, or null if it was successful or failed.
+     */
+    public InvalidPurchaseException getRejection() {
+        return rejection;
+    }
+
+    /**
+     * @return The gateway failure the purchase ended with, or null if it was successful or rejected.
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+}
@@ -0,0 +1,14 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+public class GatewayUnavailableException extends InvalidPurchaseException {
+
+    public static final GatewayUnavailableException stackless = new GatewayUnavailableException(false);
+
+    public GatewayUnavailableException() {
+    }
+
+    private GatewayUnavailableException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
+}
@@ -1,5 +1,14 @@
 package uk.gov.dwp.uc.pairtest.exception;
 
 public class InvalidAccountException extends InvalidPurchaseException {
-    
+
+    public static final InvalidAccountException stackless = new InvalidAccountException(false);
+
+    public InvalidAccountException() {
+    }
+
+    private InvalidAccountException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
 }
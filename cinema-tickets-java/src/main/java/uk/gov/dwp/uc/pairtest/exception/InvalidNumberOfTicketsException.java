@@ -1,5 +1,14 @@
 package uk.gov.dwp.uc.pairtest.exception;
 
 public class InvalidNumberOfTicketsException extends InvalidPurchaseException {
-    
+
+    public static final InvalidNumberOfTicketsException stackless = new InvalidNumberOfTicketsException(false);
+
+    public InvalidNumberOfTicketsException() {
+    }
+
+    private InvalidNumberOfTicketsException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
 }
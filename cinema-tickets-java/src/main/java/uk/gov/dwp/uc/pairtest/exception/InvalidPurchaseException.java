@@ -1,5 +1,19 @@
 package uk.gov.dwp.uc.pairtest.exception;
 
+/**
+ * Thrown when a purchase is rejected. Rejections are common, so each exception has a shared stackless instance
+ * that the business rules throw instead of constructing a new exception and filling in its stack trace every time.
+ * A stackless instance has no stack trace, and no cause or suppressed exceptions can be added to it.
+ */
 public class InvalidPurchaseException extends RuntimeException {
 
+    public static final InvalidPurchaseException stackless = new InvalidPurchaseException(false);
+
+    public InvalidPurchaseException() {
+    }
+
+    protected InvalidPurchaseException(boolean writableStackTrace) {
+        super(null, null, false, writableStackTrace);
+    }
+
 }
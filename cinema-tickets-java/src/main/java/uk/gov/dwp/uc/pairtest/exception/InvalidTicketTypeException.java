@@ -1,5 +1,14 @@
 package uk.gov.dwp.uc.pairtest.exception;
 
 public class InvalidTicketTypeException extends InvalidPurchaseException {
-    
+
+    public static final InvalidTicketTypeException stackless = new InvalidTicketTypeException(false);
+
+    public InvalidTicketTypeException() {
+    }
+
+    private InvalidTicketTypeException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
 }
@@ -0,0 +1,14 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+/**
+ * Thrown when seats could not be reserved for a purchase that has already been paid for. This is a failure rather
+ * than a rejection, even when the reservation was refused with an InvalidPurchaseException, as the account has been
+ * charged. With a PurchaseJournal the purchase is left paid but not reserved, for recovery to replay.
+ */
+public class ReservationFailedException extends RuntimeException {
+
+    public ReservationFailedException(Throwable cause) {
+        super("Seats not reserved after payment", cause);
+    }
+
+}
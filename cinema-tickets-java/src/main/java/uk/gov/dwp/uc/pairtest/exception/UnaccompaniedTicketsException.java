@@ -1,5 +1,14 @@
 package uk.gov.dwp.uc.pairtest.exception;
 
 public class UnaccompaniedTicketsException extends InvalidPurchaseException {
-    
+
+    public static final UnaccompaniedTicketsException stackless = new UnaccompaniedTicketsException(false);
+
+    public UnaccompaniedTicketsException() {
+    }
+
+    private UnaccompaniedTicketsException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
 }
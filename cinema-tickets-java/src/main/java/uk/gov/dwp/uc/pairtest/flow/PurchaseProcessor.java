@@ -0,0 +1,229 @@
+package uk.gov.dwp.uc.pairtest.flow;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+
+/**
+ * Purchases a stream of orders, publishing a result for each order downstream in the order the orders arrived.
+ *
+ * Each order goes through purchaseTicketsAsync, so it is validated with the business rules on the thread delivering
+ * it and only valid orders wait on the gateways. Orders are only requested from upstream while fewer than
+ * maxInFlight are outstanding, counting orders calling the gateways and results waiting for an earlier, slower
+ * order or for demand from downstream. A slow gateway or a slow subscriber therefore slows the rate orders are
+ * requested at, rather than growing a queue, and memory use is fixed by maxInFlight however fast orders arrive.
+ *
+ * A gateway call that fails is published as a rejection with a GatewayUnavailableException caused by the failure,
+ * so one failed order does not end the stream. When upstream completes or fails, the results still outstanding are
+ * published first. Only one subscriber is supported.
+ */
+public class PurchaseProcessor implements Flow.Processor<PurchaseOrder, PurchaseResult> {
+
+    private final TicketService ticketService;
+    private final int maxInFlight;
+
+    // Outstanding orders in arrival order, bounded by maxInFlight as only that many are ever requested.
+    private final Queue<CompletableFuture<PurchaseResult>> outstanding = new ConcurrentLinkedQueue<CompletableFuture<PurchaseResult>>();
+    private final AtomicInteger noOfOutstanding = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    // Number of times drain was called while it was running, so only one thread signals downstream at a time.
+    private final AtomicInteger drainCalls = new AtomicInteger();
+    private final AtomicReference<Flow.Subscriber<? super PurchaseResult>> subscriber = new AtomicReference<Flow.Subscriber<? super PurchaseResult>>();
+
+    private volatile Flow.Subscription upstream;
+    private volatile boolean subscribed;
+    private volatile boolean upstreamDone;
+    private volatile Throwable error;
+    private volatile boolean cancelUpstream;
+    private volatile boolean cancelled;
+    private boolean terminated;
+
+    /**
+     * @param ticketService Service to purchase each order through
+     * @param maxInFlight Maximum orders outstanding at once, at least one
+     * @throws IllegalArgumentException if maxInFlight is less than one.
+     */
+    public PurchaseProcessor(TicketService ticketService, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least one");
+        }
+        this.ticketService = ticketService;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(PurchaseOrder purchaseOrder) {
+        if (purchaseOrder == null) {
+            throw new NullPointerException("purchaseOrder");
+        }
+        if (upstreamDone || cancelled) {
+            return;
+        }
+        if (noOfOutstanding.incrementAndGet() > maxInFlight) {
+            noOfOutstanding.decrementAndGet();
+            fail(new IllegalStateException("More orders were sent than requested"));
+            return;
+        }
+        CompletableFuture<PurchaseResult> result;
+        try {
+            result = ticketService.purchaseTicketsAsync(purchaseOrder.getAccountId(), purchaseOrder.getTicketTypeRequests());
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        // Drain once the result to publish is complete, not the purchase, as a dependent of a future may run before
+        // another added earlier.
+        CompletableFuture<PurchaseResult> publishable = result.exceptionally(e -> gatewayFailed(purchaseOrder.getAccountId(), e));
+        outstanding.add(publishable);
+        publishable.whenComplete((purchaseResult, e) -> drain());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PurchaseResult> downstream) {
+        if (!subscriber.compareAndSet(null, downstream)) {
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            downstream.onError(new IllegalStateException("PurchaseProcessor supports only one subscriber"));
+            return;
+        }
+        downstream.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Demand must be positive, was " + n));
+                    return;
+                }
+                requested.getAndAccumulate(n, (current, added) -> (current + added < 0) ? Long.MAX_VALUE : current + added);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream = true;
+                drain();
+            }
+        });
+        subscribed = true;
+        drain();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return Number of orders calling the gateways or with results not yet published
+     */
+    public int getNoOfOutstanding() {
+        return noOfOutstanding.get();
+    }
+
+    private static PurchaseResult gatewayFailed(Long accountId, Throwable failure) {
+        GatewayUnavailableException rejection = new GatewayUnavailableException();
+        rejection.initCause((failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure);
+        return PurchaseResult.rejected(accountId, rejection);
+    }
+
+    /**
+     * Ends the stream with the error once the results already outstanding are published, and stops upstream.
+     */
+    private void fail(Throwable throwable) {
+        error = throwable;
+        upstreamDone = true;
+        cancelUpstream = true;
+        drain();
+    }
+
+    /**
+     * Publishes completed results at the head of the queue while there is demand, requests as many orders again
+     * from upstream, and passes on completion once nothing is outstanding. Runs on whichever thread calls it
+     * first, which carries on until no other thread has called it in the meantime.
+     */
+    private void drain() {
+        if (drainCalls.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscription subscription = upstream;
+            if (cancelUpstream && subscription != null) {
+                cancelUpstream = false;
+                subscription.cancel();
+            }
+            if (cancelled) {
+                while (outstanding.poll() != null) {
+                    noOfOutstanding.decrementAndGet();
+                }
+            } else if (subscribed && !terminated) {
+                Flow.Subscriber<? super PurchaseResult> downstream = subscriber.get();
+                long demand = requested.get();
+                long published = 0;
+                CompletableFuture<PurchaseResult> head;
+                while (published != demand && (head = outstanding.peek()) != null && head.isDone()) {
+                    outstanding.poll();
+                    noOfOutstanding.decrementAndGet();
+                    downstream.onNext(head.join());
+                    published++;
+                }
+                if (published != 0) {
+                    if (demand != Long.MAX_VALUE) {
+                        requested.addAndGet(-published);
+                    }
+                    if (!upstreamDone && subscription != null) {
+                        subscription.request(published);
+                    }
+                }
+                if (upstreamDone && outstanding.isEmpty()) {
+                    terminated = true;
+                    Throwable throwable = error;
+                    if (throwable != null) {
+                        downstream.onError(throwable);
+                    } else {
+                        downstream.onComplete();
+                    }
+                }
+            }
+            missed = drainCalls.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,75 @@
+package uk.gov.dwp.uc.pairtest.hold;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import uk.gov.dwp.uc.pairtest.timer.TimingWheel;
+
+/**
+ * A block of adjacent seats held for an account by SeatHoldService until it is confirmed, released or expires.
+ *
+ * The hold itself is the handle passed back to confirm or release, so neither needs to look it up.
+ */
+public class SeatHold {
+
+    public enum State {
+        HELD, CONFIRMED, RELEASED, EXPIRED
+    }
+
+    private static final AtomicReferenceFieldUpdater<SeatHold, State> stateUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(SeatHold.class, State.class, "state");
+
+    private final long accountId;
+    private final int firstSeat;
+    private final int noOfSeats;
+    private final long expiresAtNanos;
+    private volatile State state = State.HELD;
+
+    // Set by SeatHoldService before the hold is returned, null when there are no seats to expire.
+    TimingWheel.Timeout<SeatHold> timeout;
+
+    SeatHold(long accountId, int firstSeat, int noOfSeats, long expiresAtNanos) {
+        this.accountId = accountId;
+        this.firstSeat = firstSeat;
+        this.noOfSeats = noOfSeats;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return Number of the first seat held, or -1 if no seats were requested.
+     */
+    public int getFirstSeat() {
+        return firstSeat;
+    }
+
+    public int getNoOfSeats() {
+        return noOfSeats;
+    }
+
+    /**
+     * @return System.nanoTime style timestamp after which the hold may expire.
+     */
+    public long getExpiresAtNanos() {
+        return expiresAtNanos;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Moves the hold out of HELD. Only one of confirm, release and expiry can succeed, whichever gets here first.
+     */
+    boolean end(State newState) {
+        return stateUpdater.compareAndSet(this, State.HELD, newState);
+    }
+
+    @Override
+    public String toString() {
+        return "SeatHold[accountId=" + accountId + ", firstSeat=" + firstSeat + ", noOfSeats=" + noOfSeats + ", state=" + state + "]";
+    }
+
+}
@@ -0,0 +1,13 @@
+package uk.gov.dwp.uc.pairtest.hold;
+
+/**
+ * Thrown when confirming a seat hold that has already expired or been released, so its seats may have gone to
+ * someone else.
+ */
+public class SeatHoldExpiredException extends RuntimeException {
+
+    public SeatHoldExpiredException(String message) {
+        super(message);
+    }
+
+}
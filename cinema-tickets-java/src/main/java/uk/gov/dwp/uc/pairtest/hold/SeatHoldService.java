@@ -0,0 +1,178 @@
+package uk.gov.dwp.uc.pairtest.hold;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import thirdparty.seatbooking.InventorySeatReservationService;
+import thirdparty.seatbooking.ScreeningSeats;
+import thirdparty.seatbooking.SeatReservationService;
+import thirdparty.seatbooking.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.timer.TimingWheel;
+
+/**
+ * Two-phase seat reservation for one screening: seats are held first, and the hold is then either confirmed once
+ * payment has been taken, or released. Holds that are neither confirmed nor released within the hold duration
+ * expire and their seats go back on sale.
+ *
+ * Expiry is tracked in a TimingWheel rather than a scheduled task per hold, so holding and confirming stay O(1)
+ * however many holds are open, and a background thread only visits holds as they expire. Holds expire up to one
+ * tick after their hold duration.
+ *
+ * As a SeatReservationService, each reservation is held and confirmed straight away, so the same screening can be
+ * booked through either flow.
+ */
+public class SeatHoldService implements SeatReservationService, Closeable {
+
+    public static final Duration defaultTickDuration = Duration.ofMillis(10);
+
+    private final ScreeningSeats screeningSeats;
+    private final InventorySeatReservationService inventorySeatReservationService;
+    private final long holdNanos;
+    private final long tickNanos;
+    private final LongSupplier nanoClock;
+    private final TimingWheel<SeatHold> timingWheel;
+    private final Thread expirer;
+    private volatile boolean closed;
+
+    public SeatHoldService(ScreeningSeats screeningSeats, Duration holdDuration) {
+        this(screeningSeats, holdDuration, defaultTickDuration, System::nanoTime);
+    }
+
+    /**
+     * Creates the service and starts its expiry thread.
+     *
+     * @param screeningSeats Seats of the screening
+     * @param holdDuration How long seats are held without being confirmed
+     * @param tickDuration How often expired holds are released
+     * @param nanoClock Source of System.nanoTime style timestamps
+     */
+    public SeatHoldService(ScreeningSeats screeningSeats, Duration holdDuration, Duration tickDuration, LongSupplier nanoClock) {
+        if (holdDuration.isNegative() || holdDuration.isZero()) {
+            throw new IllegalArgumentException("holdDuration must be positive");
+        }
+        this.screeningSeats = screeningSeats;
+        this.inventorySeatReservationService = new InventorySeatReservationService(screeningSeats);
+        this.holdNanos = holdDuration.toNanos();
+        this.tickNanos = tickDuration.toNanos();
+        this.nanoClock = nanoClock;
+        this.timingWheel = new TimingWheel<SeatHold>(tickDuration, nanoClock.getAsLong());
+
+        expirer = new Thread(this::expirePeriodically, "seat-hold-expirer");
+        expirer.setDaemon(true);
+        expirer.start();
+    }
+
+    /**
+     * Holds a block of adjacent seats for the account.
+     *
+     * @param accountId Account the seats are for
+     * @param noOfSeats Number of seats
+     * @return The hold, to confirm or release
+     * @throws SeatsUnavailableException if no row has enough adjacent free seats.
+     */
+    public SeatHold hold(long accountId, int noOfSeats) {
+        int firstSeat = inventorySeatReservationService.reserveBlock(accountId, noOfSeats);
+        SeatHold seatHold = new SeatHold(accountId, firstSeat, noOfSeats, nanoClock.getAsLong() + holdNanos);
+        if (noOfSeats > 0) {
+            seatHold.timeout = timingWheel.schedule(seatHold, seatHold.getExpiresAtNanos());
+        }
+        return seatHold;
+    }
+
+    /**
+     * Makes a hold permanent. Confirming a hold that is already confirmed does nothing.
+     *
+     * @throws SeatHoldExpiredException if the hold has expired or been released.
+     */
+    public void confirm(SeatHold seatHold) {
+        if (seatHold.end(SeatHold.State.CONFIRMED)) {
+            cancelTimeout(seatHold);
+        } else if (seatHold.getState() != SeatHold.State.CONFIRMED) {
+            throw new SeatHoldExpiredException("Hold of " + seatHold.getNoOfSeats() + " seats for account "
+                    + seatHold.getAccountId() + " has " + seatHold.getState().name().toLowerCase());
+        }
+    }
+
+    /**
+     * Puts the held seats back on sale.
+     *
+     * @return true if the seats were released, false if the hold had already been confirmed, released or expired.
+     */
+    public boolean release(SeatHold seatHold) {
+        if (!seatHold.end(SeatHold.State.RELEASED)) {
+            return false;
+        }
+        cancelTimeout(seatHold);
+        releaseSeats(seatHold);
+        return true;
+    }
+
+    /**
+     * Reserves seats by holding and immediately confirming them.
+     *
+     * @throws SeatsUnavailableException if no row has enough adjacent free seats.
+     */
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        confirm(hold(accountId, totalSeatsToAllocate));
+    }
+
+    /**
+     * Releases the seats of every hold that has passed its hold duration. Called by the expiry thread once per tick.
+     *
+     * @return Number of holds expired
+     */
+    public int expireHolds() {
+        return timingWheel.advance(nanoClock.getAsLong(), this::expire);
+    }
+
+    /**
+     * @return Number of holds waiting to be confirmed or released
+     */
+    public int getNoOfOpenHolds() {
+        return timingWheel.size();
+    }
+
+    /**
+     * Stops the expiry thread. Open holds are left as they are.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(expirer);
+        try {
+            expirer.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void expire(SeatHold seatHold) {
+        // A hold confirmed or released since it was taken off the wheel keeps its seats as they are.
+        if (seatHold.end(SeatHold.State.EXPIRED)) {
+            releaseSeats(seatHold);
+        }
+    }
+
+    private void cancelTimeout(SeatHold seatHold) {
+        if (seatHold.timeout != null) {
+            timingWheel.cancel(seatHold.timeout);
+        }
+    }
+
+    private void releaseSeats(SeatHold seatHold) {
+        if (seatHold.getNoOfSeats() > 0) {
+            screeningSeats.releaseBlock(seatHold.getFirstSeat(), seatHold.getNoOfSeats());
+        }
+    }
+
+    private void expirePeriodically() {
+        while (!closed) {
+            LockSupport.parkNanos(this, tickNanos);
+            expireHolds();
+        }
+    }
+}
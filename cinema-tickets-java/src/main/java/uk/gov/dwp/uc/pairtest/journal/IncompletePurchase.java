@@ -0,0 +1,55 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+/**
+ * Immutable Object
+ * 
+ * A purchase found in the journal that did not complete before the service stopped.
+ */
+
+public class IncompletePurchase {
+
+    private final long purchaseId;
+    private final long accountId;
+    private final int totalAmountToPay;
+    private final int noOfSeatsToReserve;
+    private final boolean paid;
+
+    public IncompletePurchase(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve, boolean paid) {
+        this.purchaseId = purchaseId;
+        this.accountId = accountId;
+        this.totalAmountToPay = totalAmountToPay;
+        this.noOfSeatsToReserve = noOfSeatsToReserve;
+        this.paid = paid;
+    }
+
+    public long getPurchaseId() {
+        return purchaseId;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public int getTotalAmountToPay() {
+        return totalAmountToPay;
+    }
+
+    public int getNoOfSeatsToReserve() {
+        return noOfSeatsToReserve;
+    }
+
+    /**
+     * @return true if the payment was recorded as taken, so only the reservation is missing. If false, the
+     *         purchase stopped around the payment call, and whether the account was charged is unknown.
+     */
+    public boolean isPaid() {
+        return paid;
+    }
+
+    @Override
+    public String toString() {
+        return "IncompletePurchase[purchaseId=" + purchaseId + ", accountId=" + accountId + ", totalAmountToPay="
+                + totalAmountToPay + ", noOfSeatsToReserve=" + noOfSeatsToReserve + ", paid=" + paid + "]";
+    }
+
+}
@@ -0,0 +1,11 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+public interface IncompletePurchaseHandler {
+
+    /**
+     * Completes or compensates a purchase found incomplete on recovery. The purchase is marked as resolved in the
+     * journal once this returns, and is offered again on the next recovery if it throws.
+     */
+    void resolve(IncompletePurchase incompletePurchase);
+
+}
@@ -0,0 +1,628 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only journal of purchase progress, written to memory-mapped files so that a purchase that was paid for
+ * but not reserved can be found after the JVM stops.
+ * 
+ * Each purchase writes fixed size records as it passes each step: INTENT before payment, PAID after payment and
+ * RESERVED after the reservation, or RESOLVED if it failed before being charged. Only the INTENT record is waited
+ * for, so that no payment is taken without a durable record of it. Records are forced to disk by a background
+ * thread as soon as a purchase is waiting, and otherwise once per flush interval. Every record written while a
+ * force is in progress shares the next one, so one fsync covers many purchases under load (group commit).
+ * 
+ * Record layout, 32 bytes each:
+ * <pre>
+ *   0  long  purchaseId
+ *   8  long  accountId
+ *  16  int   totalAmountToPay
+ *  20  int   noOfSeatsToReserve
+ *  24  byte  record type, zero marks the end of the journal
+ *  28  int   checksum of the fields above, to detect a record torn by a crash
+ * </pre>
+ * 
+ * The journal is a directory of fixed size segment files, each named with its sequence number and the first
+ * purchase id whose INTENT record it may hold. When the current segment is full it is forced to disk and a new one started. Once every
+ * purchase started in the oldest segment has been reserved or resolved, that segment is deleted, so a journal whose
+ * purchases complete stays a few segments long however many purchases it records. Segments are only ever deleted
+ * oldest first, so the records that complete a purchase are never deleted ahead of the records that start it.
+ */
+public class PurchaseJournal implements Closeable {
+
+    public static final int recordSize = 32;
+
+    static final byte recordIntent = 1;
+    static final byte recordPaid = 2;
+    static final byte recordReserved = 3;
+    static final byte recordResolved = 4;
+
+    private static final int accountIdOffset = 8;
+    private static final int totalAmountOffset = 16;
+    private static final int noOfSeatsOffset = 20;
+    private static final int typeOffset = 24;
+    private static final int checksumOffset = 28;
+
+    private static final String segmentPrefix = "purchases-";
+    private static final String segmentSuffix = ".journal";
+
+    private final Path directory;
+    private final int segmentCapacity;
+    private final long flushIntervalNanos;
+
+    // Oldest first, the last being the segment written to. Only change while holding appendLock.
+    private final List<Segment> segments;
+    // The current segment's file, swapped while holding both appendLock and durableLock when the segment rolls.
+    private Segment current;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private final Thread flusher;
+
+    // Only change while holding appendLock. writePosition is volatile so the flusher can read it. Positions count
+    // across segments, each segment starting where the one before it ends.
+    private long nextPurchaseId;
+    private volatile long writePosition;
+    private volatile boolean closed;
+    private volatile long durablePosition;
+    private volatile IOException flushFailure;
+
+    private final Map<Long, IncompletePurchase> incompleteOnOpen;
+
+    private PurchaseJournal(Path directory, List<Segment> segments, int segmentCapacity, Duration flushInterval) throws IOException {
+        this.directory = directory;
+        this.segments = segments;
+        this.segmentCapacity = segmentCapacity;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.incompleteOnOpen = scan();
+        this.durablePosition = writePosition;
+        deleteCompletedSegments();
+
+        flusher = new Thread(this::flushPeriodically, "purchase-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Opens a journal, creating its directory if it does not exist, and scans its segments for purchases that did
+     * not complete.
+     * 
+     * @param directory Directory holding the journal's segment files
+     * @param segmentCapacityInRecords Number of records each new segment can hold
+     * @param flushInterval How often written records are forced to disk
+     * @return PurchaseJournal
+     * @throws IOException if the directory or a segment cannot be opened or mapped.
+     */
+    public static PurchaseJournal open(Path directory, int segmentCapacityInRecords, Duration flushInterval) throws IOException {
+        if (segmentCapacityInRecords < 1 || segmentCapacityInRecords > Integer.MAX_VALUE / recordSize) {
+            throw new IllegalArgumentException("segmentCapacityInRecords must be between 1 and " + Integer.MAX_VALUE / recordSize);
+        }
+        Files.createDirectories(directory);
+        List<Segment> segments = new ArrayList<Segment>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, segmentPrefix + "*" + segmentSuffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String[] fields = name.substring(segmentPrefix.length(), name.length() - segmentSuffix.length()).split("-");
+                try {
+                    segments.add(new Segment(file, Long.parseLong(fields[0]), Long.parseLong(fields[1])));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Not a journal segment: " + file);
+                }
+            }
+        }
+        Collections.sort(segments, (a, b) -> Long.compare(a.sequence, b.sequence));
+        if (segments.isEmpty()) {
+            segments.add(new Segment(segmentPath(directory, 0, 0), 0, 0));
+        }
+        return new PurchaseJournal(directory, segments, segmentCapacityInRecords * recordSize, flushInterval);
+    }
+
+    /**
+     * Records that a purchase is about to be charged, and waits until the record is durable.
+     * 
+     * @return Id of the purchase, for the records of its later steps
+     */
+    public long recordIntent(long accountId, int totalAmountToPay, int noOfSeatsToReserve) {
+        appendLock.lock();
+        long purchaseId;
+        long position;
+        try {
+            purchaseId = nextPurchaseId++;
+            position = append(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, recordIntent);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(position + recordSize);
+        return purchaseId;
+    }
+
+    /**
+     * Records that a batch of purchases is about to be charged, and waits once until all the records are durable.
+     * 
+     * @return Id of the first purchase, the others following on consecutively in the order given
+     */
+    public long recordIntents(long[] accountIds, int[] totalAmountsToPay, int[] totalSeatsToAllocate) {
+        if (accountIds.length == 0) {
+            return -1;
+        }
+        appendLock.lock();
+        long firstPurchaseId = nextPurchaseId;
+        long position;
+        try {
+            position = writePosition;
+            for (int i = 0; i < accountIds.length; i++) {
+                position = append(nextPurchaseId++, accountIds[i], totalAmountsToPay[i], totalSeatsToAllocate[i], recordIntent);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(position + recordSize);
+        return firstPurchaseId;
+    }
+
+    public void recordPaid(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve) {
+        appendUnderLock(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, recordPaid);
+    }
+
+    public void recordReserved(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve) {
+        appendUnderLock(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, recordReserved);
+    }
+
+    /**
+     * Records that a purchase needs no recovery, for example because its payment was declined.
+     */
+    public void recordResolved(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve) {
+        appendUnderLock(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, recordResolved);
+    }
+
+    /**
+     * Records that a batch of purchases from recordIntents has been paid for.
+     */
+    public void recordPaid(long firstPurchaseId, long[] accountIds, int[] totalAmountsToPay, int[] totalSeatsToAllocate) {
+        appendBatchUnderLock(firstPurchaseId, accountIds, totalAmountsToPay, totalSeatsToAllocate, recordPaid);
+    }
+
+    /**
+     * Records that a batch of purchases from recordIntents has had seats reserved.
+     */
+    public void recordReserved(long firstPurchaseId, long[] accountIds, int[] totalAmountsToPay, int[] totalSeatsToAllocate) {
+        appendBatchUnderLock(firstPurchaseId, accountIds, totalAmountsToPay, totalSeatsToAllocate, recordReserved);
+    }
+
+    /**
+     * Records that a batch of purchases from recordIntents needs no recovery.
+     */
+    public void recordResolved(long firstPurchaseId, long[] accountIds, int[] totalAmountsToPay, int[] totalSeatsToAllocate) {
+        appendBatchUnderLock(firstPurchaseId, accountIds, totalAmountsToPay, totalSeatsToAllocate, recordResolved);
+    }
+
+    /**
+     * @return Purchases that were incomplete when the journal was opened, in the order they started.
+     */
+    public List<IncompletePurchase> getIncompletePurchases() {
+        synchronized (incompleteOnOpen) {
+            return new ArrayList<IncompletePurchase>(incompleteOnOpen.values());
+        }
+    }
+
+    /**
+     * Passes each purchase that was incomplete when the journal was opened to the handler, marking it resolved once
+     * handled. Call on startup before taking new purchases.
+     * 
+     * @param handler Completes or compensates each purchase
+     * @return Number of purchases resolved
+     */
+    public int recover(IncompletePurchaseHandler handler) {
+        int resolved = 0;
+        for (IncompletePurchase incompletePurchase : getIncompletePurchases()) {
+            handler.resolve(incompletePurchase);
+            recordResolved(incompletePurchase.getPurchaseId(), incompletePurchase.getAccountId(),
+                    incompletePurchase.getTotalAmountToPay(), incompletePurchase.getNoOfSeatsToReserve());
+            synchronized (incompleteOnOpen) {
+                incompleteOnOpen.remove(incompletePurchase.getPurchaseId());
+            }
+            resolved++;
+        }
+        flush();
+        return resolved;
+    }
+
+    /**
+     * Forces everything written so far to disk on the calling thread.
+     */
+    public void flush() {
+        forceTo(writePosition);
+    }
+
+    /**
+     * @return Number of records that can still be written before the journal rolls to a new segment
+     */
+    public int getRemainingRecords() {
+        appendLock.lock();
+        try {
+            return (int) ((current.startPosition + current.capacity - writePosition) / recordSize);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of segment files, including the one being written to
+     */
+    public int getNoOfSegments() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        forceTo(writePosition);
+        channel.close();
+    }
+
+    private void appendBatchUnderLock(long firstPurchaseId, long[] accountIds, int[] totalAmountsToPay, int[] totalSeatsToAllocate, byte type) {
+        appendLock.lock();
+        try {
+            for (int i = 0; i < accountIds.length; i++) {
+                append(firstPurchaseId + i, accountIds[i], totalAmountsToPay[i], totalSeatsToAllocate[i], type);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void appendUnderLock(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve, byte type) {
+        appendLock.lock();
+        try {
+            append(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, type);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a record at the end of the journal, rolling to a new segment if the current one is full. Must hold
+     * appendLock.
+     * 
+     * @return Position the record was written at
+     */
+    private long append(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve, byte type) {
+        if (closed) {
+            throw new IllegalStateException("Purchase journal is closed");
+        }
+        if (writePosition + recordSize > current.startPosition + current.capacity) {
+            // An INTENT record has already taken its id, so the new segment starts from it.
+            roll(type == recordIntent ? purchaseId : nextPurchaseId);
+        }
+        long position = writePosition;
+        int offset = (int) (position - current.startPosition);
+        buffer.putLong(offset, purchaseId);
+        buffer.putLong(offset + accountIdOffset, accountId);
+        buffer.putInt(offset + totalAmountOffset, totalAmountToPay);
+        buffer.putInt(offset + noOfSeatsOffset, noOfSeatsToReserve);
+        buffer.putInt(offset + checksumOffset, checksum(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, type));
+        // The type is written last, as a zero type marks the end of the journal.
+        buffer.put(offset + typeOffset, type);
+        writePosition = position + recordSize;
+
+        if (type == recordIntent) {
+            current.noOfOpenPurchases++;
+        } else if (type == recordReserved || type == recordResolved) {
+            complete(purchaseId);
+        }
+        return position;
+    }
+
+    /**
+     * Forces the current segment to disk and starts a new one. Must hold appendLock.
+     */
+    private void roll(long firstPurchaseId) {
+        Segment next = new Segment(segmentPath(directory, current.sequence + 1, firstPurchaseId), current.sequence + 1, firstPurchaseId);
+        next.startPosition = current.startPosition + current.capacity;
+        next.capacity = segmentCapacity;
+        FileChannel nextChannel;
+        MappedByteBuffer nextBuffer;
+        try {
+            nextChannel = FileChannel.open(next.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                nextBuffer = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, next.capacity);
+            } catch (IOException | RuntimeException e) {
+                nextChannel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Purchase journal could not start a new segment", e);
+        }
+
+        FileChannel previousChannel = channel;
+        durableLock.lock();
+        try {
+            // Everything in the old segment is made durable before anything is written to the new one, so a scan
+            // never finds a gap in an earlier segment.
+            long from = durablePosition;
+            if (writePosition > from) {
+                buffer.force((int) (from - current.startPosition), (int) (writePosition - from));
+            }
+            current = next;
+            channel = nextChannel;
+            buffer = nextBuffer;
+            writePosition = next.startPosition;
+            durablePosition = next.startPosition;
+            durableAdvanced.signalAll();
+        } catch (UncheckedIOException e) {
+            flushFailure = e.getCause();
+            durableAdvanced.signalAll();
+            closeAndDelete(nextChannel, next.path);
+            throw e;
+        } finally {
+            durableLock.unlock();
+        }
+        segments.add(next);
+        try {
+            previousChannel.close();
+        } catch (IOException e) {
+            // Already forced, and closing a channel does not affect its mapping.
+        }
+        deleteCompletedSegments();
+    }
+
+    private static void closeAndDelete(FileChannel segmentChannel, Path path) {
+        try {
+            segmentChannel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // An empty segment is read as having no records.
+        }
+    }
+
+    /**
+     * Counts a purchase as complete in the segment holding its INTENT record, the latest that may hold it. Must hold
+     * appendLock.
+     */
+    private void complete(long purchaseId) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.firstPurchaseId <= purchaseId) {
+                if (segment.noOfOpenPurchases > 0) {
+                    segment.noOfOpenPurchases--;
+                    if (i == 0) {
+                        deleteCompletedSegments();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes segments from the oldest while every purchase started in them is complete, never the current one. A
+     * segment that cannot be deleted is tried again next time, and keeps every segment after it. Must hold
+     * appendLock.
+     */
+    private void deleteCompletedSegments() {
+        while (segments.size() > 1 && segments.get(0).noOfOpenPurchases == 0) {
+            try {
+                Files.deleteIfExists(segments.get(0).path);
+            } catch (IOException e) {
+                return;
+            }
+            segments.remove(0);
+        }
+    }
+
+    /**
+     * Reads every segment from the oldest, finding where to append and which purchases are incomplete. Each
+     * segment's scan stops at its first empty or torn record, which in the last segment later writes overwrite.
+     */
+    private Map<Long, IncompletePurchase> scan() throws IOException {
+        Map<Long, IncompletePurchase> incomplete = new LinkedHashMap<Long, IncompletePurchase>();
+        long startPosition = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            FileChannel segmentChannel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long size = segmentChannel.size();
+                // A segment keeps the size it was created with, even if the journal is now opened with another.
+                segment.capacity = (size >= recordSize && size <= Integer.MAX_VALUE) ? (int) (size - size % recordSize) : segmentCapacity;
+                segment.startPosition = startPosition;
+                MappedByteBuffer segmentBuffer = segmentChannel.map(last ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        0, segment.capacity);
+                int end = scan(segmentBuffer, segment.capacity, incomplete);
+                if (last) {
+                    current = segment;
+                    channel = segmentChannel;
+                    buffer = segmentBuffer;
+                    writePosition = startPosition + end;
+                    segmentChannel = null;
+                }
+            } finally {
+                if (segmentChannel != null) {
+                    segmentChannel.close();
+                }
+            }
+            startPosition += segment.capacity;
+        }
+
+        for (IncompletePurchase incompletePurchase : incomplete.values()) {
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                if (segments.get(i).firstPurchaseId <= incompletePurchase.getPurchaseId()) {
+                    segments.get(i).noOfOpenPurchases++;
+                    break;
+                }
+            }
+        }
+        nextPurchaseId = Math.max(nextPurchaseId, current.firstPurchaseId);
+        return incomplete;
+    }
+
+    /**
+     * Reads one segment, updating the incomplete purchases and next purchase id from its records.
+     * 
+     * @return Offset of the first empty or torn record, after clearing anything from there to the end
+     */
+    private int scan(MappedByteBuffer segmentBuffer, int size, Map<Long, IncompletePurchase> incomplete) {
+        int position = 0;
+        while (position + recordSize <= size) {
+            byte type = segmentBuffer.get(position + typeOffset);
+            long purchaseId = segmentBuffer.getLong(position);
+            long accountId = segmentBuffer.getLong(position + accountIdOffset);
+            int totalAmountToPay = segmentBuffer.getInt(position + totalAmountOffset);
+            int noOfSeatsToReserve = segmentBuffer.getInt(position + noOfSeatsOffset);
+            if (type == 0 || segmentBuffer.getInt(position + checksumOffset) != checksum(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, type)) {
+                break;
+            }
+
+            if (type == recordIntent || type == recordPaid) {
+                incomplete.put(purchaseId, new IncompletePurchase(purchaseId, accountId, totalAmountToPay, noOfSeatsToReserve, type == recordPaid));
+            } else {
+                incomplete.remove(purchaseId);
+            }
+            nextPurchaseId = Math.max(nextPurchaseId, purchaseId + 1);
+            position += recordSize;
+        }
+
+        // Clear anything after the end of the last segment, such as a torn record or records that reached disk
+        // ahead of it, so they cannot be mistaken for records on the next scan. Earlier segments were forced
+        // before the next was started, so have nothing to clear.
+        if (!segmentBuffer.isReadOnly()) {
+            for (int clear = position; clear + recordSize <= size && !isEmptyRecord(segmentBuffer, clear); clear += recordSize) {
+                for (int i = clear; i < clear + recordSize; i++) {
+                    segmentBuffer.put(i, (byte) 0);
+                }
+            }
+        }
+        return position;
+    }
+
+    private static Path segmentPath(Path directory, long sequence, long firstPurchaseId) {
+        return directory.resolve(String.format("%s%019d-%019d%s", segmentPrefix, sequence, firstPurchaseId, segmentSuffix));
+    }
+
+    private static boolean isEmptyRecord(MappedByteBuffer segmentBuffer, int position) {
+        return segmentBuffer.getLong(position) == 0 && segmentBuffer.getLong(position + 8) == 0
+                && segmentBuffer.getLong(position + 16) == 0 && segmentBuffer.getLong(position + 24) == 0;
+    }
+
+    private void flushPeriodically() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            forceTo(writePosition);
+        }
+    }
+
+    /**
+     * Forces the journal to disk up to the position and wakes purchases waiting for it.
+     */
+    private void forceTo(long position) {
+        durableLock.lock();
+        try {
+            long from = durablePosition;
+            if (position <= from) {
+                return;
+            }
+            // Positions before the current segment were made durable when it was started.
+            buffer.force((int) (from - current.startPosition), (int) (position - from));
+            durablePosition = position;
+            durableAdvanced.signalAll();
+        } catch (UncheckedIOException e) {
+            flushFailure = e.getCause();
+            durableAdvanced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (durablePosition >= position) {
+            return;
+        }
+        // Wake the flusher rather than waiting out the interval. If it is already forcing, this record is covered
+        // by the force after.
+        LockSupport.unpark(flusher);
+        boolean interrupted = false;
+        durableLock.lock();
+        try {
+            while (durablePosition < position) {
+                if (flushFailure != null) {
+                    throw new UncheckedIOException("Purchase journal could not be flushed", flushFailure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("Purchase journal is closed");
+                }
+                try {
+                    durableAdvanced.await();
+                } catch (InterruptedException e) {
+                    // The record has been written, so wait for it to be durable before reporting the interrupt.
+                    interrupted = true;
+                }
+            }
+        } finally {
+            durableLock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int checksum(long purchaseId, long accountId, int totalAmountToPay, int noOfSeatsToReserve, byte type) {
+        long hash = purchaseId * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ accountId) * 0xC2B2AE3D27D4EB4FL;
+        hash = (hash ^ (((long) totalAmountToPay << 32) | (noOfSeatsToReserve & 0xFFFFFFFFL))) * 0x165667B19E3779F9L;
+        hash = (hash ^ type) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * One segment file. Segments rolled to without an INTENT record in between share a first purchase id, so the
+     * sequence number orders them. The other fields are set by the scan or when the segment is started, and only
+     * change while holding appendLock.
+     */
+    private static final class Segment {
+        final Path path;
+        final long sequence;
+        final long firstPurchaseId;
+        long startPosition;
+        int capacity;
+        // Purchases with an INTENT record in this segment that have not been reserved or resolved.
+        int noOfOpenPurchases;
+
+        Segment(Path path, long sequence, long firstPurchaseId) {
+            this.path = path;
+            this.sequence = sequence;
+            this.firstPurchaseId = firstPurchaseId;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import java.util.function.Consumer;
+
+import thirdparty.seatbooking.SeatReservationService;
+
+/**
+ * Completes purchases that were paid for by replaying their seat reservation. Purchases stopped around the payment
+ * call cannot be safely replayed, as the account may already have been charged, so they are passed on for
+ * reconciliation with the payment provider instead.
+ */
+public class ReplayingIncompletePurchaseHandler implements IncompletePurchaseHandler {
+
+    private final SeatReservationService seatReservationService;
+    private final Consumer<IncompletePurchase> unconfirmedPayments;
+
+    public ReplayingIncompletePurchaseHandler(SeatReservationService seatReservationService, Consumer<IncompletePurchase> unconfirmedPayments) {
+        this.seatReservationService = seatReservationService;
+        this.unconfirmedPayments = unconfirmedPayments;
+    }
+
+    @Override
+    public void resolve(IncompletePurchase incompletePurchase) {
+        if (incompletePurchase.isPaid()) {
+            seatReservationService.reserveSeat(incompletePurchase.getAccountId(), incompletePurchase.getNoOfSeatsToReserve());
+        } else {
+            unconfirmedPayments.accept(incompletePurchase);
+        }
+    }
+
+}
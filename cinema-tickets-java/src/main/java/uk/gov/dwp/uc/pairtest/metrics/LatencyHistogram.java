@@ -0,0 +1,103 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds, safe to record into from any number of threads without
+ * allocating.
+ * 
+ * Buckets are log-linear: values below 16 have a bucket each, and every power of two above that is split into 16
+ * equal buckets, so a recorded value is reported to within 1/16 (about 6%) of its true value across the whole range.
+ */
+public class LatencyHistogram {
+
+    private static final int subBucketBits = 4;
+    private static final int subBucketCount = 1 << subBucketBits;
+    private static final int bucketCount = (Long.SIZE - subBucketBits + 1) * subBucketCount;
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketCount);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a latency. Negative values, from a clock stepping backwards, are recorded as zero.
+     * 
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(getBucketIndex(value));
+        totalCount.increment();
+        totalNanos.add(value);
+
+        long currentMax = maxNanos.get();
+        while (value > currentMax && !maxNanos.compareAndSet(currentMax, value)) {
+            currentMax = maxNanos.get();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the histogram. Recording carries on while the snapshot is taken, so a latency recorded
+     * at the same time may be counted in the total but not yet in the percentiles, or the other way round.
+     * 
+     * @return LatencySnapshot
+     */
+    public LatencySnapshot snapshot() {
+        long[] bucketCounts = new long[bucketCount];
+        long count = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+        long max = maxNanos.get();
+        long mean = (count == 0) ? 0 : totalNanos.sum() / Math.max(totalCount.sum(), 1);
+
+        return new LatencySnapshot(count, mean,
+                getPercentile(bucketCounts, count, 0.5, max),
+                getPercentile(bucketCounts, count, 0.9, max),
+                getPercentile(bucketCounts, count, 0.99, max),
+                getPercentile(bucketCounts, count, 0.999, max),
+                max);
+    }
+
+    /**
+     * Gets the highest value in the bucket containing the percentile, so that reported percentiles never
+     * understate latency.
+     */
+    private static long getPercentile(long[] bucketCounts, long count, double percentile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int getBucketIndex(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - subBucketBits)) & (subBucketCount - 1);
+        return (exponent - subBucketBits + 1) * subBucketCount + subBucket;
+    }
+
+    private static long getBucketUpperBound(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int exponent = index / subBucketCount + subBucketBits - 1;
+        long subBucket = index % subBucketCount;
+        long width = 1L << (exponent - subBucketBits);
+        return (subBucketCount + subBucket) * width + width - 1;
+    }
+}
@@ -0,0 +1,103 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Latency per purchase stage and counts per purchase outcome, recorded without locks or allocation.
+ * 
+ * Recording can be switched off at runtime with setEnabled, and leaving TicketServiceImpl.purchaseMetrics unset
+ * removes it altogether, including the clock reads.
+ */
+public class PurchaseMetrics implements PurchaseMetricsMXBean {
+
+    public static final String objectName = "uk.gov.dwp.uc.pairtest:type=PurchaseMetrics";
+
+    private static final PurchaseStage[] stages = PurchaseStage.values();
+    private static final PurchaseOutcome[] outcomes = PurchaseOutcome.values();
+
+    private final LatencyHistogram[] stageLatencies = new LatencyHistogram[stages.length];
+    private final LongAdder[] outcomeCounts = new LongAdder[outcomes.length];
+    private volatile boolean enabled = true;
+
+    public PurchaseMetrics() {
+        for (int i = 0; i < stageLatencies.length; i++) {
+            stageLatencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < outcomeCounts.length; i++) {
+            outcomeCounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void recordLatency(PurchaseStage stage, long nanos) {
+        stageLatencies[stage.ordinal()].record(nanos);
+    }
+
+    public void recordOutcome(PurchaseOutcome outcome) {
+        outcomeCounts[outcome.ordinal()].increment();
+    }
+
+    /**
+     * @return Copy of the metrics recorded so far
+     */
+    public PurchaseMetricsSnapshot snapshot() {
+        Map<PurchaseStage, LatencySnapshot> latencies = new EnumMap<PurchaseStage, LatencySnapshot>(PurchaseStage.class);
+        for (PurchaseStage stage : stages) {
+            latencies.put(stage, stageLatencies[stage.ordinal()].snapshot());
+        }
+        Map<PurchaseOutcome, Long> counts = new EnumMap<PurchaseOutcome, Long>(PurchaseOutcome.class);
+        for (PurchaseOutcome outcome : outcomes) {
+            counts.put(outcome, outcomeCounts[outcome.ordinal()].sum());
+        }
+        return new PurchaseMetricsSnapshot(latencies, counts);
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getStageLatencies() {
+        Map<String, LatencySnapshot> latencies = new LinkedHashMap<String, LatencySnapshot>();
+        for (Map.Entry<PurchaseStage, LatencySnapshot> entry : snapshot().getStageLatencies().entrySet()) {
+            latencies.put(entry.getKey().name(), entry.getValue());
+        }
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (PurchaseOutcome outcome : outcomes) {
+            counts.put(outcome.name(), outcomeCounts[outcome.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under objectName.
+     * 
+     * @throws JMException if the metrics cannot be registered, for example if the name is already in use.
+     */
+    public void registerMBean() throws JMException {
+        registerMBean(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public void registerMBean(MBeanServer mBeanServer) throws JMException {
+        mBeanServer.registerMBean(this, new ObjectName(objectName));
+    }
+}
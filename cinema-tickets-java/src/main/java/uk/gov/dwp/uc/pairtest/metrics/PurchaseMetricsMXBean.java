@@ -0,0 +1,18 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of PurchaseMetrics, keyed by PurchaseStage and PurchaseOutcome names.
+ */
+public interface PurchaseMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, LatencySnapshot> getStageLatencies();
+
+    Map<String, Long> getOutcomeCounts();
+
+}
@@ -0,0 +1,41 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Immutable Object
+ * 
+ * Point in time copy of the latency of each purchase stage and the number of purchases with each outcome.
+ */
+
+public class PurchaseMetricsSnapshot {
+
+    private final Map<PurchaseStage, LatencySnapshot> stageLatencies;
+    private final Map<PurchaseOutcome, Long> outcomeCounts;
+
+    public PurchaseMetricsSnapshot(Map<PurchaseStage, LatencySnapshot> stageLatencies, Map<PurchaseOutcome, Long> outcomeCounts) {
+        this.stageLatencies = Collections.unmodifiableMap(new EnumMap<PurchaseStage, LatencySnapshot>(stageLatencies));
+        this.outcomeCounts = Collections.unmodifiableMap(new EnumMap<PurchaseOutcome, Long>(outcomeCounts));
+    }
+
+    public LatencySnapshot getLatency(PurchaseStage stage) {
+        return stageLatencies.get(stage);
+    }
+
+    public long getCount(PurchaseOutcome outcome) {
+        return outcomeCounts.get(outcome);
+    }
+
+    public Map<PurchaseStage, LatencySnapshot> getStageLatencies() {
+        return stageLatencies;
+    }
+
+    public Map<PurchaseOutcome, Long> getOutcomeCounts() {
+        return outcomeCounts;
+    }
+
+}
@@ -0,0 +1,17 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+/**
+ * The stages of a purchase that latency is recorded for.
+ */
+public enum PurchaseStage {
+    // Getting the decision table for the current ticket prices.
+    PRICING,
+    // Applying the business rules, including any per-account limit, whether the purchase passes or is rejected.
+    VALIDATION,
+    // AccountValidator.isValidAccount, which may be remote.
+    ACCOUNT_CHECK,
+    // TicketPaymentService.makePayment
+    PAYMENT,
+    // SeatReservationService.reserveSeat
+    RESERVATION
+}
@@ -0,0 +1,164 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the prices from a slower TicketPriceProvider, so that pricing a purchase only reads the current snapshot.
+ * 
+ * Prices are held as an immutable snapshot that is replaced as a whole when new prices are loaded. Once a snapshot
+ * is older than timeToLive minus refreshAhead, one background refresh is started while purchases carry on with the
+ * cached prices. If the provider is slow or failing, the old prices are still served past their time to live
+ * (stale-while-revalidate) for up to maxStale. After that the first purchase to find the prices too old loads
+ * them on its own thread, and purchases arriving meanwhile wait for that one load rather than each calling the
+ * provider.
+ */
+public class CachingTicketPriceProvider implements TicketPriceProvider {
+
+    private final TicketPriceProvider ticketPriceProvider;
+    private final long timeToLiveNanos;
+    private final long refreshAheadNanos;
+    private final long maxStaleNanos;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoClock;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Load of prices too old to serve, which other purchases needing prices wait for. Null when none is running.
+    private final AtomicReference<CompletableFuture<TicketPrices>> staleLoad = new AtomicReference<CompletableFuture<TicketPrices>>();
+
+    private volatile CachedPrices cachedPrices;
+    // When the next background refresh may start, pushed back after a failed refresh so a failing provider is not
+    // called on every purchase.
+    private volatile long nextRefreshAt;
+
+    public CachingTicketPriceProvider(TicketPriceProvider ticketPriceProvider, Duration timeToLive, Duration refreshAhead, Duration maxStale) {
+        this(ticketPriceProvider, timeToLive, refreshAhead, maxStale, Thread::startVirtualThread, System::nanoTime);
+    }
+
+    /**
+     * Creates the cache, loading the first prices on the calling thread.
+     * 
+     * @param ticketPriceProvider Provider of up to date prices
+     * @param timeToLive How long loaded prices are fresh for
+     * @param refreshAhead How long before timeToLive ends to start loading new prices
+     * @param maxStale How long past timeToLive prices may still be served while new prices are loading
+     * @param refreshExecutor Runs background refreshes
+     * @param nanoClock Source of System.nanoTime style timestamps
+     * @throws IllegalArgumentException if refreshAhead is not less than timeToLive.
+     */
+    public CachingTicketPriceProvider(TicketPriceProvider ticketPriceProvider, Duration timeToLive, Duration refreshAhead,
+            Duration maxStale, Executor refreshExecutor, LongSupplier nanoClock) {
+        if (refreshAhead.isNegative() || refreshAhead.compareTo(timeToLive) >= 0 || maxStale.isNegative()) {
+            throw new IllegalArgumentException("refreshAhead must be less than timeToLive and durations cannot be negative");
+        }
+        this.ticketPriceProvider = ticketPriceProvider;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.refreshAheadNanos = refreshAhead.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.nanoClock = nanoClock;
+        refresh();
+    }
+
+    @Override
+    public TicketPrices getTicketPrices() {
+        CachedPrices current = cachedPrices;
+        long now = nanoClock.getAsLong();
+        // Checked before the refresh time, as a failed refresh pushes that back past when the prices become too old.
+        if (now - current.loadedAt > timeToLiveNanos + maxStaleNanos) {
+            // Too old to serve any longer, so wait for new prices rather than risk charging the wrong amount.
+            return loadTooStale();
+        }
+        if (now - nextRefreshAt >= 0) {
+            startBackgroundRefresh();
+        }
+        return current.prices;
+    }
+
+    /**
+     * Loads prices from the provider on the calling thread, replacing the cached snapshot. Use this to apply a
+     * price change straight away rather than waiting for the next refresh.
+     * 
+     * @return The newly loaded prices
+     */
+    public TicketPrices refresh() {
+        TicketPrices prices = ticketPriceProvider.getTicketPrices();
+        long loadedAt = nanoClock.getAsLong();
+        cachedPrices = new CachedPrices(prices, loadedAt);
+        nextRefreshAt = loadedAt + timeToLiveNanos - refreshAheadNanos;
+        return prices;
+    }
+
+    /**
+     * @return true if the cached prices are past their time to live, and are being served while new prices load.
+     */
+    public boolean isStale() {
+        return nanoClock.getAsLong() - cachedPrices.loadedAt > timeToLiveNanos;
+    }
+
+    /**
+     * Loads prices on the calling thread, or waits for the load already started by another thread.
+     * 
+     * @throws RuntimeException thrown by the provider, to every thread waiting on the failed load.
+     */
+    private TicketPrices loadTooStale() {
+        CompletableFuture<TicketPrices> load = new CompletableFuture<TicketPrices>();
+        CompletableFuture<TicketPrices> inFlight = staleLoad.compareAndExchange(null, load);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            // Prices may have been loaded since this thread found them too old.
+            CachedPrices current = cachedPrices;
+            TicketPrices prices = (nanoClock.getAsLong() - current.loadedAt > timeToLiveNanos + maxStaleNanos)
+                    ? refresh() : current.prices;
+            load.complete(prices);
+            return prices;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            staleLoad.set(null);
+        }
+    }
+
+    private void startBackgroundRefresh() {
+        // Only one refresh at a time, other purchases carry on with the cached prices.
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    // Keep serving the cached prices and try again after another refreshAhead period.
+                    nextRefreshAt = nanoClock.getAsLong() + refreshAheadNanos;
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            throw e;
+        }
+    }
+
+    private static final class CachedPrices {
+        final TicketPrices prices;
+        final long loadedAt;
+
+        CachedPrices(TicketPrices prices, long loadedAt) {
+            this.prices = prices;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+/**
+ * Provides the same prices for every purchase, by default the standard prices of Adult == £20, Child == £10 and
+ * Infant == £0.
+ */
+public class FixedTicketPriceProvider implements TicketPriceProvider {
+
+    public static final TicketPrices standardPrices = new TicketPrices(2000, 1000, 0);
+
+    private final TicketPrices ticketPrices;
+
+    public FixedTicketPriceProvider() {
+        this(standardPrices);
+    }
+
+    public FixedTicketPriceProvider(TicketPrices ticketPrices) {
+        this.ticketPrices = ticketPrices;
+    }
+
+    @Override
+    public TicketPrices getTicketPrices() {
+        return ticketPrices;
+    }
+
+}
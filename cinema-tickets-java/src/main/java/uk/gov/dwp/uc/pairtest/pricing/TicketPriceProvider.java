@@ -0,0 +1,10 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+public interface TicketPriceProvider {
+
+    /**
+     * @return The current price of each type of ticket.
+     */
+    TicketPrices getTicketPrices();
+
+}
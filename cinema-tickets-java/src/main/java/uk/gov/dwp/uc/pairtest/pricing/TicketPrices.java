@@ -0,0 +1,63 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import java.util.Arrays;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidTicketTypeException;
+
+/**
+ * Immutable Object
+ * 
+ * Snapshot of the price in pence of each type of ticket, held in an array indexed by TicketTypeRequest.Type ordinal.
+ */
+
+public class TicketPrices {
+
+    private final int[] pricesInPence;
+
+    public TicketPrices(int adultTicketPrice, int childTicketPrice, int infantTicketPrice) {
+        if (adultTicketPrice < 0 || childTicketPrice < 0 || infantTicketPrice < 0) {
+            throw new IllegalArgumentException("Ticket prices cannot be negative");
+        }
+        pricesInPence = new int[TicketTypeRequest.Type.values().length];
+        pricesInPence[TicketTypeRequest.Type.ADULT.ordinal()] = adultTicketPrice;
+        pricesInPence[TicketTypeRequest.Type.CHILD.ordinal()] = childTicketPrice;
+        pricesInPence[TicketTypeRequest.Type.INFANT.ordinal()] = infantTicketPrice;
+    }
+
+    /**
+     * Gets the price in pence for the type of ticket.
+     * 
+     * @param type TicketTypeRequest.Type
+     * @return Price in pence
+     * @throws InvalidTicketTypeException if the type is not recognised.
+     */
+    public int getPriceInPence(TicketTypeRequest.Type type) throws InvalidTicketTypeException {
+        if (type == null) {
+            throw InvalidTicketTypeException.stackless;
+        }
+        return pricesInPence[type.ordinal()];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TicketPrices)) {
+            return false;
+        }
+        return Arrays.equals(pricesInPence, ((TicketPrices) other).pricesInPence);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(pricesInPence);
+    }
+
+    @Override
+    public String toString() {
+        return "TicketPrices" + Arrays.toString(pricesInPence);
+    }
+
+}
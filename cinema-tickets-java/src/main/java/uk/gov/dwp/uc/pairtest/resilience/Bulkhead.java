@@ -0,0 +1,74 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of calls in progress to one dependency, so that when it slows down only that many threads are
+ * stuck waiting on it, and everything else, including calls to other dependencies, carries on.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+
+    /**
+     * @param maxConcurrentCalls Most calls in progress at once
+     * @param maxWait How long a call waits for another to finish when the cap is reached, zero to fail straight away
+     */
+    public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+        if (maxConcurrentCalls < 1 || maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be at least one and maxWait cannot be negative");
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.permits = new Semaphore(maxConcurrentCalls);
+    }
+
+    /**
+     * Takes a place for a call, waiting up to maxWait for one to come free. Each successful call must be matched by
+     * a call to release.
+     *
+     * @return true if the call may go ahead, false if the cap was still reached after maxWait.
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (maxWaitNanos == 0) {
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Takes a place for a call only if one is free now, whatever maxWait is.
+     *
+     * @return true if the call may go ahead.
+     */
+    public boolean tryAcquireNow() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return Number of calls in progress
+     */
+    public int getConcurrentCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+}
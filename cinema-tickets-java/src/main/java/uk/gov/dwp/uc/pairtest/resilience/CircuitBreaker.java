@@ -0,0 +1,93 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a dependency that keeps failing, so that purchases fail fast instead of each waiting on it.
+ *
+ * The breaker opens after failureThreshold calls in a row fail. While open, calls are refused. Once openDuration
+ * has passed, a single trial call is let through (half open): if it succeeds the breaker closes, and if it fails
+ * the breaker opens again for another openDuration.
+ *
+ * Closed is the common case, so a call through a closed breaker with no recent failures only reads two fields.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    /**
+     * @param failureThreshold Number of failures in a row that open the breaker
+     * @param openDuration How long the breaker stays open before a trial call
+     * @param nanoClock Source of System.nanoTime style timestamps
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        if (failureThreshold < 1 || openDuration.isNegative()) {
+            throw new IllegalArgumentException("failureThreshold must be at least one and openDuration cannot be negative");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Checks whether a call may go ahead. Each permitted call must be followed by onSuccess or onFailure.
+     *
+     * @return true if the call may go ahead, false if it should fail fast.
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        // Only the caller that moves the breaker from open to half open makes the trial call.
+        return current == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    public void onSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        // Calls let through before the breaker opened may still succeed late. Only the trial call closes it.
+        if (state.get() == State.HALF_OPEN) {
+            state.compareAndSet(State.HALF_OPEN, State.CLOSED);
+        }
+    }
+
+    public void onFailure() {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold && current == State.CLOSED) {
+            open(State.CLOSED);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    private void open(State from) {
+        // Set before the state changes, so a caller that sees OPEN also sees when it opened.
+        openedAt = nanoClock.getAsLong();
+        if (state.compareAndSet(from, State.OPEN)) {
+            consecutiveFailures.set(0);
+        }
+    }
+}
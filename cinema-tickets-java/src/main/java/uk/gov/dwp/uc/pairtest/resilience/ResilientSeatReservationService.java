@@ -0,0 +1,163 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+
+/**
+ * SeatReservationService guarded by a bulkhead and a circuit breaker, with optional timed out and hedged calls. A
+ * reservation is refused with a GatewayUnavailableException when the bulkhead is full or the breaker is open.
+ * TicketServiceImpl reserves after payment, so it reports such a refusal as a ReservationFailedException rather than
+ * a rejection.
+ *
+ * With a timeout, the reservation runs on a virtual thread and the caller gives up after the timeout, which counts
+ * as a failure towards the breaker. The abandoned call keeps its bulkhead place until it returns, so a gateway that
+ * has stopped responding cannot gather more than the bulkhead's worth of threads.
+ *
+ * With a hedge delay, a second identical call is made if the first has not returned after the delay and the
+ * bulkhead has a free place, and the reservation completes with whichever returns first. This trims the tail
+ * latency of a gateway with occasional slow calls, but the seats may be reserved twice, so only hedge against a
+ * reservation service that ignores repeated calls for the same purchase.
+ *
+ * Either way, an abandoned call may still reserve the seats after the caller has given up.
+ */
+public class ResilientSeatReservationService implements SeatReservationService {
+
+    private final SeatReservationService seatReservationService;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final long timeoutNanos;
+    private final long hedgeDelayNanos;
+
+    public ResilientSeatReservationService(SeatReservationService seatReservationService, Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+        this(seatReservationService, bulkhead, circuitBreaker, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * @param seatReservationService Service to guard
+     * @param bulkhead Cap on calls in progress, including hedged and abandoned calls
+     * @param circuitBreaker Breaker for the service
+     * @param timeout How long to wait for a reservation, zero to wait for as long as it takes
+     * @param hedgeDelay How long to wait before making a second call, zero to never make one
+     */
+    public ResilientSeatReservationService(SeatReservationService seatReservationService, Bulkhead bulkhead,
+            CircuitBreaker circuitBreaker, Duration timeout, Duration hedgeDelay) {
+        if (timeout.isNegative() || hedgeDelay.isNegative()) {
+            throw new IllegalArgumentException("timeout and hedgeDelay cannot be negative");
+        }
+        this.seatReservationService = seatReservationService;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.timeoutNanos = timeout.toNanos();
+        this.hedgeDelayNanos = hedgeDelay.toNanos();
+    }
+
+    /**
+     * @throws GatewayUnavailableException if the call was refused or timed out.
+     */
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        // The bulkhead is taken first, so that a half open breaker's trial call is never refused by the bulkhead
+        // and left unfinished.
+        if (!bulkhead.tryAcquire()) {
+            throw GatewayUnavailableException.stackless;
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            throw GatewayUnavailableException.stackless;
+        }
+
+        if (timeoutNanos == 0 && hedgeDelayNanos == 0) {
+            try {
+                seatReservationService.reserveSeat(accountId, totalSeatsToAllocate);
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            } finally {
+                bulkhead.release();
+            }
+            circuitBreaker.onSuccess();
+            return;
+        }
+
+        try {
+            awaitReservation(accountId, totalSeatsToAllocate);
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        }
+        circuitBreaker.onSuccess();
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Makes the call, and the hedged call if needed, on virtual threads, waiting for the first to return. Must hold
+     * a bulkhead place, which the first call takes over.
+     */
+    private void awaitReservation(long accountId, int totalSeatsToAllocate) {
+        CompletableFuture<Void> reservation = new CompletableFuture<Void>();
+        startCall(reservation, accountId, totalSeatsToAllocate);
+        long start = System.nanoTime();
+        try {
+            if (hedgeDelayNanos > 0 && (timeoutNanos == 0 || hedgeDelayNanos < timeoutNanos)) {
+                try {
+                    reservation.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    // Hedge only with a free place, so hedging never takes places from other purchases' first calls.
+                    if (bulkhead.tryAcquireNow()) {
+                        startCall(reservation, accountId, totalSeatsToAllocate);
+                    }
+                }
+            }
+            if (timeoutNanos == 0) {
+                reservation.get();
+            } else {
+                reservation.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw GatewayUnavailableException.stackless;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Seat reservation failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw GatewayUnavailableException.stackless;
+        }
+    }
+
+    /**
+     * Starts a call that completes the reservation and then gives up its bulkhead place.
+     */
+    private void startCall(CompletableFuture<Void> reservation, long accountId, int totalSeatsToAllocate) {
+        try {
+            Thread.startVirtualThread(() -> {
+                try {
+                    seatReservationService.reserveSeat(accountId, totalSeatsToAllocate);
+                    reservation.complete(null);
+                } catch (Throwable e) {
+                    reservation.completeExceptionally(e);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+
+/**
+ * TicketPaymentService guarded by a bulkhead and a circuit breaker. A payment is refused with a
+ * GatewayUnavailableException, without calling the gateway, when the bulkhead is full or the breaker is open.
+ *
+ * Payments are never timed out or hedged: a payment call that is abandoned or repeated could leave the account
+ * charged without a purchase, or charged twice.
+ */
+public class ResilientTicketPaymentService implements TicketPaymentService {
+
+    private final TicketPaymentService ticketPaymentService;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    public ResilientTicketPaymentService(TicketPaymentService ticketPaymentService, Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+        this.ticketPaymentService = ticketPaymentService;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * @throws GatewayUnavailableException if the call was refused without charging the account.
+     */
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        // The bulkhead is taken first, so that a half open breaker's trial call is never refused by the bulkhead
+        // and left unfinished.
+        if (!bulkhead.tryAcquire()) {
+            throw GatewayUnavailableException.stackless;
+        }
+        try {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                throw GatewayUnavailableException.stackless;
+            }
+            try {
+                ticketPaymentService.makePayment(accountId, totalAmountToPay);
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+            circuitBreaker.onSuccess();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,19 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Receives the outcome of each purchase published to a ShardedPurchaseEngine. Called on the purchase's shard thread,
+ * so it should hand the outcome on quickly rather than block the shard. An exception it throws is reported and the
+ * shard moves on to its next purchase.
+ */
+public interface PurchaseOutcomeListener {
+
+    /**
+     * @param correlationId Id given when the purchase was published
+     * @param accountId
+     * @param outcome
+     */
+    void onOutcome(long correlationId, long accountId, PurchaseOutcome outcome);
+
+}
@@ -0,0 +1,108 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+
+/**
+ * Fixed size ring of purchase slots for one shard, written by any number of publishing threads and read by the
+ * shard's single consumer. Slots are allocated once, as PurchaseOrderCodec encodings in one direct buffer plus a
+ * correlation id, and reused as the ring wraps.
+ *
+ * A publisher claims the next sequence number with a compare-and-set, writes the slot, then marks the slot with
+ * its sequence number. The consumer reads a slot once it is marked with the sequence it expects, and records that
+ * it is done with it so publishers can wrap round onto it. Nothing is locked.
+ */
+final class PurchaseRingBuffer {
+
+    // Sequence counters are spread out so that publishers and the consumer do not share a cache line.
+    private static final int padding = 16;
+    private static final int claimedIndex = padding;
+    private static final int consumedIndex = 3 * padding;
+
+    private final int mask;
+    private final ByteBuffer encodedOrders;
+    private final long[] correlationIds;
+    // Sequence number last published in each slot.
+    private final AtomicLongArray publishedSequences;
+    private final AtomicLongArray sequences = new AtomicLongArray(4 * padding);
+
+    /**
+     * @param size Number of slots, a power of two.
+     */
+    PurchaseRingBuffer(int size) {
+        this.mask = size - 1;
+        this.encodedOrders = ByteBuffer.allocateDirect(size * PurchaseOrderCodec.encodedLength);
+        this.correlationIds = new long[size];
+        this.publishedSequences = new AtomicLongArray(size);
+        for (int slot = 0; slot < size; slot++) {
+            publishedSequences.set(slot, -1);
+        }
+        sequences.set(claimedIndex, -1);
+        sequences.set(consumedIndex, -1);
+    }
+
+    /**
+     * Publishes a purchase, waiting for the consumer if the ring is full.
+     */
+    void publish(long correlationId, long accountId, int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets,
+            WaitStrategy waitStrategy) {
+        long sequence = claim(waitStrategy);
+        int slot = (int) sequence & mask;
+        correlationIds[slot] = correlationId;
+        PurchaseOrderCodec.encode(encodedOrders, slot * PurchaseOrderCodec.encodedLength, accountId, noOfAdultTickets,
+                noOfChildTickets, noOfInfantTickets);
+        publishedSequences.setRelease(slot, sequence);
+    }
+
+    private long claim(WaitStrategy waitStrategy) {
+        int attempt = 0;
+        while (true) {
+            long claimed = sequences.get(claimedIndex);
+            long next = claimed + 1;
+            // The slot is free once the consumer is done with the purchase a whole ring earlier.
+            if (next - (mask + 1) > sequences.getAcquire(consumedIndex)) {
+                waitStrategy.idle(attempt++);
+            } else if (sequences.compareAndSet(claimedIndex, claimed, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return Whether the purchase with the sequence number has been published. Only for the consumer.
+     */
+    boolean isPublished(long sequence) {
+        return publishedSequences.getAcquire((int) sequence & mask) == sequence;
+    }
+
+    /**
+     * @return Whether any purchase has been claimed after the sequence number, published or not.
+     */
+    boolean isClaimedAfter(long sequence) {
+        return sequences.get(claimedIndex) > sequence;
+    }
+
+    /**
+     * Lets publishers reuse the slots up to and including the sequence number. Only for the consumer.
+     */
+    void consumed(long sequence) {
+        sequences.setRelease(consumedIndex, sequence);
+    }
+
+    /**
+     * @return A view of the encoded purchases for the consumer, with its own position and limit.
+     */
+    ByteBuffer newView() {
+        return encodedOrders.duplicate();
+    }
+
+    int getOffset(long sequence) {
+        return ((int) sequence & mask) * PurchaseOrderCodec.encodedLength;
+    }
+
+    long getCorrelationId(long sequence) {
+        return correlationIds[(int) sequence & mask];
+    }
+}
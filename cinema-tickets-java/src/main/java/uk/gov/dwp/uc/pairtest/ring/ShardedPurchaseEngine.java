@@ -0,0 +1,168 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Front end to TicketServiceImpl that spreads purchases across shards by account, each with its own ring buffer
+ * and a single consumer thread that runs every purchase for its accounts. All purchases for an account are made
+ * one at a time, in the order they were published, so per-account state such as an AccountPurchaseLimiter is only
+ * ever updated by one thread and is never contended. Shards share nothing, so throughput grows with the number of
+ * shards up to the number of cores.
+ *
+ * Purchases are published as primitive fields into preallocated slots and read by the shard straight from the
+ * slot through purchaseTickets(ByteBuffer), so nothing is allocated per purchase on the way in. Each outcome is
+ * passed to the PurchaseOutcomeListener with the correlation id it was published with. An exception thrown by the
+ * listener is counted and passed to the shard thread's uncaught exception handler, and the shard carries on.
+ */
+public class ShardedPurchaseEngine implements Closeable {
+
+    public static final int defaultRingSize = 1024;
+
+    private static final long closeTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+
+    private final TicketServiceImpl ticketService;
+    private final WaitStrategy waitStrategy;
+    private final PurchaseOutcomeListener listener;
+    private final PurchaseRingBuffer[] ringBuffers;
+    private final Thread[] consumers;
+    private final LongAdder noOfListenerFailures = new LongAdder();
+    private volatile boolean closed;
+
+    public ShardedPurchaseEngine(TicketServiceImpl ticketService, int noOfShards, WaitStrategy waitStrategy,
+            PurchaseOutcomeListener listener) {
+        this(ticketService, noOfShards, defaultRingSize, waitStrategy, listener);
+    }
+
+    /**
+     * Creates the engine and starts a consumer thread for each shard.
+     *
+     * @param ticketService Service each shard purchases through
+     * @param noOfShards Number of shards, usually the number of cores free for purchasing.
+     * @param ringSize Purchases each shard can hold waiting, a power of two.
+     * @param waitStrategy How shards wait for purchases, and publishers for space.
+     * @param listener Receives each purchase's outcome on its shard's thread
+     * @throws IllegalArgumentException if noOfShards is less than one or ringSize is not a power of two.
+     */
+    public ShardedPurchaseEngine(TicketServiceImpl ticketService, int noOfShards, int ringSize, WaitStrategy waitStrategy,
+            PurchaseOutcomeListener listener) {
+        if (noOfShards < 1) {
+            throw new IllegalArgumentException("noOfShards must be at least one");
+        }
+        if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("ringSize must be a power of two");
+        }
+        this.ticketService = ticketService;
+        this.waitStrategy = waitStrategy;
+        this.listener = listener;
+        this.ringBuffers = new PurchaseRingBuffer[noOfShards];
+        this.consumers = new Thread[noOfShards];
+        for (int shard = 0; shard < noOfShards; shard++) {
+            PurchaseRingBuffer ringBuffer = new PurchaseRingBuffer(ringSize);
+            ringBuffers[shard] = ringBuffer;
+            consumers[shard] = new Thread(() -> consume(ringBuffer), "purchase-shard-" + shard);
+            consumers[shard].setDaemon(true);
+            consumers[shard].start();
+        }
+    }
+
+    /**
+     * Publishes a purchase to its account's shard, waiting with the wait strategy if the shard's ring is full.
+     * Invalid purchases are published like any other and rejected by the shard.
+     *
+     * @param correlationId Passed back to the listener with the outcome
+     * @param accountId
+     * @param noOfAdultTickets
+     * @param noOfChildTickets
+     * @param noOfInfantTickets
+     * @throws IllegalStateException if the engine is closed.
+     */
+    public void publish(long correlationId, long accountId, int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets) {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+        ringBuffers[getShard(accountId)].publish(correlationId, accountId, noOfAdultTickets, noOfChildTickets,
+                noOfInfantTickets, waitStrategy);
+    }
+
+    /**
+     * @return Shard that purchases for the account are made on
+     */
+    public int getShard(long accountId) {
+        return (int) Math.floorMod(accountId, (long) ringBuffers.length);
+    }
+
+    public int getNoOfShards() {
+        return ringBuffers.length;
+    }
+
+    /**
+     * @return Number of outcomes the listener threw on
+     */
+    public long getNoOfListenerFailures() {
+        return noOfListenerFailures.sum();
+    }
+
+    /**
+     * Stops accepting purchases, and waits for the shards to finish the purchases already published. Publishers
+     * should be stopped first, as a purchase published while closing may not be made.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        long deadline = System.nanoTime() + closeTimeoutNanos;
+        try {
+            for (Thread consumer : consumers) {
+                consumer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume(PurchaseRingBuffer ringBuffer) {
+        ByteBuffer encodedOrders = ringBuffer.newView();
+        long sequence = 0;
+        int attempt = 0;
+        while (true) {
+            if (ringBuffer.isPublished(sequence)) {
+                purchase(ringBuffer, encodedOrders, sequence);
+                ringBuffer.consumed(sequence);
+                sequence++;
+                attempt = 0;
+            } else if (closed && !ringBuffer.isClaimedAfter(sequence - 1)) {
+                return;
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    private void purchase(PurchaseRingBuffer ringBuffer, ByteBuffer encodedOrders, long sequence) {
+        int offset = ringBuffer.getOffset(sequence);
+        encodedOrders.clear();
+        long accountId = PurchaseOrderCodec.getAccountId(encodedOrders, offset);
+        encodedOrders.position(offset).limit(offset + PurchaseOrderCodec.encodedLength);
+
+        PurchaseOutcome outcome;
+        try {
+            outcome = ticketService.tryPurchaseTickets(encodedOrders);
+        } catch (RuntimeException e) {
+            outcome = PurchaseOutcome.GATEWAY_FAILURE;
+        }
+        try {
+            listener.onOutcome(ringBuffer.getCorrelationId(sequence), accountId, outcome);
+        } catch (RuntimeException e) {
+            // Reported rather than rethrown, as that would end the shard and strand every purchase behind this one.
+            noOfListenerFailures.increment();
+            Thread shard = Thread.currentThread();
+            shard.getUncaughtExceptionHandler().uncaughtException(shard, e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits for a ring buffer: a shard's consumer waiting for purchases to be published, or a publisher
+ * waiting for space in a full ring. Each trades latency against the CPU used while waiting.
+ */
+public enum WaitStrategy {
+    // Lowest latency, but keeps a core busy for each shard even when idle. Only for dedicated, isolated cores.
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    // Spins briefly, then gives the core to other threads between checks.
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < spinAttempts) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    // Spins and yields briefly, then sleeps between checks. Little CPU when idle, at the cost of up to parkNanos of
+    // latency for the first purchase after a quiet spell.
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < spinAttempts) {
+                Thread.onSpinWait();
+            } else if (attempt < spinAttempts + yieldAttempts) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+            }
+        }
+    };
+
+    private static final int spinAttempts = 100;
+    private static final int yieldAttempts = 100;
+    private static final long parkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Waits once before the caller checks again.
+     *
+     * @param attempt Number of times the caller has already waited for the same thing
+     */
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,157 @@
+package uk.gov.dwp.uc.pairtest.sales;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+
+/**
+ * Live tickets sold and revenue per type of ticket, in a ring of time buckets covering the most recent
+ * noOfBuckets * bucketDuration. Sales older than the ring are dropped, so size it for the longest rollup needed.
+ *
+ * Recording a sale only adds to LongAdder counters, so purchases on different cores do not contend and are never
+ * blocked by each other or by a snapshot. Buckets are aligned to the wall clock, so one minute buckets start on the
+ * minute. When a sale falls in a new bucket, the stale bucket occupying its slot in the ring is swapped for a new
+ * one with a compare and set, rather than being cleared while other purchases may be adding to it.
+ *
+ * Snapshots are taken while sales carry on, so a purchase recorded at the same time may appear in the current
+ * bucket's tickets but not yet its revenue, or the other way round. Earlier buckets are complete. A sale delayed by
+ * longer than the whole ring between reading the clock and adding to its bucket is not counted.
+ */
+public class SalesAggregator {
+
+    public static final Duration defaultBucketDuration = Duration.ofMinutes(1);
+    public static final int defaultNoOfBuckets = 60;
+
+    private static final TicketTypeRequest.Type[] types = TicketTypeRequest.Type.values();
+
+    private final Duration bucketDuration;
+    private final long bucketMillis;
+    private final AtomicReferenceArray<SalesBucket> buckets;
+    private final LongSupplier millisClock;
+
+    public SalesAggregator() {
+        this(defaultBucketDuration, defaultNoOfBuckets, System::currentTimeMillis);
+    }
+
+    /**
+     * @param bucketDuration Length of each bucket, at least one millisecond
+     * @param noOfBuckets Number of buckets kept, so that rollups can cover up to noOfBuckets * bucketDuration
+     * @param millisClock Source of System.currentTimeMillis style timestamps
+     * @throws IllegalArgumentException if the bucket duration is less than a millisecond or noOfBuckets is less than one.
+     */
+    public SalesAggregator(Duration bucketDuration, int noOfBuckets, LongSupplier millisClock) {
+        if (bucketDuration.toMillis() < 1 || noOfBuckets < 1) {
+            throw new IllegalArgumentException("Invalid aggregator configuration");
+        }
+        this.bucketDuration = Duration.ofMillis(bucketDuration.toMillis());
+        this.bucketMillis = bucketDuration.toMillis();
+        this.buckets = new AtomicReferenceArray<SalesBucket>(noOfBuckets);
+        this.millisClock = millisClock;
+    }
+
+    /**
+     * Adds a completed purchase to the current bucket. Types with no tickets are skipped.
+     *
+     * @param ticketPrices Prices the purchase was charged at
+     * @param noOfAdultTickets
+     * @param noOfChildTickets
+     * @param noOfInfantTickets
+     */
+    public void recordSale(TicketPrices ticketPrices, int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets) {
+        SalesBucket bucket = getBucket(Math.floorDiv(millisClock.getAsLong(), bucketMillis));
+        if (bucket == null) {
+            return;
+        }
+        add(bucket, ticketPrices, TicketTypeRequest.Type.ADULT, noOfAdultTickets);
+        add(bucket, ticketPrices, TicketTypeRequest.Type.CHILD, noOfChildTickets);
+        add(bucket, ticketPrices, TicketTypeRequest.Type.INFANT, noOfInfantTickets);
+    }
+
+    /**
+     * @return Copy of the sales in each bucket as of now.
+     */
+    public SalesSnapshot snapshot() {
+        long currentIndex = Math.floorDiv(millisClock.getAsLong(), bucketMillis);
+        List<SalesWindow> windows = new ArrayList<SalesWindow>(buckets.length());
+        for (long index = currentIndex - buckets.length() + 1; index <= currentIndex; index++) {
+            SalesBucket bucket = buckets.get(getSlot(index));
+            // A slot holding an older bucket had no sales in this one, and a newer bucket means the clock moved on
+            // while the snapshot was taken.
+            SalesBucket sales = (bucket != null && bucket.index == index) ? bucket : null;
+            windows.add(toWindow(sales, index * bucketMillis, (index + 1) * bucketMillis));
+        }
+        return new SalesSnapshot(windows, bucketDuration);
+    }
+
+    public Duration getBucketDuration() {
+        return bucketDuration;
+    }
+
+    public int getNoOfBuckets() {
+        return buckets.length();
+    }
+
+    private static void add(SalesBucket bucket, TicketPrices ticketPrices, TicketTypeRequest.Type type, int noOfTickets) {
+        if (noOfTickets != 0) {
+            bucket.noOfTickets[type.ordinal()].add(noOfTickets);
+            bucket.revenueInPence[type.ordinal()].add((long) noOfTickets * ticketPrices.getPriceInPence(type));
+        }
+    }
+
+    /**
+     * Gets the bucket for the index, replacing an older bucket in its slot.
+     *
+     * @return SalesBucket, or null if the slot already holds a newer bucket, for a sale delayed longer than the ring.
+     */
+    private SalesBucket getBucket(long index) {
+        int slot = getSlot(index);
+        SalesBucket bucket = buckets.get(slot);
+        while (bucket == null || bucket.index < index) {
+            SalesBucket next = new SalesBucket(index);
+            if (buckets.compareAndSet(slot, bucket, next)) {
+                return next;
+            }
+            bucket = buckets.get(slot);
+        }
+        return (bucket.index == index) ? bucket : null;
+    }
+
+    private int getSlot(long index) {
+        return (int) Math.floorMod(index, (long) buckets.length());
+    }
+
+    private static SalesWindow toWindow(SalesBucket bucket, long startMillis, long endMillis) {
+        long[] noOfTickets = new long[types.length];
+        long[] revenueInPence = new long[types.length];
+        if (bucket != null) {
+            for (int i = 0; i < types.length; i++) {
+                noOfTickets[i] = bucket.noOfTickets[i].sum();
+                revenueInPence[i] = bucket.revenueInPence[i].sum();
+            }
+        }
+        return new SalesWindow(startMillis, endMillis, noOfTickets, revenueInPence);
+    }
+
+    /**
+     * Counters for one bucket of time, indexed by ticket type ordinal.
+     */
+    private static final class SalesBucket {
+        final long index;
+        final LongAdder[] noOfTickets = new LongAdder[types.length];
+        final LongAdder[] revenueInPence = new LongAdder[types.length];
+
+        SalesBucket(long index) {
+            this.index = index;
+            for (int i = 0; i < types.length; i++) {
+                noOfTickets[i] = new LongAdder();
+                revenueInPence[i] = new LongAdder();
+            }
+        }
+    }
+}
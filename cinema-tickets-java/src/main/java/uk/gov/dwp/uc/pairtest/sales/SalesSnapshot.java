@@ -0,0 +1,59 @@
+package uk.gov.dwp.uc.pairtest.sales;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Immutable Object
+ *
+ * Point in time copy of the sales in each bucket an aggregator holds. Rollups are summed from the copied buckets,
+ * so every figure taken from one snapshot agrees with the others.
+ */
+public class SalesSnapshot {
+
+    private static final int noOfTypes = TicketTypeRequest.Type.values().length;
+
+    private final List<SalesWindow> buckets;
+    private final long bucketMillis;
+
+    public SalesSnapshot(List<SalesWindow> buckets, Duration bucketDuration) {
+        this.buckets = Collections.unmodifiableList(new ArrayList<SalesWindow>(buckets));
+        this.bucketMillis = bucketDuration.toMillis();
+    }
+
+    /**
+     * @return Sales in each bucket, oldest first. The last bucket is the current one, which is still being added to.
+     */
+    public List<SalesWindow> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Sums the most recent buckets covering the window, including the current bucket.
+     *
+     * @param window How far back to sum, rounded up to whole buckets
+     * @return Sales from the start of the earliest bucket in the window to the end of the current bucket
+     * @throws IllegalArgumentException if the window is not positive or is longer than the buckets cover.
+     */
+    public SalesWindow rollup(Duration window) {
+        long noOfBuckets = Math.max((window.toMillis() + bucketMillis - 1) / bucketMillis, 1);
+        if (window.isNegative() || window.isZero() || noOfBuckets > buckets.size()) {
+            throw new IllegalArgumentException("window must be positive and no longer than the buckets cover");
+        }
+        long[] noOfTickets = new long[noOfTypes];
+        long[] revenueInPence = new long[noOfTypes];
+        List<SalesWindow> inWindow = buckets.subList(buckets.size() - (int) noOfBuckets, buckets.size());
+        for (SalesWindow bucket : inWindow) {
+            for (TicketTypeRequest.Type type : TicketTypeRequest.Type.values()) {
+                noOfTickets[type.ordinal()] += bucket.getNoOfTickets(type);
+                revenueInPence[type.ordinal()] += bucket.getRevenueInPence(type);
+            }
+        }
+        return new SalesWindow(inWindow.get(0).getStart().toEpochMilli(), inWindow.get(inWindow.size() - 1).getEnd().toEpochMilli(),
+                noOfTickets, revenueInPence);
+    }
+}
@@ -0,0 +1,72 @@
+package uk.gov.dwp.uc.pairtest.sales;
+
+import java.time.Instant;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Immutable Object
+ *
+ * Tickets sold and revenue taken for each type of ticket over a period of time.
+ */
+public class SalesWindow {
+
+    private final long startMillis;
+    private final long endMillis;
+    private final long[] noOfTickets;
+    private final long[] revenueInPence;
+
+    /**
+     * @param startMillis Start of the period in epoch milliseconds, inclusive
+     * @param endMillis End of the period in epoch milliseconds, exclusive
+     * @param noOfTickets Tickets sold, indexed by TicketTypeRequest.Type ordinal
+     * @param revenueInPence Revenue taken, indexed by TicketTypeRequest.Type ordinal
+     */
+    public SalesWindow(long startMillis, long endMillis, long[] noOfTickets, long[] revenueInPence) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.noOfTickets = noOfTickets.clone();
+        this.revenueInPence = revenueInPence.clone();
+    }
+
+    public Instant getStart() {
+        return Instant.ofEpochMilli(startMillis);
+    }
+
+    public Instant getEnd() {
+        return Instant.ofEpochMilli(endMillis);
+    }
+
+    public long getNoOfTickets(TicketTypeRequest.Type type) {
+        return noOfTickets[type.ordinal()];
+    }
+
+    public long getRevenueInPence(TicketTypeRequest.Type type) {
+        return revenueInPence[type.ordinal()];
+    }
+
+    /**
+     * @return Tickets sold of every type, including infant tickets
+     */
+    public long getTotalNoOfTickets() {
+        long total = 0;
+        for (long count : noOfTickets) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getTotalRevenueInPence() {
+        long total = 0;
+        for (long revenue : revenueInPence) {
+            total += revenue;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "SalesWindow[start=" + getStart() + ", end=" + getEnd() + ", noOfTickets=" + getTotalNoOfTickets()
+                + ", revenueInPence=" + getTotalRevenueInPence() + "]";
+    }
+}
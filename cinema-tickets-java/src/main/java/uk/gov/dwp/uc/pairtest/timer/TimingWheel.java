@@ -0,0 +1,223 @@
+package uk.gov.dwp.uc.pairtest.timer;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for large numbers of timeouts, most of which are cancelled before they expire.
+ *
+ * Time is divided into ticks. The first wheel has a slot for each of the next 64 ticks, the second a slot for each
+ * of the next 64 runs of 64 ticks, and so on over four wheels, about 16.7 million ticks in all. A timeout is linked
+ * into the slot its deadline falls in on the finest wheel that reaches it, so scheduling and cancelling are O(1)
+ * whatever the number of timeouts. As time moves on, each slot of a coarser wheel is redistributed into the finer
+ * wheels once the first wheel has turned to it, so every timeout is moved at most once per wheel.
+ *
+ * Timeouts expire up to one tick after their deadline, never before. Deadlines beyond the last wheel are kept in it
+ * and redistributed each time the wheel comes round until they are in reach.
+ */
+public class TimingWheel<T> {
+
+    private static final int wheelBits = 6;
+    private static final int wheelSize = 1 << wheelBits;
+    private static final int wheelMask = wheelSize - 1;
+    private static final int noOfWheels = 4;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout<T>[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Only change while holding lock.
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickDuration Resolution of the wheel
+     * @param startNanos System.nanoTime style timestamp of tick zero
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(Duration tickDuration, long startNanos) {
+        if (tickDuration.toNanos() < 1) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        this.tickNanos = tickDuration.toNanos();
+        this.startNanos = startNanos;
+        this.slots = new Timeout[noOfWheels * wheelSize];
+    }
+
+    /**
+     * @param value Passed to the expiry callback of advance when the deadline passes
+     * @param deadlineNanos System.nanoTime style timestamp to expire at
+     * @return Handle for cancelling the timeout
+     */
+    public Timeout<T> schedule(T value, long deadlineNanos) {
+        // Round up, so that a timeout never expires early.
+        long deadlineTick = Math.floorDiv(deadlineNanos - startNanos + tickNanos - 1, tickNanos);
+        Timeout<T> timeout = new Timeout<T>(value);
+        lock.lock();
+        try {
+            timeout.deadlineTick = Math.max(deadlineTick, currentTick + 1);
+            link(timeout);
+            size++;
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * @return true if the timeout was cancelled, false if it has already expired or been cancelled.
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        lock.lock();
+        try {
+            if (timeout.slot < 0) {
+                return false;
+            }
+            unlink(timeout);
+            size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the wheel on to the given time, passing the value of each timeout whose deadline has passed to the
+     * callback. The callback is run after the wheel's lock is released, so it may schedule or cancel timeouts.
+     *
+     * @param nowNanos System.nanoTime style timestamp
+     * @param expired Callback for each expired value
+     * @return Number of timeouts expired
+     */
+    public int advance(long nowNanos, Consumer<? super T> expired) {
+        long targetTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+        Timeout<T> expiredHead = null;
+        int noOfExpired = 0;
+
+        lock.lock();
+        try {
+            while (currentTick < targetTick) {
+                if (size == 0) {
+                    // Nothing to expire or redistribute, so skip straight to the target.
+                    currentTick = targetTick;
+                    break;
+                }
+                currentTick++;
+
+                // Redistribute every coarser wheel that has just turned, coarsest first so that its timeouts can
+                // land in a finer slot that is about to be redistributed.
+                int wheel = 0;
+                while (wheel + 1 < noOfWheels && (currentTick & ((1L << (wheelBits * (wheel + 1))) - 1)) == 0) {
+                    wheel++;
+                }
+                for (; wheel > 0; wheel--) {
+                    Timeout<T> timeout = detach(wheel * wheelSize + (int) ((currentTick >>> (wheelBits * wheel)) & wheelMask));
+                    while (timeout != null) {
+                        Timeout<T> next = timeout.next;
+                        link(timeout);
+                        timeout = next;
+                    }
+                }
+
+                Timeout<T> timeout = detach((int) (currentTick & wheelMask));
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    timeout.next = expiredHead;
+                    expiredHead = timeout;
+                    size--;
+                    noOfExpired++;
+                    timeout = next;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Detached timeouts are no longer reachable from the wheel, so their links can be walked without the lock.
+        for (Timeout<T> timeout = expiredHead; timeout != null; timeout = timeout.next) {
+            expired.accept(timeout.value);
+        }
+        return noOfExpired;
+    }
+
+    /**
+     * @return Number of timeouts scheduled and not yet expired or cancelled
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void link(Timeout<T> timeout) {
+        long ticksToGo = timeout.deadlineTick - currentTick;
+        int wheel = 0;
+        while (wheel + 1 < noOfWheels && ticksToGo >= (1L << (wheelBits * (wheel + 1)))) {
+            wheel++;
+        }
+        int slot = wheel * wheelSize + (int) ((timeout.deadlineTick >>> (wheelBits * wheel)) & wheelMask);
+
+        Timeout<T> head = slots[slot];
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[slot] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev == null) {
+            slots[timeout.slot] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.slot = -1;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Empties a slot, marking each of its timeouts as no longer scheduled.
+     *
+     * @return First timeout of the slot, the rest following through next
+     */
+    private Timeout<T> detach(int slot) {
+        Timeout<T> head = slots[slot];
+        slots[slot] = null;
+        for (Timeout<T> timeout = head; timeout != null; timeout = timeout.next) {
+            timeout.slot = -1;
+            timeout.prev = null;
+        }
+        return head;
+    }
+
+    /**
+     * Handle for a scheduled timeout, linked directly into its slot so that it can be cancelled without a search.
+     */
+    public static final class Timeout<T> {
+
+        private final T value;
+        private long deadlineTick;
+        private int slot = -1;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T value) {
+            this.value = value;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
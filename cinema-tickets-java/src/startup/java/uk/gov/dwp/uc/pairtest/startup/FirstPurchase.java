@@ -0,0 +1,56 @@
+package uk.gov.dwp.uc.pairtest.startup;
+
+import java.nio.ByteBuffer;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+/**
+ * Starts a ticket service against gateways that return straight away and makes one purchase, printing
+ * firstPurchaseLine as soon as it completes. StartupBenchmark launches this in a fresh process for each variant and
+ * times how long the line takes to appear.
+ *
+ * With the argument "train" it then goes on to make purchases through every other entry point, including rejected
+ * ones, so that an AppCDS archive written at exit holds the classes a running service loads and not only those on
+ * the first purchase's path.
+ */
+public class FirstPurchase {
+
+    public static final String firstPurchaseLine = "First purchase complete";
+
+    public static void main(String[] args) throws Exception {
+        TicketServiceImpl ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> { },
+                (accountId, totalSeatsToAllocate) -> { });
+        TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+        TicketTypeRequest child = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+        ticketService.purchaseTickets(1L, adult, child);
+        System.out.println(firstPurchaseLine);
+
+        if (args.length > 0 && args[0].equals("train")) {
+            train(ticketService, adult, child);
+        }
+    }
+
+    private static void train(TicketServiceImpl ticketService, TicketTypeRequest adult, TicketTypeRequest child)
+            throws Exception {
+        TicketTypeRequest infant = new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1);
+        try {
+            ticketService.purchaseTickets(2L, child);
+        } catch (InvalidPurchaseException e) {
+            // Expected, loads the rejection path
+        }
+        ticketService.tryPurchaseTickets(0L, adult);
+        ticketService.tryPurchaseTickets(3L, adult, child, infant);
+
+        ByteBuffer encodedOrder = ByteBuffer.allocate(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(encodedOrder, 4L, 1, 1, 1);
+        ticketService.tryPurchaseTickets(encodedOrder.flip());
+
+        ticketService.purchaseTicketsBatch(new PurchaseOrder(5L, adult), new PurchaseOrder(6L, child));
+        ticketService.purchaseTicketsAsync(7L, adult, infant).get();
+    }
+}
@@ -0,0 +1,136 @@
+package uk.gov.dwp.uc.pairtest.startup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time to first purchase for each way of starting the service, measured from launching a fresh process running
+ * FirstPurchase to it printing that the first purchase is complete. Process exit is not included.
+ *
+ * Variants:
+ * <pre>
+ *   jvm     The jar on the JVM, with the JDK's default class data sharing archive
+ *   appcds  The jar on the JVM, with the AppCDS archive from the appcds profile's training run
+ *   native  The executable from the native profile
+ * </pre>
+ * Variants whose archive or executable has not been built are skipped. Each variant is launched once before
+ * measuring, so every run reads its files from the page cache.
+ *
+ * Options, as name=value pairs:
+ * <pre>
+ *   runs=20                                   Launches measured per variant
+ *   jar=target/cinema-tickets-1.0.0.jar       Jar holding FirstPurchase, from the appcds or native profile
+ *   archive=target/cinema-tickets-1.0.0.jsa   AppCDS archive for the jar
+ *   nativeImage=target/cinema-tickets         Native executable
+ * </pre>
+ *
+ * Run with: mvn -Pappcds package && mvn -Pstartup compile exec:exec
+ */
+public class StartupBenchmark {
+
+    private final Map<String, List<String>> variants;
+    private final int noOfRuns;
+    private final PrintStream out;
+
+    public StartupBenchmark(Map<String, List<String>> variants, int noOfRuns, PrintStream out) {
+        this.variants = variants;
+        this.noOfRuns = noOfRuns;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        options.put("runs", "20");
+        options.put("jar", "target/cinema-tickets-1.0.0.jar");
+        options.put("archive", "target/cinema-tickets-1.0.0.jsa");
+        options.put("nativeImage", "target/cinema-tickets");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1 || !options.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + options.keySet());
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        Path jar = Paths.get(options.get("jar"));
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException(jar + " not found, build it with mvn -Pappcds package");
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String mainClass = FirstPurchase.class.getName();
+
+        Map<String, List<String>> variants = new LinkedHashMap<String, List<String>>();
+        variants.put("jvm", Arrays.asList(java, "-cp", jar.toString(), mainClass));
+        Path archive = Paths.get(options.get("archive"));
+        if (Files.isRegularFile(archive)) {
+            // -Xshare:on fails the launch if the archive cannot be used, for example because the jar was rebuilt
+            // after training, rather than silently measuring the jvm variant again.
+            variants.put("appcds", Arrays.asList(java, "-Xshare:on", "-XX:SharedArchiveFile=" + archive, "-cp",
+                    jar.toString(), mainClass));
+        }
+        Path nativeImage = Paths.get(options.get("nativeImage"));
+        if (Files.isExecutable(nativeImage)) {
+            variants.put("native", Arrays.asList(nativeImage.toString()));
+        }
+
+        new StartupBenchmark(variants, Integer.parseInt(options.get("runs")), System.out).run();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        out.println(String.format("%-8s %6s %9s %9s %9s %9s", "variant", "runs", "min ms", "p50 ms", "p90 ms", "max ms"));
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            timeToFirstPurchase(variant.getValue());
+            long[] nanos = new long[noOfRuns];
+            for (int i = 0; i < noOfRuns; i++) {
+                nanos[i] = timeToFirstPurchase(variant.getValue());
+            }
+            Arrays.sort(nanos);
+            out.println(String.format("%-8s %6d %9.1f %9.1f %9.1f %9.1f", variant.getKey(), noOfRuns, millis(nanos[0]),
+                    millis(nanos[(noOfRuns - 1) / 2]), millis(nanos[(noOfRuns * 9 - 1) / 10]), millis(nanos[noOfRuns - 1])));
+        }
+    }
+
+    /**
+     * Launches the command and waits for it to exit.
+     *
+     * @return Nanoseconds from launching to the first purchase line being read
+     * @throws IllegalStateException if the process exits without completing a purchase or with a non-zero status.
+     */
+    private static long timeToFirstPurchase(List<String> command) throws IOException, InterruptedException {
+        List<String> output = new ArrayList<String>();
+        long startNanos = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long elapsedNanos = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (elapsedNanos < 0 && line.equals(FirstPurchase.firstPurchaseLine)) {
+                    elapsedNanos = System.nanoTime() - startNanos;
+                } else {
+                    output.add(line);
+                }
+            }
+        }
+        int exitStatus = process.waitFor();
+        if (elapsedNanos < 0 || exitStatus != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " exited with status " + exitStatus + ": "
+                    + String.join("\n", output));
+        }
+        return elapsedNanos;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,111 @@
+package thirdparty.stub;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+
+/**
+ * Stand-in for the payment and seat reservation gateways, for tests, benchmarks and the load test. Each call blocks
+ * the calling thread for the configured latency to simulate a remote call, a configurable fraction of calls take the
+ * slow latency instead, and a configurable fraction fail.
+ *
+ * The behaviour can be changed while calls are in progress, for example to simulate an outage and recovery.
+ */
+public class StubGateway implements TicketPaymentService, SeatReservationService {
+
+    /**
+     * Gateway behaviours selectable as a benchmark parameter.
+     */
+    public enum Profile {
+        // Returns immediately.
+        NOOP,
+        // Every call takes the given latency.
+        LATENCY,
+        // As LATENCY, but one call in a hundred takes a hundred times as long.
+        SLOW_TAIL,
+        // Every call takes the given latency and then fails.
+        FAILING
+    }
+
+    private volatile long latencyNanos;
+    private volatile long slowLatencyNanos;
+    private volatile double slowCallRate;
+    private volatile double failureRate;
+    private final LongAdder noOfCalls = new LongAdder();
+
+    public StubGateway(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Creates a gateway for the profile.
+     *
+     * @param profile Profile
+     * @param latencyMicros Time each call blocks for, unless the profile is NOOP
+     * @return StubGateway
+     */
+    public static StubGateway forProfile(Profile profile, long latencyMicros) {
+        StubGateway stubGateway = new StubGateway(profile == Profile.NOOP ? 0 : latencyMicros * 1000);
+        if (profile == Profile.SLOW_TAIL) {
+            stubGateway.setSlowCalls(0.01, Duration.ofNanos(latencyMicros * 1000 * 100));
+        } else if (profile == Profile.FAILING) {
+            stubGateway.setFailureRate(1.0);
+        }
+        return stubGateway;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    /**
+     * @param rate Fraction of calls, between 0 and 1, that take the slow latency
+     * @param slowLatency Time each slow call blocks for
+     */
+    public void setSlowCalls(double rate, Duration slowLatency) {
+        this.slowLatencyNanos = slowLatency.toNanos();
+        this.slowCallRate = rate;
+    }
+
+    /**
+     * @param rate Fraction of calls, between 0 and 1, that throw an IllegalStateException after their latency
+     */
+    public void setFailureRate(double rate) {
+        this.failureRate = rate;
+    }
+
+    /**
+     * @return Number of calls made, including failed calls
+     */
+    public long getNoOfCalls() {
+        return noOfCalls.sum();
+    }
+
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        simulateCall();
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        simulateCall();
+    }
+
+    private void simulateCall() {
+        noOfCalls.increment();
+        long delayNanos = latencyNanos;
+        if (slowCallRate > 0 && ThreadLocalRandom.current().nextDouble() < slowCallRate) {
+            delayNanos = slowLatencyNanos;
+        }
+        if (delayNanos > 0) {
+            LockSupport.parkNanos(delayNanos);
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IllegalStateException("Stub gateway call failed");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package uk.gov.uc.pairtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.account.AccountPurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+
+public class TestAccountPurchaseLimiter {
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger payments = new AtomicInteger();
+    private TicketServiceImpl ticketService;
+    private AccountPurchaseLimiter limiter;
+
+    @Before
+    public void setUp() {
+        // 20 tickets per account over a 10 minute window of 10 one minute buckets.
+        limiter = new AccountPurchaseLimiter(TicketServiceImpl.maxNoOfTicketsPerTransaction, Duration.ofMinutes(10),
+                10, 16, clock::get);
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> payments.incrementAndGet();
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+        ticketService.accountPurchaseLimiter = limiter;
+    }
+
+    private static TicketTypeRequest adults(int noOfTickets) {
+        return new TicketTypeRequest(TicketTypeRequest.Type.ADULT, noOfTickets);
+    }
+
+    @Test
+    public void testPurchaseTickets_LimitAppliesAcrossPurchases() {
+        ticketService.purchaseTickets(1L, adults(15));
+        try {
+            ticketService.purchaseTickets(1L, adults(6));
+            Assert.fail("Expected the account limit to be exceeded");
+        } catch (InvalidNumberOfTicketsException e) {
+            // Expected
+        }
+        ticketService.purchaseTickets(1L, adults(5));
+
+        Assert.assertEquals(2, payments.get());
+        Assert.assertEquals(20, limiter.getTicketsInWindow(1L));
+    }
+
+    @Test
+    public void testPurchaseTickets_InfantsNotCounted() {
+        ticketService.purchaseTickets(1L, adults(20), new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 3));
+        Assert.assertEquals(20, limiter.getTicketsInWindow(1L));
+    }
+
+    @Test
+    public void testPurchaseTickets_AccountsLimitedSeparately() {
+        ticketService.purchaseTickets(1L, adults(20));
+        ticketService.purchaseTickets(2L, adults(20));
+        Assert.assertEquals(2, payments.get());
+    }
+
+    @Test
+    public void testPurchaseTickets_TicketsExpireFromWindow() {
+        ticketService.purchaseTickets(1L, adults(10));
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+        ticketService.purchaseTickets(1L, adults(10));
+
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+        Assert.assertEquals(10, limiter.getTicketsInWindow(1L));
+        ticketService.purchaseTickets(1L, adults(10));
+    }
+
+    @Test
+    public void testPurchaseTickets_FailedPaymentReleasesTickets() {
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            throw new IllegalStateException("Payment declined");
+        };
+        try {
+            ticketService.purchaseTickets(1L, adults(20));
+            Assert.fail("Expected the payment to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertEquals(0, limiter.getTicketsInWindow(1L));
+    }
+
+    @Test
+    public void testRemoveIdleAccounts_KeepsAccountsWithTickets() {
+        ticketService.purchaseTickets(1L, adults(5));
+        limiter.removeIdleAccounts();
+        Assert.assertEquals(5, limiter.getTicketsInWindow(1L));
+    }
+
+    @Test
+    public void testRemoveIdleAccounts_RemovesAccountsWithoutTickets() {
+        for (long accountId = 1; accountId <= 100; accountId++) {
+            ticketService.purchaseTickets(accountId, adults(1));
+        }
+        Assert.assertEquals(100, limiter.getNoOfAccounts());
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        limiter.removeIdleAccounts();
+        Assert.assertEquals(0, limiter.getNoOfAccounts());
+        Assert.assertEquals(0, limiter.getTicketsInWindow(1L));
+    }
+
+    @Test
+    public void testTryAcquire_IdleAccountsForgottenOncePerWindow() {
+        limiter = new AccountPurchaseLimiter(20, Duration.ofMinutes(10), 10, 1, clock::get);
+        for (long accountId = 1; accountId <= 100; accountId++) {
+            limiter.tryAcquire(accountId, 1);
+        }
+        clock.addAndGet(Duration.ofMinutes(9).toNanos());
+        limiter.tryAcquire(101L, 1);
+        Assert.assertEquals(101, limiter.getNoOfAccounts());
+
+        // Once a window has passed the next purchase on the stripe forgets the accounts idle since
+        clock.addAndGet(Duration.ofMinutes(2).toNanos());
+        limiter.tryAcquire(102L, 1);
+        Assert.assertEquals(2, limiter.getNoOfAccounts());
+        Assert.assertEquals(1, limiter.getTicketsInWindow(101L));
+    }
+
+    @Test
+    public void testPurchaseTickets_ConcurrentPurchasesSameAccount() throws Exception {
+        int noOfThreads = 8;
+        int purchasesPerThread = 10;
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < noOfThreads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < purchasesPerThread; i++) {
+                    try {
+                        ticketService.purchaseTickets(1L, adults(1));
+                    } catch (InvalidPurchaseException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(TicketServiceImpl.maxNoOfTicketsPerTransaction, payments.get());
+        Assert.assertEquals(noOfThreads * purchasesPerThread - payments.get(), rejected.get());
+    }
+}
@@ -0,0 +1,142 @@
+package uk.gov.uc.pairtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.bulk.BulkPurchaseCheckpoint;
+import uk.gov.dwp.uc.pairtest.bulk.BulkPurchaseProcessor;
+import uk.gov.dwp.uc.pairtest.bulk.BulkPurchaseSummary;
+import uk.gov.dwp.uc.pairtest.bulk.OrderFileFormat;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+
+public class TestBulkPurchaseProcessor {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Queue<Long> paidAccounts = new ConcurrentLinkedQueue<Long>();
+    private TicketServiceImpl ticketService;
+    private Path ordersFile;
+    private Path resultsFile;
+    private Path checkpointFile;
+
+    @Before
+    public void setUp() throws IOException {
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> paidAccounts.add(accountId);
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+        ordersFile = folder.getRoot().toPath().resolve("orders");
+        resultsFile = folder.getRoot().toPath().resolve("results");
+        checkpointFile = folder.getRoot().toPath().resolve("checkpoint");
+    }
+
+    private void writeOrders(String... lines) throws IOException {
+        Files.writeString(ordersFile, String.join("\n", lines) + "\n", StandardCharsets.US_ASCII);
+    }
+
+    private List<String> readResults() throws IOException {
+        return Files.readAllLines(resultsFile, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testProcess_CsvResultsPerLine() throws IOException {
+        writeOrders("accountId,adult,child,infant", "1,2,1,0", "-5,1,0,0", "2,0,3,0", "", "3,x,0,0", "4,1,0,1\r", "5,25,0,0");
+
+        BulkPurchaseSummary summary = new BulkPurchaseProcessor(ticketService, 4)
+                .process(ordersFile, OrderFileFormat.CSV, resultsFile, checkpointFile);
+
+        Assert.assertEquals(Arrays.asList("2,SUCCESS", "3,INVALID_ACCOUNT", "4,UNACCOMPANIED_TICKETS", "6,MALFORMED",
+                "7,SUCCESS", "8,INVALID_NUMBER_OF_TICKETS"), readResults());
+        Assert.assertEquals(2, summary.getCount(PurchaseOutcome.SUCCESS));
+        Assert.assertEquals(5, summary.getNoOfOrders());
+        Assert.assertEquals(1, summary.getNoOfMalformedLines());
+        Assert.assertEquals(8, summary.getFinishedAt().getNoOfLines());
+        Assert.assertEquals(Files.size(ordersFile), summary.getFinishedAt().getOrdersOffset());
+        Assert.assertEquals(Arrays.asList(1L, 4L), paidAccounts.stream().sorted().toList());
+    }
+
+    @Test
+    public void testProcess_NdjsonKeysInAnyOrder() throws IOException {
+        writeOrders("{\"accountId\": 1, \"adult\": 2, \"child\": 1}",
+                "{ \"infant\":1, \"adult\":1, \"accountId\":2 }",
+                "{\"adult\": 1}",
+                "{\"accountId\": 3, \"adult\": 1, \"seat\": 4}",
+                "{\"accountId\": 4, \"child\": 2}");
+
+        new BulkPurchaseProcessor(ticketService, 4).process(ordersFile, OrderFileFormat.NDJSON, resultsFile, checkpointFile);
+
+        Assert.assertEquals(Arrays.asList("1,SUCCESS", "2,SUCCESS", "3,MALFORMED", "4,MALFORMED", "5,UNACCOMPANIED_TICKETS"),
+                readResults());
+    }
+
+    @Test
+    public void testProcess_ResultsInFileOrderWhenCompletedOutOfOrder() throws IOException {
+        // Earlier orders take longer, so later ones complete first.
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> LockSupport.parkNanos((20 - accountId) * 1_000_000L);
+        String[] lines = new String[20];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = i + ",1,0,0";
+        }
+        writeOrders(lines);
+
+        new BulkPurchaseProcessor(ticketService, 8).process(ordersFile, OrderFileFormat.CSV, resultsFile, checkpointFile);
+
+        List<String> results = readResults();
+        Assert.assertEquals(20, results.size());
+        for (int i = 0; i < lines.length; i++) {
+            Assert.assertEquals((i + 1) + ",SUCCESS", results.get(i));
+        }
+    }
+
+    @Test
+    public void testProcess_LinesSpanningReadsAndOverlongLine() throws IOException {
+        writeOrders("1,1,0,0", "22,2,2,2", "3," + "0".repeat(40) + "1,0,0", "44,1,1,1", "5,1,0,0");
+
+        new BulkPurchaseProcessor(ticketService, 2, 16, 1).process(ordersFile, OrderFileFormat.CSV, resultsFile, checkpointFile);
+
+        Assert.assertEquals(Arrays.asList("1,SUCCESS", "2,SUCCESS", "3,MALFORMED", "4,SUCCESS", "5,SUCCESS"), readResults());
+    }
+
+    @Test
+    public void testProcess_ResumesFromCheckpoint() throws IOException {
+        writeOrders("1,1,0,0", "2,1,0,0", "3,1,0,0", "4,0,1,0");
+        // A run stopped after the first two lines, with a result written after its last checkpoint.
+        Files.writeString(resultsFile, "1,SUCCESS\n2,SUCCESS\n3,SUCC", StandardCharsets.US_ASCII);
+        new BulkPurchaseCheckpoint(16, 2, 20).save(checkpointFile);
+
+        BulkPurchaseSummary summary = new BulkPurchaseProcessor(ticketService, 4)
+                .process(ordersFile, OrderFileFormat.CSV, resultsFile, checkpointFile);
+
+        Assert.assertEquals(Arrays.asList("1,SUCCESS", "2,SUCCESS", "3,SUCCESS", "4,UNACCOMPANIED_TICKETS"), readResults());
+        Assert.assertEquals(Arrays.asList(3L), Arrays.asList(paidAccounts.toArray()));
+        Assert.assertEquals(2, summary.getResumedFrom().getNoOfLines());
+        Assert.assertEquals(2, summary.getNoOfOrders());
+    }
+
+    @Test
+    public void testProcess_CompletedRunDoesNothingAgain() throws IOException {
+        writeOrders("1,1,0,0", "2,1,0,0");
+        BulkPurchaseProcessor processor = new BulkPurchaseProcessor(ticketService, 4);
+        processor.process(ordersFile, OrderFileFormat.CSV, resultsFile, checkpointFile);
+
+        BulkPurchaseSummary summary = processor.process(ordersFile, OrderFileFormat.CSV, resultsFile, checkpointFile);
+
+        Assert.assertEquals(0, summary.getNoOfOrders());
+        Assert.assertEquals(2, paidAccounts.size());
+        Assert.assertEquals(Arrays.asList("1,SUCCESS", "2,SUCCESS"), readResults());
+    }
+}
@@ -0,0 +1,179 @@
+package uk.gov.uc.pairtest;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.CachingTicketPriceProvider;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+
+
+public class TestCachingTicketPriceProvider {
+    private static final TicketPrices initialPrices = new TicketPrices(2000, 1000, 0);
+    private static final TicketPrices newPrices = new TicketPrices(2500, 1200, 0);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Queue<Runnable> pendingRefreshes = new ArrayDeque<Runnable>();
+    private final AtomicInteger providerCalls = new AtomicInteger();
+    private volatile TicketPrices providerPrices = initialPrices;
+    private volatile boolean providerFailing;
+    private volatile CountDownLatch providerReleased;
+
+    private CachingTicketPriceProvider cache;
+
+    @Before
+    public void setUp() {
+        // Time to live of 60s, refreshing from 50s, and serving stale prices until 90s.
+        cache = new CachingTicketPriceProvider(() -> {
+            providerCalls.incrementAndGet();
+            CountDownLatch released = providerReleased;
+            if (released != null) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (providerFailing) {
+                throw new IllegalStateException("Pricing service unavailable");
+            }
+            return providerPrices;
+        }, Duration.ofSeconds(60), Duration.ofSeconds(10), Duration.ofSeconds(30), pendingRefreshes::add, clock::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(Duration.ofSeconds(seconds).toNanos());
+    }
+
+    @Test
+    public void testGetTicketPrices_ServedFromCacheWhenFresh() {
+        providerPrices = newPrices;
+        advanceSeconds(49);
+
+        Assert.assertSame(initialPrices, cache.getTicketPrices());
+        Assert.assertEquals(1, providerCalls.get());
+        Assert.assertTrue(pendingRefreshes.isEmpty());
+    }
+
+    @Test
+    public void testGetTicketPrices_RefreshAheadInBackground() {
+        providerPrices = newPrices;
+        advanceSeconds(50);
+
+        Assert.assertSame(initialPrices, cache.getTicketPrices());
+        Assert.assertSame(initialPrices, cache.getTicketPrices());
+        Assert.assertEquals("Only one refresh at a time", 1, pendingRefreshes.size());
+
+        pendingRefreshes.poll().run();
+        Assert.assertSame(newPrices, cache.getTicketPrices());
+        Assert.assertEquals(2, providerCalls.get());
+    }
+
+    @Test
+    public void testGetTicketPrices_StaleWhileRevalidating() {
+        advanceSeconds(50);
+        cache.getTicketPrices();
+        advanceSeconds(30);
+
+        // The refresh has not completed, so the expired prices are still served without calling the provider.
+        Assert.assertTrue(cache.isStale());
+        Assert.assertSame(initialPrices, cache.getTicketPrices());
+        Assert.assertEquals(1, providerCalls.get());
+    }
+
+    @Test
+    public void testGetTicketPrices_FailedRefreshRetriedLater() {
+        providerFailing = true;
+        advanceSeconds(50);
+        cache.getTicketPrices();
+        pendingRefreshes.poll().run();
+
+        Assert.assertSame(initialPrices, cache.getTicketPrices());
+        Assert.assertTrue(pendingRefreshes.isEmpty());
+
+        providerFailing = false;
+        providerPrices = newPrices;
+        advanceSeconds(10);
+        cache.getTicketPrices();
+        pendingRefreshes.poll().run();
+        Assert.assertSame(newPrices, cache.getTicketPrices());
+    }
+
+    @Test
+    public void testGetTicketPrices_TooStaleLoadsOnCallingThread() {
+        providerPrices = newPrices;
+        advanceSeconds(91);
+
+        Assert.assertSame(newPrices, cache.getTicketPrices());
+        Assert.assertTrue(pendingRefreshes.isEmpty());
+    }
+
+    @Test
+    public void testGetTicketPrices_TooStaleAfterFailedRefresh() {
+        providerFailing = true;
+        advanceSeconds(85);
+        cache.getTicketPrices();
+        pendingRefreshes.poll().run();
+
+        // The failed refresh is not retried until 95s, but the prices are too old to serve from 90s.
+        providerFailing = false;
+        providerPrices = newPrices;
+        advanceSeconds(6);
+        Assert.assertSame(newPrices, cache.getTicketPrices());
+        Assert.assertTrue(pendingRefreshes.isEmpty());
+    }
+
+    @Test
+    public void testGetTicketPrices_TooStaleLoadedOnceForConcurrentCallers() throws Exception {
+        providerPrices = newPrices;
+        providerReleased = new CountDownLatch(1);
+        advanceSeconds(91);
+        TicketPrices[] prices = new TicketPrices[2];
+        Thread loading = new Thread(() -> prices[0] = cache.getTicketPrices());
+        Thread waiting = new Thread(() -> prices[1] = cache.getTicketPrices());
+
+        loading.start();
+        while (providerCalls.get() < 2) {
+            Thread.sleep(1);
+        }
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        providerReleased.countDown();
+        loading.join(5000);
+        waiting.join(5000);
+
+        Assert.assertEquals(2, providerCalls.get());
+        Assert.assertSame(newPrices, prices[0]);
+        Assert.assertSame(newPrices, prices[1]);
+    }
+
+    @Test
+    public void testPurchaseTickets_PricesChangedAtRuntime() {
+        AtomicInteger lastPayment = new AtomicInteger();
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> lastPayment.set(totalAmountToPay);
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+        ticketService.ticketPriceProvider = cache;
+        TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+        TicketTypeRequest child = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+        ticketService.purchaseTickets(1L, adult, child);
+        Assert.assertEquals(3000, lastPayment.get());
+
+        providerPrices = newPrices;
+        cache.refresh();
+        ticketService.purchaseTickets(1L, adult, child);
+        Assert.assertEquals(3700, lastPayment.get());
+    }
+}
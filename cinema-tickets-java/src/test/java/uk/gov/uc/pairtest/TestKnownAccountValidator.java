@@ -0,0 +1,237 @@
+package uk.gov.uc.pairtest;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.account.AccountBloomFilter;
+import uk.gov.dwp.uc.pairtest.account.AccountValidator;
+import uk.gov.dwp.uc.pairtest.account.KnownAccountValidator;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
+
+
+public class TestKnownAccountValidator {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private TicketPaymentServiceImpl ticketPaymentService;
+
+    @Mock
+    private SeatReservationServiceImpl seatReservationService;
+
+    @InjectMocks
+    private TicketServiceImpl ticketService;
+
+    private final TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static long[] accountIds(long first, int noOfAccounts) {
+        long[] accountIds = new long[noOfAccounts];
+        for (int i = 0; i < noOfAccounts; i++) {
+            accountIds[i] = first + i;
+        }
+        return accountIds;
+    }
+
+    /* ==================================================================== */
+
+    // Bloom filter
+
+    @Test
+    public void testBloomFilter_NoFalseNegatives() {
+        AccountBloomFilter filter = AccountBloomFilter.of(accountIds(1, 10000), 0.01);
+        for (long accountId = 1; accountId <= 10000; accountId++) {
+            Assert.assertTrue(filter.mightContain(accountId));
+        }
+        Assert.assertEquals(10000, filter.getNoOfAccounts());
+    }
+
+    @Test
+    public void testBloomFilter_FalsePositiveRateNearTarget() {
+        AccountBloomFilter filter = AccountBloomFilter.of(accountIds(1, 10000), 0.01);
+        int falsePositives = 0;
+        for (long accountId = 1000000; accountId < 1100000; accountId++) {
+            if (filter.mightContain(accountId)) {
+                falsePositives++;
+            }
+        }
+        // The bit array is rounded up to a power of two, so the rate is at most the target.
+        Assert.assertTrue("False positives: " + falsePositives, falsePositives < 1000);
+    }
+
+    @Test
+    public void testBloomFilter_Empty() {
+        AccountBloomFilter filter = AccountBloomFilter.of(new long[0], 0.01);
+        Assert.assertFalse(filter.mightContain(1));
+        Assert.assertEquals(512, filter.getNoOfBits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBloomFilter_InvalidFalsePositiveRate() {
+        AccountBloomFilter.of(new long[] {1}, 1.0);
+    }
+
+    @Test
+    public void testBloomFilter_LoadSnapshot() throws IOException {
+        Path snapshotFile = folder.getRoot().toPath().resolve("accounts");
+        Files.writeString(snapshotFile, "1\n 2 \n\n3\n", StandardCharsets.US_ASCII);
+
+        AccountBloomFilter filter = AccountBloomFilter.load(snapshotFile, 0.001);
+        Assert.assertEquals(3, filter.getNoOfAccounts());
+        Assert.assertTrue(filter.mightContain(2));
+        Assert.assertFalse(filter.mightContain(4));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBloomFilter_LoadMalformedSnapshot() throws IOException {
+        Path snapshotFile = folder.getRoot().toPath().resolve("accounts");
+        Files.writeString(snapshotFile, "1\nclosed\n", StandardCharsets.US_ASCII);
+        AccountBloomFilter.load(snapshotFile, 0.01);
+    }
+
+    /* ==================================================================== */
+
+    // Validator
+
+    @Test
+    public void testValidator_OnlyPossibleHitsReachAuthoritativeCheck() {
+        AccountValidator authoritativeValidator = mock(AccountValidator.class);
+        when(authoritativeValidator.isValidAccount(2)).thenReturn(false);
+        when(authoritativeValidator.isValidAccount(3)).thenReturn(true);
+        KnownAccountValidator validator = new KnownAccountValidator(AccountBloomFilter.of(new long[] {2, 3}, 0.0001),
+                authoritativeValidator);
+
+        Assert.assertFalse(validator.isValidAccount(99));
+        verify(authoritativeValidator, never()).isValidAccount(99);
+        Assert.assertFalse(validator.isValidAccount(2));
+        Assert.assertTrue(validator.isValidAccount(3));
+    }
+
+    @Test
+    public void testValidator_ReloadSwapsSnapshot() throws IOException {
+        Path snapshotFile = folder.getRoot().toPath().resolve("accounts");
+        Files.writeString(snapshotFile, "1\n", StandardCharsets.US_ASCII);
+        KnownAccountValidator validator = new KnownAccountValidator(snapshotFile, 0.0001, null);
+        Assert.assertTrue(validator.isValidAccount(1));
+        Assert.assertFalse(validator.isValidAccount(2));
+
+        Files.writeString(snapshotFile, "2\n", StandardCharsets.US_ASCII);
+        validator.reload(snapshotFile);
+        Assert.assertFalse(validator.isValidAccount(1));
+        Assert.assertTrue(validator.isValidAccount(2));
+        Assert.assertEquals(0.0001, validator.getKnownAccounts().getFalsePositiveRate(), 0);
+
+        // A failed reload keeps the current snapshot
+        Files.writeString(snapshotFile, "x\n", StandardCharsets.US_ASCII);
+        try {
+            validator.reload(snapshotFile);
+            Assert.fail("Expected the snapshot to be rejected");
+        } catch (IOException e) {
+            // Expected
+        }
+        Assert.assertTrue(validator.isValidAccount(2));
+    }
+
+    /* ==================================================================== */
+
+    // Purchases
+
+    @Test
+    public void testTryPurchaseTickets_UnknownAccountNotCharged() {
+        ticketService.accountValidator = new KnownAccountValidator(AccountBloomFilter.of(new long[] {1}, 0.0001), null);
+
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, ticketService.tryPurchaseTickets(2L, adult));
+        verify(ticketPaymentService, never()).makePayment(anyLong(), anyInt());
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, ticketService.tryPurchaseTickets(1L, adult));
+    }
+
+    @Test(expected = InvalidAccountException.class)
+    public void testPurchaseTickets_UnknownAccountThrows() {
+        ticketService.accountValidator = new KnownAccountValidator(AccountBloomFilter.of(new long[] {1}, 0.0001), null);
+        ticketService.purchaseTickets(2L, adult);
+    }
+
+    @Test
+    public void testPurchaseTicketsBatchAndAsync_UnknownAccountRejected() throws Exception {
+        ticketService.accountValidator = new KnownAccountValidator(AccountBloomFilter.of(new long[] {1}, 0.0001), null);
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(new PurchaseOrder(1L, adult), new PurchaseOrder(2L, adult));
+        Assert.assertTrue(results[0].isSuccessful());
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, PurchaseOutcome.forRejection(results[1].getRejection()));
+
+        PurchaseResult result = ticketService.purchaseTicketsAsync(2L, adult).get();
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, PurchaseOutcome.forRejection(result.getRejection()));
+        verify(ticketPaymentService, never()).makePayment(2L, 2000);
+    }
+
+    @Test
+    public void testPurchaseTicketsAsync_AuthoritativeCheckOffCallerThread() throws Exception {
+        Map<Long, Thread> checkedOn = new ConcurrentHashMap<Long, Thread>();
+        ticketService.accountValidator = new KnownAccountValidator(AccountBloomFilter.of(new long[] {1, 2}, 0.0001),
+                accountId -> {
+                    checkedOn.put(accountId, Thread.currentThread());
+                    return accountId == 1;
+                });
+
+        // Certainly unknown, so rejected on the caller's thread without reaching the authoritative validator
+        CompletableFuture<PurchaseResult> unknown = ticketService.purchaseTicketsAsync(3L, adult);
+        Assert.assertTrue(unknown.isDone());
+        Assert.assertFalse(checkedOn.containsKey(3L));
+
+        Assert.assertTrue(ticketService.purchaseTicketsAsync(1L, adult).get().isSuccessful());
+        PurchaseResult closed = ticketService.purchaseTicketsAsync(2L, adult).get();
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, PurchaseOutcome.forRejection(closed.getRejection()));
+        Assert.assertNotSame(Thread.currentThread(), checkedOn.get(1L));
+        Assert.assertTrue(checkedOn.get(2L).isVirtual());
+        verify(ticketPaymentService, never()).makePayment(2L, 2000);
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_AuthoritativeChecksMadeTogether() {
+        ticketService.accountValidator = new KnownAccountValidator(AccountBloomFilter.of(new long[] {1, 2, 3}, 0.0001),
+                accountId -> accountId != 2);
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(new PurchaseOrder(1L, adult),
+                new PurchaseOrder(2L, adult), new PurchaseOrder(4L, adult), new PurchaseOrder(3L, adult));
+
+        Assert.assertTrue(results[0].isSuccessful());
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, PurchaseOutcome.forRejection(results[1].getRejection()));
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, PurchaseOutcome.forRejection(results[2].getRejection()));
+        Assert.assertTrue(results[3].isSuccessful());
+        verify(ticketPaymentService).makePayment(1L, 2000);
+        verify(ticketPaymentService).makePayment(3L, 2000);
+        verify(ticketPaymentService, never()).makePayment(2L, 2000);
+    }
+}
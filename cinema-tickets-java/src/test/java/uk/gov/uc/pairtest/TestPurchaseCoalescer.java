@@ -0,0 +1,204 @@
+package uk.gov.uc.pairtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.coalesce.PurchaseCoalescer;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+import uk.gov.dwp.uc.pairtest.pricing.FixedTicketPriceProvider;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+
+
+public class TestPurchaseCoalescer {
+    private final AtomicLong clock = new AtomicLong();
+    private final Queue<Integer> payments = new ConcurrentLinkedQueue<Integer>();
+    private final Queue<Integer> reservations = new ConcurrentLinkedQueue<Integer>();
+    private TicketServiceImpl ticketService;
+    private PurchaseCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> payments.add(totalAmountToPay);
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> reservations.add(totalSeatsToAllocate);
+        // The manual clock never moves on its own, so batches are only purchased when the test advances it.
+        coalescer = new PurchaseCoalescer(ticketService, Duration.ofMillis(5), 10, Duration.ofMillis(1), clock::get);
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.close();
+    }
+
+    private static TicketTypeRequest adults(int noOfTickets) {
+        return new TicketTypeRequest(TicketTypeRequest.Type.ADULT, noOfTickets);
+    }
+
+    private static TicketTypeRequest children(int noOfTickets) {
+        return new TicketTypeRequest(TicketTypeRequest.Type.CHILD, noOfTickets);
+    }
+
+    private void endWindow() {
+        clock.addAndGet(Duration.ofMillis(10).toNanos());
+        coalescer.purchaseDueBatches();
+    }
+
+    @Test
+    public void testPurchases_MergedIntoOnePaymentAndReservation() throws Exception {
+        CompletableFuture<PurchaseResult> first = coalescer.purchaseTicketsAsync(1L, adults(2));
+        CompletableFuture<PurchaseResult> second = coalescer.purchaseTicketsAsync(1L, children(1));
+        Assert.assertFalse(first.isDone());
+
+        endWindow();
+
+        Assert.assertEquals(4000, first.get().getTotalAmountPaid());
+        Assert.assertEquals(2, first.get().getNoOfSeatsReserved());
+        Assert.assertEquals(1000, second.get().getTotalAmountPaid());
+        Assert.assertEquals(1, second.get().getNoOfSeatsReserved());
+        Assert.assertArrayEquals(new Integer[] {5000}, payments.toArray());
+        Assert.assertArrayEquals(new Integer[] {3}, reservations.toArray());
+    }
+
+    @Test
+    public void testPriceChange_SharesUsePricesCharged() throws Exception {
+        // Prices rise as soon as the merged purchase has been priced.
+        AtomicLong pricings = new AtomicLong();
+        ticketService.ticketPriceProvider = () -> (pricings.getAndIncrement() == 0)
+                ? FixedTicketPriceProvider.standardPrices : new TicketPrices(2500, 1500, 0);
+        CompletableFuture<PurchaseResult> first = coalescer.purchaseTicketsAsync(1L, adults(2));
+        CompletableFuture<PurchaseResult> second = coalescer.purchaseTicketsAsync(1L, children(1));
+
+        endWindow();
+
+        Assert.assertEquals(4000, first.get().getTotalAmountPaid());
+        Assert.assertEquals(1000, second.get().getTotalAmountPaid());
+        Assert.assertEquals(FixedTicketPriceProvider.standardPrices, second.get().getTicketPrices());
+        Assert.assertArrayEquals(new Integer[] {5000}, payments.toArray());
+    }
+
+    @Test
+    public void testUnaccompaniedChildren_RejectedWhenNotMerged() throws Exception {
+        CompletableFuture<PurchaseResult> result = coalescer.purchaseTicketsAsync(1L, children(1));
+
+        endWindow();
+
+        Assert.assertTrue(result.get().getRejection() instanceof UnaccompaniedTicketsException);
+        Assert.assertTrue(payments.isEmpty());
+    }
+
+    @Test
+    public void testAccounts_BatchedSeparately() throws Exception {
+        CompletableFuture<PurchaseResult> first = coalescer.purchaseTicketsAsync(1L, adults(1));
+        CompletableFuture<PurchaseResult> second = coalescer.purchaseTicketsAsync(2L, adults(1));
+        Assert.assertEquals(2, coalescer.getNoOfOpenBatches());
+
+        endWindow();
+
+        Assert.assertTrue(first.get().isSuccessful());
+        Assert.assertEquals(Long.valueOf(2L), second.get().getAccountId());
+        Assert.assertEquals(2, payments.size());
+    }
+
+    @Test
+    public void testMaxPurchasesPerBatch_PurchasesWithoutWaiting() throws Exception {
+        coalescer.close();
+        coalescer = new PurchaseCoalescer(ticketService, Duration.ofMillis(5), 2, Duration.ofMillis(1), clock::get);
+
+        coalescer.purchaseTicketsAsync(1L, adults(1));
+        PurchaseResult result = coalescer.purchaseTicketsAsync(1L, adults(1)).get();
+
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertArrayEquals(new Integer[] {4000}, payments.toArray());
+        Assert.assertEquals(0, coalescer.getNoOfOpenBatches());
+    }
+
+    @Test
+    public void testPurchaseOverTicketLimit_StartsNextBatch() throws Exception {
+        CompletableFuture<PurchaseResult> first = coalescer.purchaseTicketsAsync(1L, adults(15));
+        CompletableFuture<PurchaseResult> second = coalescer.purchaseTicketsAsync(1L, adults(10));
+
+        Assert.assertTrue(first.get().isSuccessful());
+        Assert.assertFalse(second.isDone());
+        endWindow();
+
+        Assert.assertTrue(second.get().isSuccessful());
+        Assert.assertArrayEquals(new Integer[] {30000, 20000}, payments.toArray());
+    }
+
+    @Test
+    public void testInvalidPurchase_RejectedWithoutJoiningBatch() throws Exception {
+        CompletableFuture<PurchaseResult> valid = coalescer.purchaseTicketsAsync(1L, adults(1));
+        PurchaseResult invalid = coalescer.purchaseTicketsAsync(1L, adults(-1)).get();
+
+        Assert.assertTrue(invalid.getRejection() instanceof InvalidNumberOfTicketsException);
+        endWindow();
+        Assert.assertEquals(2000, valid.get().getTotalAmountPaid());
+    }
+
+    @Test
+    public void testGatewayFailure_FailsEveryPurchase() throws Exception {
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            throw new IllegalStateException("Payment failed");
+        };
+        CompletableFuture<PurchaseResult> first = coalescer.purchaseTicketsAsync(1L, adults(1));
+        CompletableFuture<PurchaseResult> second = coalescer.purchaseTicketsAsync(1L, adults(1));
+
+        endWindow();
+
+        for (CompletableFuture<PurchaseResult> result : Arrays.asList(first, second)) {
+            try {
+                result.get();
+                Assert.fail("Expected the payment failure");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    @Test
+    public void testClose_PurchasesOpenBatches() throws Exception {
+        CompletableFuture<PurchaseResult> result = coalescer.purchaseTicketsAsync(1L, adults(1));
+
+        coalescer.close();
+
+        Assert.assertTrue(result.get().isSuccessful());
+        Assert.assertEquals(0, coalescer.getNoOfOpenBatches());
+    }
+
+    @Test
+    public void testClose_WhileBatchOpening() throws Exception {
+        coalescer.close();
+        // The clock is read as a batch is opened, after the purchase has seen the coalescer open, so closing from
+        // there lets close() run before the purchase joins the batch.
+        Thread caller = Thread.currentThread();
+        AtomicLong closeOnRead = new AtomicLong(-1);
+        coalescer = new PurchaseCoalescer(ticketService, Duration.ofMillis(5), 10, Duration.ofMillis(1), () -> {
+            if (Thread.currentThread() == caller && closeOnRead.getAndDecrement() == 0) {
+                coalescer.close();
+            }
+            return clock.get();
+        });
+        closeOnRead.set(0);
+
+        PurchaseResult result = coalescer.purchaseTicketsAsync(1L, adults(1)).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertArrayEquals(new Integer[] {2000}, payments.toArray());
+        Assert.assertEquals(0, coalescer.getNoOfOpenBatches());
+    }
+}
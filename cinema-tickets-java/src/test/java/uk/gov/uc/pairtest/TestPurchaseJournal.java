@@ -0,0 +1,331 @@
+package uk.gov.uc.pairtest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.journal.IncompletePurchase;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.journal.ReplayingIncompletePurchaseHandler;
+
+public class TestPurchaseJournal {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path journalPath;
+    private PurchaseJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        journalPath = temporaryFolder.getRoot().toPath().resolve("journal");
+        journal = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+    }
+
+    private PurchaseJournal open() throws IOException {
+        return PurchaseJournal.open(journalPath, 1024, Duration.ofMillis(1));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalPath)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private PurchaseJournal reopen() throws IOException {
+        journal.close();
+        journal = open();
+        return journal;
+    }
+
+    @Test
+    public void testReopen_CompletedPurchasesAreNotIncomplete() throws IOException {
+        long purchaseId = journal.recordIntent(1L, 2000, 1);
+        journal.recordPaid(purchaseId, 1L, 2000, 1);
+        journal.recordReserved(purchaseId, 1L, 2000, 1);
+        long declinedId = journal.recordIntent(2L, 1000, 1);
+        journal.recordResolved(declinedId, 2L, 1000, 1);
+
+        Assert.assertTrue(reopen().getIncompletePurchases().isEmpty());
+    }
+
+    @Test
+    public void testReopen_FindsIncompletePurchases() throws IOException {
+        long paidId = journal.recordIntent(1L, 3000, 2);
+        journal.recordPaid(paidId, 1L, 3000, 2);
+        long unconfirmedId = journal.recordIntent(2L, 2000, 1);
+
+        List<IncompletePurchase> incomplete = reopen().getIncompletePurchases();
+
+        Assert.assertEquals(2, incomplete.size());
+        Assert.assertEquals(paidId, incomplete.get(0).getPurchaseId());
+        Assert.assertEquals(1L, incomplete.get(0).getAccountId());
+        Assert.assertEquals(3000, incomplete.get(0).getTotalAmountToPay());
+        Assert.assertEquals(2, incomplete.get(0).getNoOfSeatsToReserve());
+        Assert.assertTrue(incomplete.get(0).isPaid());
+        Assert.assertEquals(unconfirmedId, incomplete.get(1).getPurchaseId());
+        Assert.assertFalse(incomplete.get(1).isPaid());
+    }
+
+    @Test
+    public void testReopen_ContinuesPurchaseIdsAndAppendsAfterExistingRecords() throws IOException {
+        long firstId = journal.recordIntent(1L, 2000, 1);
+        int remaining = journal.getRemainingRecords();
+
+        long nextId = reopen().recordIntent(2L, 2000, 1);
+
+        Assert.assertEquals(firstId + 1, nextId);
+        Assert.assertEquals(remaining - 1, journal.getRemainingRecords());
+    }
+
+    @Test
+    public void testRecordIntents_AssignsConsecutivePurchaseIds() throws IOException {
+        long[] accountIds = {1L, 2L, 3L};
+        int[] amounts = {2000, 1000, 3000};
+        int[] seats = {1, 1, 2};
+
+        long firstId = journal.recordIntents(accountIds, amounts, seats);
+        journal.recordPaid(firstId, accountIds, amounts, seats);
+        journal.recordReserved(firstId, new long[] {1L}, new int[] {2000}, new int[] {1});
+
+        List<IncompletePurchase> incomplete = reopen().getIncompletePurchases();
+        Assert.assertEquals(2, incomplete.size());
+        Assert.assertEquals(firstId + 1, incomplete.get(0).getPurchaseId());
+        Assert.assertEquals(2L, incomplete.get(0).getAccountId());
+        Assert.assertEquals(firstId + 2, incomplete.get(1).getPurchaseId());
+        Assert.assertEquals(3L, incomplete.get(1).getAccountId());
+    }
+
+    @Test
+    public void testReopen_TornRecordIsIgnoredAndOverwritten() throws IOException {
+        long purchaseId = journal.recordIntent(1L, 2000, 1);
+        journal.recordPaid(purchaseId, 1L, 2000, 1);
+        journal.close();
+
+        // Corrupt the accountId of the PAID record, as if the crash happened part way through writing it.
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            file.seek(PurchaseJournal.recordSize + 8);
+            file.writeLong(99L);
+        }
+        journal = open();
+
+        List<IncompletePurchase> incomplete = journal.getIncompletePurchases();
+        Assert.assertEquals(1, incomplete.size());
+        Assert.assertFalse(incomplete.get(0).isPaid());
+        Assert.assertEquals(1024 - 1, journal.getRemainingRecords());
+    }
+
+    @Test
+    public void testRecover_ReplaysPaidPurchasesAndPassesOnUnconfirmedPayments() throws IOException {
+        long paidId = journal.recordIntent(1L, 3000, 2);
+        journal.recordPaid(paidId, 1L, 3000, 2);
+        journal.recordIntent(2L, 2000, 1);
+        reopen();
+
+        SeatReservationService seatReservationService = mock(SeatReservationService.class);
+        List<IncompletePurchase> unconfirmedPayments = new ArrayList<IncompletePurchase>();
+        int resolved = journal.recover(new ReplayingIncompletePurchaseHandler(seatReservationService, unconfirmedPayments::add));
+
+        Assert.assertEquals(2, resolved);
+        verify(seatReservationService).reserveSeat(1L, 2);
+        verify(seatReservationService, never()).reserveSeat(2L, 1);
+        Assert.assertEquals(1, unconfirmedPayments.size());
+        Assert.assertEquals(2L, unconfirmedPayments.get(0).getAccountId());
+        Assert.assertTrue(journal.getIncompletePurchases().isEmpty());
+        Assert.assertTrue(reopen().getIncompletePurchases().isEmpty());
+    }
+
+    @Test
+    public void testRecover_FailedHandlerLeavesPurchaseIncomplete() throws IOException {
+        long paidId = journal.recordIntent(1L, 2000, 1);
+        journal.recordPaid(paidId, 1L, 2000, 1);
+        reopen();
+
+        try {
+            journal.recover(incompletePurchase -> {
+                throw new IllegalStateException("Seat booking unavailable");
+            });
+            Assert.fail("Expected the handler's exception");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(1, reopen().getIncompletePurchases().size());
+    }
+
+    @Test
+    public void testRecordIntent_RollsToNewSegmentWhenFull() throws IOException {
+        journal.close();
+        journalPath = temporaryFolder.getRoot().toPath().resolve("small");
+        journal = PurchaseJournal.open(journalPath, 2, Duration.ofMillis(1));
+
+        long firstId = journal.recordIntent(1L, 2000, 1);
+        journal.recordPaid(firstId, 1L, 2000, 1);
+        long secondId = journal.recordIntent(2L, 2000, 1);
+        journal.recordIntent(3L, 2000, 1);
+        Assert.assertEquals(2, journal.getNoOfSegments());
+        Assert.assertEquals(2, segmentFiles().size());
+
+        List<IncompletePurchase> incomplete = reopen().getIncompletePurchases();
+        Assert.assertEquals(3, incomplete.size());
+        Assert.assertEquals(firstId, incomplete.get(0).getPurchaseId());
+        Assert.assertTrue(incomplete.get(0).isPaid());
+        Assert.assertEquals(secondId, incomplete.get(1).getPurchaseId());
+        Assert.assertEquals(secondId + 2, journal.recordIntent(4L, 2000, 1));
+    }
+
+    @Test
+    public void testCompletedSegmentsAreDeletedOldestFirst() throws IOException {
+        journal.close();
+        journalPath = temporaryFolder.getRoot().toPath().resolve("small");
+        journal = PurchaseJournal.open(journalPath, 2, Duration.ofMillis(1));
+
+        long firstId = journal.recordIntent(1L, 2000, 1);
+        long secondId = journal.recordIntent(2L, 2000, 1);
+        long thirdId = journal.recordIntent(3L, 2000, 1);
+        journal.recordResolved(thirdId, 3L, 2000, 1);
+        journal.recordIntent(4L, 2000, 1);
+        Assert.assertEquals(3, journal.getNoOfSegments());
+
+        // The second segment is complete, but is kept until the first is.
+        journal.recordReserved(secondId, 2L, 2000, 1);
+        Assert.assertEquals(3, journal.getNoOfSegments());
+        journal.recordResolved(firstId, 1L, 2000, 1);
+        Assert.assertEquals(2, journal.getNoOfSegments());
+        Assert.assertEquals(2, segmentFiles().size());
+
+        List<IncompletePurchase> incomplete = reopen().getIncompletePurchases();
+        Assert.assertEquals(1, incomplete.size());
+        Assert.assertEquals(4L, incomplete.get(0).getAccountId());
+    }
+
+    @Test
+    public void testRecover_DeletesSegmentsOfResolvedPurchases() throws IOException {
+        journal.close();
+        journalPath = temporaryFolder.getRoot().toPath().resolve("small");
+        journal = PurchaseJournal.open(journalPath, 1, Duration.ofMillis(1));
+        journal.recordIntent(1L, 2000, 1);
+        journal.recordIntent(2L, 2000, 1);
+        reopen().close();
+        journal = PurchaseJournal.open(journalPath, 1, Duration.ofMillis(1));
+        Assert.assertEquals(2, journal.getNoOfSegments());
+
+        journal.recover(incompletePurchase -> { });
+        Assert.assertEquals(1, journal.getNoOfSegments());
+        Assert.assertTrue(reopen().getIncompletePurchases().isEmpty());
+    }
+
+    @Test
+    public void testPurchaseTickets_ReservationFailureLeavesPaidPurchaseInJournal() throws IOException {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = mock(TicketPaymentService.class);
+        ticketService.seatReservationService = mock(SeatReservationService.class);
+        ticketService.purchaseJournal = journal;
+        doThrow(new IllegalStateException("Seat booking unavailable"))
+                .when(ticketService.seatReservationService).reserveSeat(anyLong(), anyInt());
+
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+            Assert.fail("Expected the reservation failure");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        List<IncompletePurchase> incomplete = reopen().getIncompletePurchases();
+        Assert.assertEquals(1, incomplete.size());
+        Assert.assertTrue(incomplete.get(0).isPaid());
+        Assert.assertEquals(4000, incomplete.get(0).getTotalAmountToPay());
+        Assert.assertEquals(2, incomplete.get(0).getNoOfSeatsToReserve());
+    }
+
+    @Test
+    public void testPurchaseTickets_DeclinedPaymentIsResolved() throws IOException {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = mock(TicketPaymentService.class);
+        ticketService.seatReservationService = mock(SeatReservationService.class);
+        ticketService.purchaseJournal = journal;
+        doThrow(new IllegalStateException("Payment declined"))
+                .when(ticketService.ticketPaymentService).makePayment(eq(1L), anyInt());
+
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+            Assert.fail("Expected the payment failure");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        ticketService.purchaseTickets(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        Assert.assertTrue(reopen().getIncompletePurchases().isEmpty());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_OnlyDeclinedPaymentIsResolved() throws IOException {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = mock(TicketPaymentService.class);
+        ticketService.seatReservationService = mock(SeatReservationService.class);
+        ticketService.purchaseJournal = journal;
+        doThrow(new IllegalStateException("Payment declined"))
+                .when(ticketService.ticketPaymentService).makePayment(eq(2L), anyInt());
+
+        ticketService.purchaseTicketsBatch(new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+
+        Assert.assertTrue(reopen().getIncompletePurchases().isEmpty());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_FailedBatchPaymentLeftForReconciliation() throws IOException {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.batchTicketPaymentService = mock(BatchTicketPaymentService.class);
+        ticketService.seatReservationService = mock(SeatReservationService.class);
+        ticketService.purchaseJournal = journal;
+        when(ticketService.batchTicketPaymentService.makePayments(any(long[].class), any(int[].class)))
+                .thenThrow(new IllegalStateException("Payment gateway timed out"));
+
+        ticketService.purchaseTicketsBatch(new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)));
+
+        // Either payment may have been taken before the call failed, so neither is resolved.
+        List<IncompletePurchase> incomplete = reopen().getIncompletePurchases();
+        Assert.assertEquals(2, incomplete.size());
+        Assert.assertFalse(incomplete.get(0).isPaid());
+        Assert.assertFalse(incomplete.get(1).isPaid());
+        Assert.assertEquals(4000, incomplete.get(1).getTotalAmountToPay());
+    }
+
+}
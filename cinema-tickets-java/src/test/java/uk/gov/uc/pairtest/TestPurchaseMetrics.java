@@ -0,0 +1,178 @@
+package uk.gov.uc.pairtest;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+import uk.gov.dwp.uc.pairtest.metrics.LatencySnapshot;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetricsSnapshot;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+
+
+public class TestPurchaseMetrics {
+    private TicketServiceImpl ticketService;
+    private PurchaseMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new PurchaseMetrics();
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> { };
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+        ticketService.purchaseMetrics = metrics;
+    }
+
+    private void purchaseIgnoringRejection(long accountId, TicketTypeRequest... requests) {
+        try {
+            ticketService.purchaseTickets(accountId, requests);
+        } catch (InvalidPurchaseException e) {
+            // Counted by the metrics
+        }
+    }
+
+    @Test
+    public void testLatencyHistogram_PercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100000; nanos++) {
+            histogram.record(nanos);
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        Assert.assertEquals(100000, snapshot.getCount());
+        Assert.assertEquals(50000, snapshot.getMeanNanos());
+        Assert.assertEquals(100000, snapshot.getMaxNanos());
+        // Percentiles are the top of their bucket, so never below the true value and at most 1/16 above it.
+        Assert.assertTrue(snapshot.getP50Nanos() >= 50000 && snapshot.getP50Nanos() <= 50000 * 17 / 16);
+        Assert.assertTrue(snapshot.getP99Nanos() >= 99000 && snapshot.getP99Nanos() <= 99000 * 17 / 16);
+        Assert.assertTrue(snapshot.getP999Nanos() <= snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void testLatencyHistogram_EmptyAndExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.snapshot().getP99Nanos());
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(Long.MAX_VALUE, snapshot.getMaxNanos());
+        Assert.assertEquals(0, snapshot.getP50Nanos());
+    }
+
+    @Test
+    public void testPurchaseTickets_OutcomesCountedByType() {
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        purchaseIgnoringRejection(-1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        purchaseIgnoringRejection(1L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+        purchaseIgnoringRejection(1L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+        purchaseIgnoringRejection(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 21));
+
+        PurchaseMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(1, snapshot.getCount(PurchaseOutcome.SUCCESS));
+        Assert.assertEquals(1, snapshot.getCount(PurchaseOutcome.INVALID_ACCOUNT));
+        Assert.assertEquals(2, snapshot.getCount(PurchaseOutcome.UNACCOMPANIED_TICKETS));
+        Assert.assertEquals(1, snapshot.getCount(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS));
+        Assert.assertEquals(0, snapshot.getCount(PurchaseOutcome.GATEWAY_FAILURE));
+    }
+
+    @Test
+    public void testPurchaseTickets_StageLatenciesRecorded() {
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        purchaseIgnoringRejection(1L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+        PurchaseMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(2, snapshot.getLatency(PurchaseStage.PRICING).getCount());
+        Assert.assertEquals("Rejected purchases are validated too", 2, snapshot.getLatency(PurchaseStage.VALIDATION).getCount());
+        Assert.assertEquals("No account validator to call", 0, snapshot.getLatency(PurchaseStage.ACCOUNT_CHECK).getCount());
+        Assert.assertEquals(1, snapshot.getLatency(PurchaseStage.PAYMENT).getCount());
+        Assert.assertEquals(1, snapshot.getLatency(PurchaseStage.RESERVATION).getCount());
+        Assert.assertTrue(snapshot.getLatency(PurchaseStage.PAYMENT).getMaxNanos() >= 5000000);
+    }
+
+    @Test
+    public void testPurchaseTickets_AccountCheckTimedSeparately() {
+        ticketService.accountValidator = accountId -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return accountId != 2L;
+        };
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        purchaseIgnoringRejection(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        // Rejected by the business rules, so the account is never checked.
+        purchaseIgnoringRejection(1L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+        PurchaseMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(3, snapshot.getLatency(PurchaseStage.VALIDATION).getCount());
+        Assert.assertEquals(2, snapshot.getLatency(PurchaseStage.ACCOUNT_CHECK).getCount());
+        Assert.assertTrue(snapshot.getLatency(PurchaseStage.ACCOUNT_CHECK).getMaxNanos() >= 5000000);
+    }
+
+    @Test
+    public void testPurchaseTickets_GatewayFailureCounted() {
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> {
+            throw new IllegalStateException("Reservation unavailable");
+        };
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+            Assert.fail("Expected the reservation to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertEquals(1, metrics.snapshot().getCount(PurchaseOutcome.GATEWAY_FAILURE));
+    }
+
+    @Test
+    public void testPurchaseTickets_NothingRecordedWhenDisabled() {
+        metrics.setEnabled(false);
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        purchaseIgnoringRejection(-1L);
+
+        PurchaseMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(0, snapshot.getCount(PurchaseOutcome.SUCCESS));
+        Assert.assertEquals(0, snapshot.getCount(PurchaseOutcome.INVALID_ACCOUNT));
+        Assert.assertEquals(0, snapshot.getLatency(PurchaseStage.VALIDATION).getCount());
+    }
+
+    @Test
+    public void testRegisterMBean_AttributesReadable() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBean(mBeanServer);
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        ObjectName name = new ObjectName(PurchaseMetrics.objectName);
+        TabularData outcomeCounts = (TabularData) mBeanServer.getAttribute(name, "OutcomeCounts");
+        CompositeData success = outcomeCounts.get(new Object[] {PurchaseOutcome.SUCCESS.name()});
+        Assert.assertEquals(1L, success.get("value"));
+
+        TabularData stageLatencies = (TabularData) mBeanServer.getAttribute(name, "StageLatencies");
+        CompositeData payment = (CompositeData) stageLatencies.get(new Object[] {PurchaseStage.PAYMENT.name()}).get("value");
+        Assert.assertEquals(1L, payment.get("count"));
+
+        mBeanServer.setAttribute(name, new Attribute("Enabled", false));
+        Assert.assertFalse(metrics.isEnabled());
+    }
+}
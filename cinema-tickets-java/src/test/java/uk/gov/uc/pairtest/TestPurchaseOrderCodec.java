@@ -0,0 +1,177 @@
+package uk.gov.uc.pairtest;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+
+
+public class TestPurchaseOrderCodec {
+    private TicketPaymentService ticketPaymentService;
+    private SeatReservationService seatReservationService;
+    private TicketServiceImpl ticketService;
+
+    @Before
+    public void setUp() {
+        ticketPaymentService = mock(TicketPaymentService.class);
+        seatReservationService = mock(SeatReservationService.class);
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = ticketPaymentService;
+        ticketService.seatReservationService = seatReservationService;
+    }
+
+    private static ByteBuffer encoded(long accountId, int noOfAdultTickets, int noOfChildTickets, int noOfInfantTickets) {
+        ByteBuffer buffer = ByteBuffer.allocate(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(buffer, accountId, noOfAdultTickets, noOfChildTickets, noOfInfantTickets);
+        return buffer.flip();
+    }
+
+    @Test
+    public void testEncode_FixedWidthBigEndianLayout() {
+        ByteBuffer buffer = encoded(0x0102030405060708L, 2, 3, 4);
+
+        Assert.assertEquals(PurchaseOrderCodec.encodedLength, buffer.remaining());
+        Assert.assertEquals(0x0102030405060708L, buffer.getLong(0));
+        Assert.assertEquals(2, buffer.getInt(8));
+        Assert.assertEquals(3, buffer.getInt(12));
+        Assert.assertEquals(4, buffer.getInt(16));
+    }
+
+    @Test
+    public void testGetters_ReadInPlaceOnDirectLittleEndianBuffer() {
+        // The buffer's own byte order does not change the encoding.
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3 * PurchaseOrderCodec.encodedLength).order(ByteOrder.LITTLE_ENDIAN);
+        PurchaseOrderCodec.encode(buffer, 1L, 1, 0, 0);
+        PurchaseOrderCodec.encode(buffer, 42L, 2, 5, 1);
+        int offset = PurchaseOrderCodec.encodedLength;
+
+        Assert.assertEquals(42L, PurchaseOrderCodec.getAccountId(buffer, offset));
+        Assert.assertEquals(2, PurchaseOrderCodec.getNoOfAdultTickets(buffer, offset));
+        Assert.assertEquals(5, PurchaseOrderCodec.getNoOfChildTickets(buffer, offset));
+        Assert.assertEquals(1, PurchaseOrderCodec.getNoOfInfantTickets(buffer, offset));
+        Assert.assertEquals(2 * PurchaseOrderCodec.encodedLength, buffer.position());
+    }
+
+    @Test
+    public void testEncodePurchaseOrder_TotalsRequestsPerType() {
+        ByteBuffer buffer = ByteBuffer.allocate(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(buffer, new PurchaseOrder(7L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3)));
+        buffer.flip();
+
+        PurchaseOrder decoded = PurchaseOrderCodec.decode(buffer);
+
+        Assert.assertEquals(Long.valueOf(7L), decoded.getAccountId());
+        TicketTypeRequest[] requests = decoded.getTicketTypeRequests();
+        Assert.assertEquals(2, requests.length);
+        Assert.assertEquals(TicketTypeRequest.Type.ADULT, requests[0].getTicketType());
+        Assert.assertEquals(4, requests[0].getNoOfTickets());
+        Assert.assertEquals(TicketTypeRequest.Type.CHILD, requests[1].getTicketType());
+        Assert.assertEquals(2, requests[1].getNoOfTickets());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testEncode_BufferTooSmall() {
+        PurchaseOrderCodec.encode(ByteBuffer.allocate(PurchaseOrderCodec.encodedLength - 1), 1L, 1, 0, 0);
+    }
+
+    @Test
+    public void testPurchaseTickets_FromEncodedBuffer() {
+        ticketService.purchaseTickets(encoded(5L, 2, 1, 1));
+
+        verify(ticketPaymentService).makePayment(5L, 5000);
+        verify(seatReservationService).reserveSeat(5L, 3);
+    }
+
+    @Test
+    public void testPurchaseTickets_ConsumesEachPurchaseEvenIfRejected() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2 * PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(buffer, 1L, 0, 2, 0);
+        PurchaseOrderCodec.encode(buffer, 2L, 1, 0, 0);
+        buffer.flip();
+
+        try {
+            ticketService.purchaseTickets(buffer);
+            Assert.fail("Expected children without an adult to be rejected");
+        } catch (UnaccompaniedTicketsException e) {
+            // Expected
+        }
+        ticketService.purchaseTickets(buffer);
+
+        verify(ticketPaymentService).makePayment(2L, 2000);
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test(expected = InvalidAccountException.class)
+    public void testPurchaseTickets_NegativeAccountRejected() {
+        ticketService.purchaseTickets(encoded(-1L, 1, 0, 0));
+    }
+
+    @Test
+    public void testPurchaseTickets_NegativeCountRejected() {
+        try {
+            ticketService.purchaseTickets(encoded(1L, 3, -2, 0));
+            Assert.fail("Expected a negative count to be rejected");
+        } catch (InvalidNumberOfTicketsException e) {
+            // Expected
+        }
+        verify(ticketPaymentService, never()).makePayment(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testPurchaseTickets_NegativeRequestRejectedAsObjectAndEncoded() {
+        PurchaseOrder purchaseOrder = new PurchaseOrder(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 5),
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, -3));
+        ByteBuffer buffer = ByteBuffer.allocate(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(buffer, purchaseOrder);
+        buffer.flip();
+
+        try {
+            ticketService.purchaseTickets(purchaseOrder.getAccountId(), purchaseOrder.getTicketTypeRequests());
+            Assert.fail("Expected a negative request to be rejected");
+        } catch (InvalidNumberOfTicketsException e) {
+            // Expected
+        }
+        try {
+            ticketService.purchaseTickets(buffer);
+            Assert.fail("Expected a negative request to be rejected once encoded");
+        } catch (InvalidNumberOfTicketsException e) {
+            // Expected
+        }
+        verify(ticketPaymentService, never()).makePayment(anyLong(), anyInt());
+    }
+
+    @Test(expected = InvalidNumberOfTicketsException.class)
+    public void testPurchaseTickets_OverMaximumRejected() {
+        ticketService.purchaseTickets(encoded(1L, TicketServiceImpl.maxNoOfTicketsPerTransaction, 1, 0));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void testPurchaseTickets_TruncatedPurchase() {
+        ticketService.purchaseTickets(ByteBuffer.allocate(PurchaseOrderCodec.encodedLength - 1));
+    }
+}
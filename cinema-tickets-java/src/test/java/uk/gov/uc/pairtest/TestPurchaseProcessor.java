@@ -0,0 +1,243 @@
+package uk.gov.uc.pairtest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+import uk.gov.dwp.uc.pairtest.flow.PurchaseProcessor;
+
+
+public class TestPurchaseProcessor {
+
+    private final TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+    private final TicketTypeRequest child = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+    // Payments for account 99 wait for the gateway to be released, and payments for account 66 fail.
+    private final CountDownLatch gatewayReleased = new CountDownLatch(1);
+    private TicketServiceImpl ticketService;
+    private UpstreamSubscription upstream;
+    private RecordingSubscriber downstream;
+
+    @Before
+    public void setUp() {
+        ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> {
+            if (accountId == 99) {
+                try {
+                    gatewayReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (accountId == 66) {
+                throw new IllegalStateException("Payment gateway failed");
+            }
+        }, (accountId, totalSeatsToAllocate) -> { });
+        upstream = new UpstreamSubscription();
+        downstream = new RecordingSubscriber();
+    }
+
+    private PurchaseProcessor subscribe(int maxInFlight, long initialDemand) {
+        PurchaseProcessor processor = new PurchaseProcessor(ticketService, maxInFlight);
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        if (initialDemand > 0) {
+            downstream.subscription.request(initialDemand);
+        }
+        return processor;
+    }
+
+    /* ==================================================================== */
+
+    // Results
+
+    @Test
+    public void testResultsPublishedInArrivalOrder() throws InterruptedException {
+        PurchaseProcessor processor = subscribe(4, Long.MAX_VALUE);
+        processor.onNext(new PurchaseOrder(99L, adult));
+        processor.onNext(new PurchaseOrder(2L, child));
+        processor.onNext(new PurchaseOrder(3L, adult, child));
+
+        // The rejection is complete, but waits for the slower purchase before it
+        Assert.assertTrue(downstream.results.isEmpty());
+        gatewayReleased.countDown();
+        processor.onComplete();
+        Assert.assertTrue(downstream.completed.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(3, downstream.results.size());
+        Assert.assertEquals(99L, (long) downstream.results.get(0).getAccountId());
+        Assert.assertTrue(downstream.results.get(0).isSuccessful());
+        Assert.assertEquals(PurchaseOutcome.UNACCOMPANIED_TICKETS,
+                PurchaseOutcome.forRejection(downstream.results.get(1).getRejection()));
+        Assert.assertEquals(3000, downstream.results.get(2).getTotalAmountPaid());
+        Assert.assertNull(downstream.error);
+    }
+
+    @Test
+    public void testGatewayFailurePublishedAsRejection() throws InterruptedException {
+        PurchaseProcessor processor = subscribe(4, Long.MAX_VALUE);
+        processor.onNext(new PurchaseOrder(66L, adult));
+        processor.onNext(new PurchaseOrder(1L, adult));
+        processor.onComplete();
+        Assert.assertTrue(downstream.completed.await(5, TimeUnit.SECONDS));
+
+        Assert.assertTrue(downstream.results.get(0).getRejection() instanceof GatewayUnavailableException);
+        Assert.assertEquals("Payment gateway failed", downstream.results.get(0).getRejection().getCause().getMessage());
+        Assert.assertTrue(downstream.results.get(1).isSuccessful());
+    }
+
+    @Test
+    public void testUpstreamErrorAfterOutstandingResults() throws InterruptedException {
+        PurchaseProcessor processor = subscribe(4, Long.MAX_VALUE);
+        processor.onNext(new PurchaseOrder(99L, adult));
+        processor.onError(new IllegalStateException("Order stream lost"));
+        Assert.assertEquals(1, downstream.completed.getCount());
+
+        gatewayReleased.countDown();
+        Assert.assertTrue(downstream.completed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, downstream.results.size());
+        Assert.assertEquals("Order stream lost", downstream.error.getMessage());
+    }
+
+    /* ==================================================================== */
+
+    // Backpressure
+
+    @Test
+    public void testOrdersRequestedOnlyAsGatewayCapacityFrees() throws InterruptedException {
+        PurchaseProcessor processor = subscribe(2, Long.MAX_VALUE);
+        Assert.assertEquals(2, upstream.requested.get());
+
+        processor.onNext(new PurchaseOrder(99L, adult));
+        processor.onNext(new PurchaseOrder(99L, adult));
+        Assert.assertEquals(2, upstream.requested.get());
+        Assert.assertEquals(2, processor.getNoOfOutstanding());
+
+        gatewayReleased.countDown();
+        downstream.awaitResults(2);
+        Assert.assertEquals(4, upstream.requested.get());
+        Assert.assertEquals(0, processor.getNoOfOutstanding());
+    }
+
+    @Test
+    public void testSlowSubscriberHoldsBackOrders() {
+        PurchaseProcessor processor = subscribe(2, 0);
+        processor.onNext(new PurchaseOrder(1L, child));
+        processor.onNext(new PurchaseOrder(2L, child));
+
+        // Both are rejected straight away but are not published or replaced until there is demand
+        Assert.assertTrue(downstream.results.isEmpty());
+        Assert.assertEquals(2, upstream.requested.get());
+
+        downstream.subscription.request(1);
+        Assert.assertEquals(1, downstream.results.size());
+        Assert.assertEquals(3, upstream.requested.get());
+        Assert.assertEquals(1, processor.getNoOfOutstanding());
+    }
+
+    @Test
+    public void testMoreOrdersThanRequestedFails() throws InterruptedException {
+        PurchaseProcessor processor = subscribe(1, Long.MAX_VALUE);
+        processor.onNext(new PurchaseOrder(99L, adult));
+        processor.onNext(new PurchaseOrder(1L, adult));
+        Assert.assertTrue(upstream.cancelled.get());
+
+        gatewayReleased.countDown();
+        Assert.assertTrue(downstream.completed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, downstream.results.size());
+        Assert.assertTrue(downstream.error instanceof IllegalStateException);
+    }
+
+    /* ==================================================================== */
+
+    // Subscriptions
+
+    @Test
+    public void testCancelStopsUpstream() {
+        PurchaseProcessor processor = subscribe(2, Long.MAX_VALUE);
+        processor.onNext(new PurchaseOrder(99L, adult));
+        downstream.subscription.cancel();
+
+        Assert.assertTrue(upstream.cancelled.get());
+        Assert.assertEquals(0, processor.getNoOfOutstanding());
+        gatewayReleased.countDown();
+    }
+
+    @Test
+    public void testSecondSubscriberRejected() {
+        PurchaseProcessor processor = subscribe(2, 0);
+        RecordingSubscriber second = new RecordingSubscriber();
+        processor.subscribe(second);
+        Assert.assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxInFlight() {
+        new PurchaseProcessor(ticketService, 0);
+    }
+
+    /* ==================================================================== */
+
+    private static class UpstreamSubscription implements Flow.Subscription {
+        final AtomicLong requested = new AtomicLong();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<PurchaseResult> {
+        final List<PurchaseResult> results = new CopyOnWriteArrayList<PurchaseResult>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(PurchaseResult item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        void awaitResults(int noOfResults) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (results.size() < noOfResults && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(noOfResults, results.size());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package uk.gov.uc.pairtest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import thirdparty.stub.StubGateway;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.resilience.Bulkhead;
+import uk.gov.dwp.uc.pairtest.resilience.CircuitBreaker;
+import uk.gov.dwp.uc.pairtest.resilience.ResilientSeatReservationService;
+import uk.gov.dwp.uc.pairtest.resilience.ResilientTicketPaymentService;
+
+
+public class TestResilientGateways {
+    private final AtomicLong clock = new AtomicLong();
+    private final StubGateway stubGateway = new StubGateway(0);
+
+    private CircuitBreaker circuitBreaker(int failureThreshold) {
+        return new CircuitBreaker(failureThreshold, Duration.ofSeconds(30), clock::get);
+    }
+
+    private static Bulkhead bulkhead(int maxConcurrentCalls) {
+        return new Bulkhead(maxConcurrentCalls, Duration.ZERO);
+    }
+
+    private static void assertUnavailable(Runnable call) {
+        try {
+            call.run();
+            Assert.fail("Expected the call to be refused");
+        } catch (GatewayUnavailableException e) {
+            // Expected
+        }
+    }
+
+    private static void assertFails(Runnable call) {
+        try {
+            call.run();
+            Assert.fail("Expected the call to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker_OpensAfterConsecutiveFailures() {
+        ResilientTicketPaymentService paymentService = new ResilientTicketPaymentService(stubGateway, bulkhead(10), circuitBreaker(3));
+        stubGateway.setFailureRate(1.0);
+
+        for (int i = 0; i < 3; i++) {
+            assertFails(() -> paymentService.makePayment(1L, 2000));
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, paymentService.getCircuitBreaker().getState());
+
+        // Refused without calling the gateway.
+        assertUnavailable(() -> paymentService.makePayment(1L, 2000));
+        Assert.assertEquals(3, stubGateway.getNoOfCalls());
+    }
+
+    @Test
+    public void testCircuitBreaker_SuccessResetsFailureCount() {
+        ResilientTicketPaymentService paymentService = new ResilientTicketPaymentService(stubGateway, bulkhead(10), circuitBreaker(3));
+
+        stubGateway.setFailureRate(1.0);
+        assertFails(() -> paymentService.makePayment(1L, 2000));
+        assertFails(() -> paymentService.makePayment(1L, 2000));
+        stubGateway.setFailureRate(0);
+        paymentService.makePayment(1L, 2000);
+        stubGateway.setFailureRate(1.0);
+        assertFails(() -> paymentService.makePayment(1L, 2000));
+        assertFails(() -> paymentService.makePayment(1L, 2000));
+
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, paymentService.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void testCircuitBreaker_TrialCallAfterOpenDuration() {
+        ResilientTicketPaymentService paymentService = new ResilientTicketPaymentService(stubGateway, bulkhead(10), circuitBreaker(1));
+        stubGateway.setFailureRate(1.0);
+        assertFails(() -> paymentService.makePayment(1L, 2000));
+
+        // A failed trial opens the breaker for another open duration.
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertFails(() -> paymentService.makePayment(1L, 2000));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, paymentService.getCircuitBreaker().getState());
+        assertUnavailable(() -> paymentService.makePayment(1L, 2000));
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        stubGateway.setFailureRate(0);
+        paymentService.makePayment(1L, 2000);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, paymentService.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void testCircuitBreaker_OnlyOneTrialCall() {
+        CircuitBreaker circuitBreaker = circuitBreaker(1);
+        circuitBreaker.onFailure();
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        Assert.assertTrue(circuitBreaker.tryAcquirePermission());
+        Assert.assertFalse(circuitBreaker.tryAcquirePermission());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testBulkhead_RefusesCallsOverTheCap() throws Exception {
+        CountDownLatch inGateway = new CountDownLatch(1);
+        CountDownLatch releaseGateway = new CountDownLatch(1);
+        ResilientSeatReservationService reservationService = new ResilientSeatReservationService((accountId, totalSeatsToAllocate) -> {
+            inGateway.countDown();
+            try {
+                releaseGateway.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, bulkhead(1), circuitBreaker(3));
+
+        CompletableFuture<Void> stuckCall = CompletableFuture.runAsync(() -> reservationService.reserveSeat(1L, 1));
+        inGateway.await();
+        assertUnavailable(() -> reservationService.reserveSeat(2L, 1));
+
+        releaseGateway.countDown();
+        stuckCall.get();
+        reservationService.reserveSeat(2L, 1);
+        Assert.assertEquals(0, reservationService.getBulkhead().getConcurrentCalls());
+        // Refusals are not failures of the gateway.
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, reservationService.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void testTimeout_AbandonedCallKeepsBulkheadPlace() throws Exception {
+        ResilientSeatReservationService reservationService = new ResilientSeatReservationService(stubGateway, bulkhead(1),
+                circuitBreaker(3), Duration.ofMillis(20), Duration.ZERO);
+        stubGateway.setLatency(Duration.ofMillis(500));
+
+        long start = System.nanoTime();
+        assertUnavailable(() -> reservationService.reserveSeat(1L, 1));
+        Assert.assertTrue(System.nanoTime() - start < Duration.ofMillis(400).toNanos());
+
+        // The timed out call is still in progress, so has the only place.
+        assertUnavailable(() -> reservationService.reserveSeat(2L, 1));
+        Assert.assertEquals(1, stubGateway.getNoOfCalls());
+    }
+
+    @Test
+    public void testHedge_SecondCallAfterDelay() {
+        StubGateway slowThenFast = new StubGateway(0) {
+            private final AtomicLong calls = new AtomicLong();
+
+            @Override
+            public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+                setLatency(calls.getAndIncrement() == 0 ? Duration.ofSeconds(2) : Duration.ZERO);
+                super.reserveSeat(accountId, totalSeatsToAllocate);
+            }
+        };
+        ResilientSeatReservationService reservationService = new ResilientSeatReservationService(slowThenFast, bulkhead(10),
+                circuitBreaker(3), Duration.ofSeconds(5), Duration.ofMillis(20));
+
+        long start = System.nanoTime();
+        reservationService.reserveSeat(1L, 1);
+
+        Assert.assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        Assert.assertEquals(2, slowThenFast.getNoOfCalls());
+    }
+
+    @Test
+    public void testPurchaseTickets_OpenBreakerRejectsPurchase() {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ResilientTicketPaymentService paymentService = new ResilientTicketPaymentService(stubGateway, bulkhead(10), circuitBreaker(1));
+        ticketService.ticketPaymentService = paymentService;
+        ticketService.seatReservationService = stubGateway;
+        ticketService.purchaseMetrics = new PurchaseMetrics();
+        stubGateway.setFailureRate(1.0);
+
+        assertFails(() -> ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+        assertUnavailable(() -> ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+
+        Assert.assertEquals(1, ticketService.purchaseMetrics.snapshot().getCount(PurchaseOutcome.GATEWAY_FAILURE));
+        Assert.assertEquals(1, ticketService.purchaseMetrics.snapshot().getCount(PurchaseOutcome.GATEWAY_UNAVAILABLE));
+    }
+
+    @Test
+    public void testPurchaseTicketsAsync_OpenBreakerRejectsPurchase() throws Exception {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = new ResilientTicketPaymentService(stubGateway, bulkhead(10), circuitBreaker(1));
+        ticketService.seatReservationService = stubGateway;
+        stubGateway.setFailureRate(1.0);
+        try {
+            ticketService.purchaseTicketsAsync(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).join();
+            Assert.fail("Expected the payment failure");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        PurchaseResult result = ticketService.purchaseTicketsAsync(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).get();
+
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertTrue(result.getRejection() instanceof GatewayUnavailableException);
+    }
+
+    @Test
+    public void testPurchaseTickets_OpenReservationBreakerAfterPaymentFails() throws Exception {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ResilientSeatReservationService reservationService = new ResilientSeatReservationService(stubGateway, bulkhead(10), circuitBreaker(1));
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> { };
+        ticketService.seatReservationService = reservationService;
+        ticketService.purchaseMetrics = new PurchaseMetrics();
+        stubGateway.setFailureRate(1.0);
+        assertFails(() -> reservationService.reserveSeat(1L, 1));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, reservationService.getCircuitBreaker().getState());
+
+        // The payment has been taken, so the refused reservation is a failure and not a rejection.
+        try {
+            ticketService.tryPurchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+            Assert.fail("Expected the reservation failure");
+        } catch (ReservationFailedException e) {
+            Assert.assertTrue(e.getCause() instanceof GatewayUnavailableException);
+        }
+        Assert.assertEquals(1, ticketService.purchaseMetrics.snapshot().getCount(PurchaseOutcome.GATEWAY_FAILURE));
+        Assert.assertEquals(0, ticketService.purchaseMetrics.snapshot().getCount(PurchaseOutcome.GATEWAY_UNAVAILABLE));
+
+        CompletableFuture<PurchaseResult> result = ticketService.purchaseTicketsAsync(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        try {
+            result.join();
+            Assert.fail("Expected the reservation failure");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof ReservationFailedException);
+        }
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+        Assert.assertTrue(results[0].getFailure() instanceof ReservationFailedException);
+        Assert.assertTrue(results[0].getFailure().getCause() instanceof GatewayUnavailableException);
+    }
+}
@@ -0,0 +1,178 @@
+package uk.gov.uc.pairtest;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.FixedTicketPriceProvider;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPrices;
+import uk.gov.dwp.uc.pairtest.sales.SalesAggregator;
+import uk.gov.dwp.uc.pairtest.sales.SalesSnapshot;
+import uk.gov.dwp.uc.pairtest.sales.SalesWindow;
+
+
+public class TestSalesAggregator {
+
+    private static final long minute = 60000;
+
+    private final AtomicLong clock = new AtomicLong(100 * minute + 30000);
+    private final TicketPrices prices = FixedTicketPriceProvider.standardPrices;
+    private SalesAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new SalesAggregator(Duration.ofMinutes(1), 5, clock::get);
+    }
+
+    /* ==================================================================== */
+
+    // Buckets
+
+    @Test
+    public void testRecordSale_CountsPerType() {
+        aggregator.recordSale(prices, 2, 1, 1);
+        aggregator.recordSale(prices, 1, 0, 0);
+
+        SalesWindow current = aggregator.snapshot().getBuckets().get(4);
+        Assert.assertEquals(3, current.getNoOfTickets(TicketTypeRequest.Type.ADULT));
+        Assert.assertEquals(1, current.getNoOfTickets(TicketTypeRequest.Type.CHILD));
+        Assert.assertEquals(1, current.getNoOfTickets(TicketTypeRequest.Type.INFANT));
+        Assert.assertEquals(6000, current.getRevenueInPence(TicketTypeRequest.Type.ADULT));
+        Assert.assertEquals(1000, current.getRevenueInPence(TicketTypeRequest.Type.CHILD));
+        Assert.assertEquals(0, current.getRevenueInPence(TicketTypeRequest.Type.INFANT));
+        Assert.assertEquals(5, current.getTotalNoOfTickets());
+        Assert.assertEquals(7000, current.getTotalRevenueInPence());
+    }
+
+    @Test
+    public void testSnapshot_BucketsAlignedToClock() {
+        List<SalesWindow> buckets = aggregator.snapshot().getBuckets();
+        Assert.assertEquals(5, buckets.size());
+        Assert.assertEquals(96 * minute, buckets.get(0).getStart().toEpochMilli());
+        Assert.assertEquals(100 * minute, buckets.get(4).getStart().toEpochMilli());
+        Assert.assertEquals(101 * minute, buckets.get(4).getEnd().toEpochMilli());
+    }
+
+    @Test
+    public void testSnapshot_OldBucketsLeaveRing() {
+        aggregator.recordSale(prices, 1, 0, 0);
+        clock.addAndGet(minute);
+        aggregator.recordSale(prices, 2, 0, 0);
+
+        List<SalesWindow> buckets = aggregator.snapshot().getBuckets();
+        Assert.assertEquals(1, buckets.get(3).getTotalNoOfTickets());
+        Assert.assertEquals(2, buckets.get(4).getTotalNoOfTickets());
+
+        // The first sale's slot is reused five minutes after it
+        clock.addAndGet(4 * minute);
+        aggregator.recordSale(prices, 4, 0, 0);
+        SalesSnapshot snapshot = aggregator.snapshot();
+        Assert.assertEquals(6, snapshot.rollup(Duration.ofMinutes(5)).getTotalNoOfTickets());
+    }
+
+    @Test
+    public void testSnapshot_StaleSlotsReadAsEmpty() {
+        aggregator.recordSale(prices, 1, 0, 0);
+        // Nothing recorded for longer than the ring, so every slot holds an old bucket
+        clock.addAndGet(7 * minute);
+        SalesSnapshot snapshot = aggregator.snapshot();
+        Assert.assertEquals(0, snapshot.rollup(Duration.ofMinutes(5)).getTotalNoOfTickets());
+    }
+
+    /* ==================================================================== */
+
+    // Rollups
+
+    @Test
+    public void testRollup_SumsMostRecentBuckets() {
+        for (int i = 0; i < 3; i++) {
+            aggregator.recordSale(prices, 1, 1, 0);
+            clock.addAndGet(minute);
+        }
+        clock.addAndGet(-minute);
+        SalesSnapshot snapshot = aggregator.snapshot();
+
+        SalesWindow lastTwoMinutes = snapshot.rollup(Duration.ofMinutes(2));
+        Assert.assertEquals(4, lastTwoMinutes.getTotalNoOfTickets());
+        Assert.assertEquals(6000, lastTwoMinutes.getTotalRevenueInPence());
+        Assert.assertEquals(101 * minute, lastTwoMinutes.getStart().toEpochMilli());
+        Assert.assertEquals(103 * minute, lastTwoMinutes.getEnd().toEpochMilli());
+        // Rounded up to whole buckets
+        Assert.assertEquals(6, snapshot.rollup(Duration.ofSeconds(150)).getTotalNoOfTickets());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRollup_LongerThanRing() {
+        aggregator.snapshot().rollup(Duration.ofMinutes(6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRollup_NotPositive() {
+        aggregator.snapshot().rollup(Duration.ZERO);
+    }
+
+    /* ==================================================================== */
+
+    // Concurrency
+
+    @Test
+    public void testRecordSale_ConcurrentSalesAllCounted() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    aggregator.recordSale(prices, 1, 1, 0);
+                    if (i % 1000 == 0) {
+                        // Snapshots never block sales
+                        aggregator.snapshot();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        SalesSnapshot snapshot = aggregator.snapshot();
+        Assert.assertEquals(80000, snapshot.getBuckets().get(4).getTotalNoOfTickets());
+        Assert.assertEquals(40000 * 3000L, snapshot.getBuckets().get(4).getTotalRevenueInPence());
+    }
+
+    /* ==================================================================== */
+
+    // Purchases
+
+    @Test
+    public void testTicketService_RecordsCompletedPurchasesOnly() throws Exception {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> { };
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+        ticketService.salesAggregator = aggregator;
+        TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+        TicketTypeRequest child = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2);
+        TicketTypeRequest infant = new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1);
+
+        ticketService.purchaseTickets(1L, adult, child, infant);
+        ticketService.tryPurchaseTickets(1L, child);
+        ByteBuffer encodedOrder = ByteBuffer.allocate(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(encodedOrder, 2L, 1, 0, 0);
+        ticketService.tryPurchaseTickets(encodedOrder.flip());
+        ticketService.purchaseTicketsBatch(new PurchaseOrder(3L, adult), new PurchaseOrder(-1L, adult));
+        ticketService.purchaseTicketsAsync(4L, adult, child).get();
+
+        SalesWindow total = aggregator.snapshot().rollup(Duration.ofMinutes(5));
+        Assert.assertEquals(4, total.getNoOfTickets(TicketTypeRequest.Type.ADULT));
+        Assert.assertEquals(4, total.getNoOfTickets(TicketTypeRequest.Type.CHILD));
+        Assert.assertEquals(1, total.getNoOfTickets(TicketTypeRequest.Type.INFANT));
+        Assert.assertEquals(12000, total.getTotalRevenueInPence());
+    }
+}
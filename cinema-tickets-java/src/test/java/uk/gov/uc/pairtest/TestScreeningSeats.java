@@ -0,0 +1,152 @@
+package uk.gov.uc.pairtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import thirdparty.seatbooking.InventorySeatReservationService;
+import thirdparty.seatbooking.ScreeningSeats;
+import thirdparty.seatbooking.SeatsUnavailableException;
+
+
+public class TestScreeningSeats {
+
+    @Test
+    public void testAllocateBlock_SeatsAdjacentInOneRow() {
+        ScreeningSeats seats = new ScreeningSeats(10, 20);
+        int firstSeat = seats.allocateBlock(5);
+
+        Assert.assertTrue(firstSeat >= 0);
+        Assert.assertEquals(firstSeat / 20, (firstSeat + 4) / 20);
+        for (int seat = firstSeat; seat < firstSeat + 5; seat++) {
+            Assert.assertTrue(seats.isAllocated(seat));
+        }
+        Assert.assertEquals(195, seats.getRemainingSeats());
+    }
+
+    @Test
+    public void testAllocateBlock_FullRowOf64() {
+        ScreeningSeats seats = new ScreeningSeats(1, ScreeningSeats.maxSeatsPerRow);
+        Assert.assertEquals(0, seats.allocateBlock(ScreeningSeats.maxSeatsPerRow));
+        Assert.assertEquals(-1, seats.allocateBlock(1));
+        Assert.assertEquals(0, seats.getRemainingSeats());
+    }
+
+    @Test
+    public void testAllocateBlock_FindsGapLeftByRelease() {
+        ScreeningSeats seats = new ScreeningSeats(1, 10);
+        Assert.assertEquals(0, seats.allocateBlock(10));
+        seats.releaseBlock(3, 4);
+
+        Assert.assertEquals(-1, seats.allocateBlock(5));
+        Assert.assertEquals(3, seats.allocateBlock(4));
+        Assert.assertEquals(0, seats.getRemainingSeats());
+    }
+
+    @Test
+    public void testAllocateBlock_NoRowWithAdjacentSeats() {
+        // Four free seats, but never three together.
+        ScreeningSeats seats = new ScreeningSeats(1, 5);
+        seats.allocateBlock(5);
+        seats.releaseBlock(0, 2);
+        seats.releaseBlock(3, 2);
+        Assert.assertEquals(4, seats.getRemainingSeats());
+        Assert.assertEquals(-1, seats.allocateBlock(3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseBlock_NotAllocated() {
+        ScreeningSeats seats = new ScreeningSeats(1, 10);
+        seats.releaseBlock(0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseBlock_SpansRows() {
+        ScreeningSeats seats = new ScreeningSeats(2, 10);
+        seats.releaseBlock(8, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIsAllocated_PastLastRow() {
+        ScreeningSeats seats = new ScreeningSeats(2, 10);
+        seats.isAllocated(20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIsAllocated_Negative() {
+        // Unchecked, seat -1 would read the unused top bit of the first row.
+        ScreeningSeats seats = new ScreeningSeats(2, 10);
+        seats.isAllocated(-1);
+    }
+
+    @Test(expected = SeatsUnavailableException.class)
+    public void testReserveSeat_SoldOut() {
+        InventorySeatReservationService reservationService = new InventorySeatReservationService(new ScreeningSeats(1, 4));
+        reservationService.reserveSeat(1L, 4);
+        reservationService.reserveSeat(2L, 1);
+    }
+
+    @Test
+    public void testAllocateBlock_ConcurrentBookingsNeverOverlap() throws Exception {
+        int noOfRows = 100;
+        int seatsPerRow = 30;
+        int noOfThreads = 8;
+        ScreeningSeats seats = new ScreeningSeats(noOfRows, seatsPerRow);
+        AtomicIntegerArray owners = new AtomicIntegerArray(noOfRows * seatsPerRow);
+        AtomicInteger doubleBookings = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 1; t <= noOfThreads; t++) {
+            int owner = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Book random sized blocks, releasing some, until nothing of that size is left.
+                int failures = 0;
+                while (failures < 20) {
+                    int noOfSeats = ThreadLocalRandom.current().nextInt(1, 9);
+                    int firstSeat = seats.allocateBlock(noOfSeats);
+                    if (firstSeat < 0) {
+                        failures++;
+                        continue;
+                    }
+                    for (int seat = firstSeat; seat < firstSeat + noOfSeats; seat++) {
+                        if (!owners.compareAndSet(seat, 0, owner)) {
+                            doubleBookings.incrementAndGet();
+                        }
+                    }
+                    if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                        for (int seat = firstSeat; seat < firstSeat + noOfSeats; seat++) {
+                            owners.set(seat, 0);
+                        }
+                        seats.releaseBlock(firstSeat, noOfSeats);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, doubleBookings.get());
+        int owned = 0;
+        for (int seat = 0; seat < owners.length(); seat++) {
+            Assert.assertEquals(owners.get(seat) != 0, seats.isAllocated(seat));
+            owned += (owners.get(seat) != 0) ? 1 : 0;
+        }
+        Assert.assertEquals(seats.getCapacity() - owned, seats.getRemainingSeats());
+    }
+}
@@ -0,0 +1,180 @@
+package uk.gov.uc.pairtest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import thirdparty.seatbooking.ScreeningSeats;
+import thirdparty.seatbooking.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.hold.SeatHold;
+import uk.gov.dwp.uc.pairtest.hold.SeatHoldExpiredException;
+import uk.gov.dwp.uc.pairtest.hold.SeatHoldService;
+
+
+public class TestSeatHoldService {
+    private static final long holdNanos = Duration.ofMinutes(5).toNanos();
+
+    private final AtomicLong clock = new AtomicLong();
+    private ScreeningSeats screeningSeats;
+    private SeatHoldService seatHoldService;
+
+    @Before
+    public void setUp() {
+        screeningSeats = new ScreeningSeats(2, 10);
+        seatHoldService = new SeatHoldService(screeningSeats, Duration.ofNanos(holdNanos), Duration.ofSeconds(1), clock::get);
+    }
+
+    @After
+    public void tearDown() {
+        seatHoldService.close();
+    }
+
+    @Test
+    public void testHold_SeatsTakenUntilReleased() {
+        SeatHold seatHold = seatHoldService.hold(1L, 4);
+
+        Assert.assertEquals(SeatHold.State.HELD, seatHold.getState());
+        Assert.assertEquals(16, screeningSeats.getRemainingSeats());
+        Assert.assertEquals(1, seatHoldService.getNoOfOpenHolds());
+
+        Assert.assertTrue(seatHoldService.release(seatHold));
+        Assert.assertFalse(seatHoldService.release(seatHold));
+        Assert.assertEquals(SeatHold.State.RELEASED, seatHold.getState());
+        Assert.assertEquals(20, screeningSeats.getRemainingSeats());
+        Assert.assertEquals(0, seatHoldService.getNoOfOpenHolds());
+    }
+
+    @Test
+    public void testExpireHolds_UnconfirmedHoldsReleased() {
+        SeatHold seatHold = seatHoldService.hold(1L, 4);
+        SeatHold confirmedHold = seatHoldService.hold(2L, 2);
+        seatHoldService.confirm(confirmedHold);
+
+        clock.set(holdNanos - 1);
+        Assert.assertEquals(0, seatHoldService.expireHolds());
+        Assert.assertEquals(14, screeningSeats.getRemainingSeats());
+
+        clock.set(holdNanos + Duration.ofSeconds(1).toNanos());
+        seatHoldService.expireHolds();
+        Assert.assertEquals(SeatHold.State.EXPIRED, seatHold.getState());
+        Assert.assertEquals(SeatHold.State.CONFIRMED, confirmedHold.getState());
+        Assert.assertEquals(18, screeningSeats.getRemainingSeats());
+        Assert.assertFalse(seatHoldService.release(seatHold));
+    }
+
+    @Test(expected = SeatHoldExpiredException.class)
+    public void testConfirm_ExpiredHold() {
+        SeatHold seatHold = seatHoldService.hold(1L, 4);
+        clock.set(holdNanos + Duration.ofSeconds(1).toNanos());
+        seatHoldService.expireHolds();
+
+        seatHoldService.confirm(seatHold);
+    }
+
+    @Test
+    public void testConfirm_Twice() {
+        SeatHold seatHold = seatHoldService.hold(1L, 4);
+        seatHoldService.confirm(seatHold);
+        seatHoldService.confirm(seatHold);
+
+        Assert.assertFalse(seatHoldService.release(seatHold));
+        Assert.assertEquals(16, screeningSeats.getRemainingSeats());
+    }
+
+    @Test(expected = SeatsUnavailableException.class)
+    public void testHold_NoAdjacentSeats() {
+        seatHoldService.hold(1L, 11);
+    }
+
+    @Test
+    public void testPurchaseTickets_HoldConfirmedAfterPayment() {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            // The seats are already held while the payment is taken.
+            Assert.assertEquals(17, screeningSeats.getRemainingSeats());
+        };
+        ticketService.seatHoldService = seatHoldService;
+
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3));
+
+        Assert.assertEquals(17, screeningSeats.getRemainingSeats());
+        Assert.assertEquals(0, seatHoldService.getNoOfOpenHolds());
+    }
+
+    @Test
+    public void testPurchaseTickets_HoldReleasedWhenPaymentFails() {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            throw new IllegalStateException("Payment declined");
+        };
+        ticketService.seatHoldService = seatHoldService;
+
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3));
+            Assert.fail("Expected the payment failure");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(20, screeningSeats.getRemainingSeats());
+        Assert.assertEquals(0, seatHoldService.getNoOfOpenHolds());
+    }
+
+    @Test
+    public void testPurchaseTickets_HoldExpiredDuringPaymentReplaced() {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            clock.set(holdNanos + Duration.ofSeconds(1).toNanos());
+            seatHoldService.expireHolds();
+        };
+        ticketService.seatHoldService = seatHoldService;
+
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3));
+
+        Assert.assertEquals(17, screeningSeats.getRemainingSeats());
+        Assert.assertEquals(0, seatHoldService.getNoOfOpenHolds());
+    }
+
+    @Test
+    public void testPurchaseTickets_HoldExpiredDuringPaymentAndSeatsSold() {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            clock.set(holdNanos + Duration.ofSeconds(1).toNanos());
+            seatHoldService.expireHolds();
+            // Another purchase takes the released seats and every other block big enough.
+            seatHoldService.reserveSeat(2L, 10);
+            seatHoldService.reserveSeat(3L, 10);
+        };
+        ticketService.seatHoldService = seatHoldService;
+
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3));
+            Assert.fail("Expected the reservation to fail after payment");
+        } catch (ReservationFailedException e) {
+            Assert.assertTrue(e.getCause() instanceof SeatsUnavailableException);
+            Assert.assertTrue(e.getCause().getSuppressed()[0] instanceof SeatHoldExpiredException);
+        }
+        Assert.assertEquals(0, seatHoldService.getNoOfOpenHolds());
+    }
+
+    @Test
+    public void testPurchaseTickets_NotChargedWhenSeatsUnavailable() {
+        TicketServiceImpl ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> Assert.fail("Charged without seats");
+        ticketService.seatHoldService = seatHoldService;
+
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 11));
+            Assert.fail("Expected no seats");
+        } catch (SeatsUnavailableException e) {
+            // Expected
+        }
+    }
+}
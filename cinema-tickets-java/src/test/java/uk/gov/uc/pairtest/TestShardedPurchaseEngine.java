@@ -0,0 +1,164 @@
+package uk.gov.uc.pairtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.ring.ShardedPurchaseEngine;
+import uk.gov.dwp.uc.pairtest.ring.WaitStrategy;
+
+
+public class TestShardedPurchaseEngine {
+    private final LongAdder totalPaid = new LongAdder();
+    private final Map<Long, PurchaseOutcome> outcomes = new ConcurrentHashMap<Long, PurchaseOutcome>();
+    private final Map<Long, String> shardThreads = new ConcurrentHashMap<Long, String>();
+    private TicketServiceImpl ticketService;
+    private ShardedPurchaseEngine engine;
+
+    @Before
+    public void setUp() {
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> totalPaid.add(totalAmountToPay);
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+    }
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    private ShardedPurchaseEngine newEngine(int noOfShards, int ringSize, WaitStrategy waitStrategy, CountDownLatch done) {
+        return new ShardedPurchaseEngine(ticketService, noOfShards, ringSize, waitStrategy, (correlationId, accountId, outcome) -> {
+            outcomes.put(correlationId, outcome);
+            shardThreads.put(correlationId, Thread.currentThread().getName());
+            done.countDown();
+        });
+    }
+
+    @Test
+    public void testPublish_OutcomesForEachPurchase() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(4);
+        engine = newEngine(4, 64, WaitStrategy.PARK, done);
+
+        engine.publish(1, 10L, 2, 1, 0);
+        engine.publish(2, -1L, 1, 0, 0);
+        engine.publish(3, 11L, 0, 2, 0);
+        engine.publish(4, 12L, 21, 0, 0);
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, outcomes.get(1L));
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, outcomes.get(2L));
+        Assert.assertEquals(PurchaseOutcome.UNACCOMPANIED_TICKETS, outcomes.get(3L));
+        Assert.assertEquals(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS, outcomes.get(4L));
+        Assert.assertEquals(5000, totalPaid.sum());
+    }
+
+    @Test
+    public void testPublish_AccountAlwaysOnSameShardInOrder() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(200);
+        List<Long> account7Order = new ArrayList<Long>();
+        engine = new ShardedPurchaseEngine(ticketService, 4, 8, WaitStrategy.YIELD, (correlationId, accountId, outcome) -> {
+            // Only ever called on account 7's shard thread, so the list needs no lock.
+            if (accountId == 7) {
+                account7Order.add(correlationId);
+            }
+            done.countDown();
+        });
+
+        for (long i = 0; i < 200; i++) {
+            engine.publish(i, (i % 2 == 0) ? 7L : 1000 + i, 1, 0, 0);
+        }
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        engine.close();
+        Assert.assertEquals(100, account7Order.size());
+        for (int i = 1; i < account7Order.size(); i++) {
+            Assert.assertTrue(account7Order.get(i - 1) < account7Order.get(i));
+        }
+        Assert.assertEquals(3, engine.getShard(7L));
+    }
+
+    @Test
+    public void testPublish_ManyPublishersWrapSmallRing() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            outcomes.clear();
+            CountDownLatch done = new CountDownLatch(4000);
+            engine = newEngine(2, 4, waitStrategy, done);
+
+            List<Thread> publishers = new ArrayList<Thread>();
+            for (int p = 0; p < 4; p++) {
+                long first = p * 1000L;
+                publishers.add(Thread.startVirtualThread(() -> {
+                    for (long i = first; i < first + 1000; i++) {
+                        engine.publish(i, i, 1, 0, 0);
+                    }
+                }));
+            }
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+
+            Assert.assertTrue(waitStrategy.name(), done.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(4000, outcomes.size());
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testListenerFailure_ShardCarriesOn() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        engine = new ShardedPurchaseEngine(ticketService, 1, 8, WaitStrategy.PARK, (correlationId, accountId, outcome) -> {
+            if (correlationId == 1) {
+                done.countDown();
+                throw new IllegalStateException("Listener failed");
+            }
+            outcomes.put(correlationId, outcome);
+            done.countDown();
+        });
+
+        engine.publish(1, 10L, 1, 0, 0);
+        engine.publish(2, 10L, 1, 0, 0);
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, outcomes.get(2L));
+        Assert.assertEquals(1, engine.getNoOfListenerFailures());
+        Assert.assertEquals(4000, totalPaid.sum());
+    }
+
+    @Test
+    public void testClose_FinishesPublishedPurchases() {
+        CountDownLatch done = new CountDownLatch(100);
+        engine = newEngine(2, 128, WaitStrategy.PARK, done);
+        for (long i = 0; i < 100; i++) {
+            engine.publish(i, i, 1, 0, 0);
+        }
+
+        engine.close();
+
+        Assert.assertEquals(100, outcomes.size());
+        try {
+            engine.publish(100, 1L, 1, 0, 0);
+            Assert.fail("Expected a closed engine to refuse purchases");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRingSize_MustBePowerOfTwo() {
+        new ShardedPurchaseEngine(ticketService, 1, 100, WaitStrategy.PARK, (correlationId, accountId, outcome) -> { });
+    }
+}
@@ -0,0 +1,100 @@
+package uk.gov.uc.pairtest;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+
+public class TestTicketServiceAllocation {
+    // Enough calls for the purchase path to be compiled, and for a single allocation per call to stand out.
+    private static final int warmUpIterations = 200_000;
+    private static final int measuredIterations = 100_000;
+    // Allowance for the measurement itself, well below one byte per purchase.
+    private static final long allowedBytes = 4096;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private TicketServiceImpl ticketService;
+    private long totalPaid;
+
+    @Before
+    public void setUp() {
+        // Thread allocation counters are a HotSpot extension, skip rather than fail on other JVMs.
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        // Plain stubs rather than mocks, as mocks allocate to record each invocation.
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> totalPaid += totalAmountToPay;
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> { };
+    }
+
+    @Test
+    public void testPurchaseTickets_DoesNotAllocate() {
+        assertPurchasesDoNotAllocate();
+    }
+
+    @Test
+    public void testPurchaseTickets_DoesNotAllocateWithMetrics() {
+        ticketService.purchaseMetrics = new PurchaseMetrics();
+        assertPurchasesDoNotAllocate();
+        Assert.assertEquals(warmUpIterations + measuredIterations,
+                ticketService.purchaseMetrics.snapshot().getCount(PurchaseOutcome.SUCCESS));
+    }
+
+    @Test
+    public void testPurchaseTicketsEncoded_DoesNotAllocate() {
+        ByteBuffer encodedOrder = ByteBuffer.allocateDirect(PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(encodedOrder, 1000L, 2, 3, 1);
+
+        for (int i = 0; i < warmUpIterations; i++) {
+            ticketService.purchaseTickets(encodedOrder.flip());
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < measuredIterations; i++) {
+            ticketService.purchaseTickets(encodedOrder.flip());
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assert.assertEquals(7000L * (warmUpIterations + measuredIterations), totalPaid);
+        Assert.assertTrue("Allocated " + allocated + " bytes over " + measuredIterations + " purchases",
+                allocated < allowedBytes);
+    }
+
+    private void assertPurchasesDoNotAllocate() {
+        Long accountId = 1000L;
+        TicketTypeRequest[] requests = {
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 3),
+            new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1)
+        };
+
+        for (int i = 0; i < warmUpIterations; i++) {
+            ticketService.purchaseTickets(accountId, requests);
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < measuredIterations; i++) {
+            ticketService.purchaseTickets(accountId, requests);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assert.assertEquals(7000L * (warmUpIterations + measuredIterations), totalPaid);
+        Assert.assertTrue("Allocated " + allocated + " bytes over " + measuredIterations + " purchases",
+                allocated < allowedBytes);
+    }
+}
@@ -0,0 +1,119 @@
+package uk.gov.uc.pairtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+
+
+public class TestTicketServiceAsync {
+    private TicketServiceImpl ticketService;
+    private final AtomicInteger payments = new AtomicInteger();
+    private final AtomicInteger reservations = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        ticketService = new TicketServiceImpl();
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> payments.incrementAndGet();
+        ticketService.seatReservationService = (accountId, totalSeatsToAllocate) -> reservations.incrementAndGet();
+    }
+
+    @Test
+    public void testPurchaseTicketsAsync_Success() throws Exception {
+        PurchaseResult result = ticketService.purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(5000, result.getTotalAmountPaid());
+        Assert.assertEquals(3, result.getNoOfSeatsReserved());
+        Assert.assertEquals(1, payments.get());
+        Assert.assertEquals(1, reservations.get());
+    }
+
+    @Test
+    public void testPurchaseTicketsAsync_RejectionCompletesImmediately() {
+        CompletableFuture<PurchaseResult> future = ticketService.purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertTrue(future.join().getRejection() instanceof UnaccompaniedTicketsException);
+        Assert.assertEquals(0, payments.get());
+    }
+
+    @Test
+    public void testPurchaseTicketsAsync_GatewayFailureCompletesExceptionally() throws Exception {
+        IllegalStateException failure = new IllegalStateException("Payment declined");
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            throw failure;
+        };
+
+        CompletableFuture<PurchaseResult> future = ticketService.purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the purchase to fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+        Assert.assertEquals(0, reservations.get());
+    }
+
+    @Test
+    public void testPurchaseTicketsAsync_InFlightGatewayCallsCapped() throws Exception {
+        int maxInFlight = 3;
+        int noOfPurchases = 50;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+        CountDownLatch capReached = new CountDownLatch(maxInFlight);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ticketService.setMaxInFlightGatewayCalls(maxInFlight);
+        ticketService.ticketPaymentService = (accountId, totalAmountToPay) -> {
+            maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            capReached.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+        };
+
+        List<CompletableFuture<PurchaseResult>> futures = new ArrayList<CompletableFuture<PurchaseResult>>();
+        for (long accountId = 1; accountId <= noOfPurchases; accountId++) {
+            futures.add(ticketService.purchaseTicketsAsync(accountId,
+                    new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+        }
+
+        Assert.assertTrue(capReached.await(5, TimeUnit.SECONDS));
+        // Give purchases over the cap a chance to reach the gateway if they were not held back.
+        Thread.sleep(100);
+        Assert.assertEquals(maxInFlight, inFlight.get());
+        release.countDown();
+
+        for (CompletableFuture<PurchaseResult> future : futures) {
+            Assert.assertTrue(future.get(5, TimeUnit.SECONDS).isSuccessful());
+        }
+        Assert.assertEquals(maxInFlight, maxObserved.get());
+        Assert.assertEquals(noOfPurchases, reservations.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetMaxInFlightGatewayCalls_RejectsZero() {
+        ticketService.setMaxInFlightGatewayCalls(0);
+    }
+}
@@ -0,0 +1,198 @@
+package uk.gov.uc.pairtest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.BatchSeatReservationService;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+
+
+public class TestTicketServiceBatch {
+    @Mock
+    private TicketPaymentServiceImpl ticketPaymentService;
+
+    @Mock
+    private SeatReservationServiceImpl seatReservationService;
+
+    @Mock
+    private BatchTicketPaymentService batchTicketPaymentService;
+
+    @Mock
+    private BatchSeatReservationService batchSeatReservationService;
+
+    @InjectMocks
+    private TicketServiceImpl ticketService;
+
+    @Captor
+    private ArgumentCaptor<long[]> accountIdsCaptor;
+    @Captor
+    private ArgumentCaptor<int[]> amountsCaptor;
+    @Captor
+    private ArgumentCaptor<int[]> seatsCaptor;
+
+    private final PurchaseOrder validOrderA = new PurchaseOrder(1L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+    private final PurchaseOrder validOrderB = new PurchaseOrder(2L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1),
+            new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+    private final PurchaseOrder validOrderC = new PurchaseOrder(5L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+    private final PurchaseOrder invalidAccountOrder = new PurchaseOrder(-1L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+    private final PurchaseOrder unaccompaniedOrder = new PurchaseOrder(3L,
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+    private final PurchaseOrder tooManyTicketsOrder = new PurchaseOrder(4L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 21));
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_SingleCallPerGateway() {
+        ticketService.purchaseTicketsBatch(validOrderA, validOrderB);
+
+        verify(batchTicketPaymentService, times(1)).makePayments(accountIdsCaptor.capture(), amountsCaptor.capture());
+        verify(batchSeatReservationService, times(1)).reserveSeats(any(long[].class), seatsCaptor.capture());
+        Assert.assertArrayEquals(new long[] {1, 2}, accountIdsCaptor.getValue());
+        Assert.assertArrayEquals(new int[] {2000, 5000}, amountsCaptor.getValue());
+        Assert.assertArrayEquals(new int[] {1, 3}, seatsCaptor.getValue());
+        verify(ticketPaymentService, never()).makePayment(anyLong(), anyInt());
+        verify(seatReservationService, never()).reserveSeat(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_ResultPerOrder() {
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(
+                invalidAccountOrder, validOrderA, unaccompaniedOrder, tooManyTicketsOrder, validOrderB);
+
+        Assert.assertEquals(5, results.length);
+        Assert.assertTrue(results[0].getRejection() instanceof InvalidAccountException);
+        Assert.assertTrue(results[1].isSuccessful());
+        Assert.assertEquals(2000, results[1].getTotalAmountPaid());
+        Assert.assertEquals(1, results[1].getNoOfSeatsReserved());
+        Assert.assertTrue(results[2].getRejection() instanceof UnaccompaniedTicketsException);
+        Assert.assertTrue(results[3].getRejection() instanceof InvalidNumberOfTicketsException);
+        Assert.assertTrue(results[4].isSuccessful());
+        Assert.assertEquals(Long.valueOf(2), results[4].getAccountId());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_OnlyValidOrdersCharged() {
+        ticketService.purchaseTicketsBatch(invalidAccountOrder, validOrderA, unaccompaniedOrder, validOrderB);
+
+        verify(batchTicketPaymentService).makePayments(accountIdsCaptor.capture(), amountsCaptor.capture());
+        Assert.assertArrayEquals(new long[] {1, 2}, accountIdsCaptor.getValue());
+        Assert.assertArrayEquals(new int[] {2000, 5000}, amountsCaptor.getValue());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_NoValidOrdersNoCalls() {
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(invalidAccountOrder, unaccompaniedOrder);
+
+        Assert.assertFalse(results[0].isSuccessful());
+        Assert.assertFalse(results[1].isSuccessful());
+        verify(batchTicketPaymentService, never()).makePayments(any(long[].class), any(int[].class));
+        verify(batchSeatReservationService, never()).reserveSeats(any(long[].class), any(int[].class));
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_FallsBackToSingleCallServices() {
+        ticketService.batchTicketPaymentService = null;
+        ticketService.batchSeatReservationService = null;
+
+        ticketService.purchaseTicketsBatch(validOrderA, invalidAccountOrder, validOrderB);
+
+        verify(ticketPaymentService).makePayment(1L, 2000);
+        verify(ticketPaymentService).makePayment(2L, 5000);
+        verify(seatReservationService).reserveSeat(1L, 1);
+        verify(seatReservationService).reserveSeat(2L, 3);
+        verify(ticketPaymentService, times(2)).makePayment(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_SecondOfThreePaymentsFails() {
+        ticketService.batchTicketPaymentService = null;
+        ticketService.batchSeatReservationService = null;
+        RuntimeException failure = new RuntimeException("Payment failed");
+        doThrow(failure).when(ticketPaymentService).makePayment(2L, 5000);
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(validOrderA, validOrderB, validOrderC);
+
+        Assert.assertTrue(results[0].isSuccessful());
+        Assert.assertFalse(results[1].isSuccessful());
+        Assert.assertSame(failure, results[1].getFailure());
+        Assert.assertNull(results[1].getRejection());
+        Assert.assertTrue(results[2].isSuccessful());
+        verify(ticketPaymentService).makePayment(5L, 2000);
+        verify(seatReservationService).reserveSeat(1L, 1);
+        verify(seatReservationService).reserveSeat(5L, 1);
+        verify(seatReservationService, never()).reserveSeat(2L, 3);
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_OnlyChargedOrdersReserved() {
+        RuntimeException failure = new RuntimeException("Payment failed");
+        when(batchTicketPaymentService.makePayments(any(long[].class), any(int[].class)))
+                .thenReturn(new RuntimeException[] {null, failure, null});
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(validOrderA, validOrderB, validOrderC);
+
+        verify(batchSeatReservationService).reserveSeats(accountIdsCaptor.capture(), seatsCaptor.capture());
+        Assert.assertArrayEquals(new long[] {1, 5}, accountIdsCaptor.getValue());
+        Assert.assertArrayEquals(new int[] {1, 1}, seatsCaptor.getValue());
+        Assert.assertTrue(results[0].isSuccessful());
+        Assert.assertSame(failure, results[1].getFailure());
+        Assert.assertTrue(results[2].isSuccessful());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_ReservationFailureAfterPayment() {
+        RuntimeException failure = new RuntimeException("Reservation failed");
+        when(batchSeatReservationService.reserveSeats(any(long[].class), any(int[].class))).thenThrow(failure);
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(validOrderA, validOrderB);
+
+        Assert.assertSame(failure, results[0].getFailure());
+        Assert.assertSame(failure, results[1].getFailure());
+    }
+
+    @Test
+    public void testPurchaseTicketsBatch_ReservationRefusedAfterPaymentIsFailure() {
+        when(batchSeatReservationService.reserveSeats(any(long[].class), any(int[].class)))
+                .thenReturn(new RuntimeException[] {InvalidAccountException.stackless, null});
+
+        PurchaseResult[] results = ticketService.purchaseTicketsBatch(validOrderA, validOrderB);
+
+        Assert.assertTrue(results[0].getFailure() instanceof ReservationFailedException);
+        Assert.assertNull(results[0].getRejection());
+        Assert.assertTrue(results[1].isSuccessful());
+    }
+}
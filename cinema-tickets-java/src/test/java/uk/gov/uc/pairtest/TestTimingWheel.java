@@ -0,0 +1,97 @@
+package uk.gov.uc.pairtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.timer.TimingWheel;
+
+
+public class TestTimingWheel {
+    private static final long tick = 10;
+
+    private final TimingWheel<Long> wheel = new TimingWheel<Long>(Duration.ofNanos(tick), 0);
+    private final List<Long> expired = new ArrayList<Long>();
+
+    @Test
+    public void testAdvance_ExpiresAtDeadlineNotBefore() {
+        wheel.schedule(1L, 95);
+
+        Assert.assertEquals(0, wheel.advance(99, expired::add));
+        Assert.assertEquals(1, wheel.advance(100, expired::add));
+        Assert.assertEquals(List.of(1L), expired);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAdvance_PastDeadlineExpiresOnNextTick() {
+        wheel.advance(1000, expired::add);
+        wheel.schedule(1L, 500);
+
+        Assert.assertEquals(1, wheel.advance(1010, expired::add));
+    }
+
+    @Test
+    public void testCancel() {
+        TimingWheel.Timeout<Long> timeout = wheel.schedule(1L, 100);
+        wheel.schedule(2L, 100);
+
+        Assert.assertTrue(wheel.cancel(timeout));
+        Assert.assertFalse(wheel.cancel(timeout));
+        wheel.advance(100, expired::add);
+
+        Assert.assertEquals(List.of(2L), expired);
+    }
+
+    @Test
+    public void testCancel_AfterExpiry() {
+        TimingWheel.Timeout<Long> timeout = wheel.schedule(1L, 100);
+        wheel.advance(100, expired::add);
+
+        Assert.assertFalse(wheel.cancel(timeout));
+    }
+
+    @Test
+    public void testAdvance_DeadlinesAcrossEveryWheel() {
+        // Deadlines from one tick to beyond the last wheel, advanced in uneven steps, each expire on their own tick.
+        Random random = new Random(42);
+        long[] deadlineTicks = new long[2000];
+        for (int i = 0; i < deadlineTicks.length; i++) {
+            deadlineTicks[i] = 1 + (long) Math.pow(2, random.nextDouble() * 26);
+            wheel.schedule(deadlineTicks[i], deadlineTicks[i] * tick);
+        }
+        Arrays.sort(deadlineTicks);
+
+        long nowTick = 0;
+        int due = 0;
+        while (due < deadlineTicks.length) {
+            long previousTick = nowTick;
+            nowTick += 1 + random.nextInt(5000);
+            while (due < deadlineTicks.length && deadlineTicks[due] <= nowTick) {
+                due++;
+            }
+            long currentTick = nowTick;
+            wheel.advance(nowTick * tick, deadlineTick -> {
+                Assert.assertTrue("Expired early", deadlineTick <= currentTick);
+                Assert.assertTrue("Expired late", deadlineTick > previousTick);
+                expired.add(deadlineTick);
+            });
+            Assert.assertEquals(due, expired.size());
+        }
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAdvance_CallbackCanSchedule() {
+        wheel.schedule(1L, 100);
+        wheel.advance(100, value -> wheel.schedule(value + 1, 200));
+        wheel.advance(200, expired::add);
+
+        Assert.assertEquals(List.of(2L), expired);
+    }
+}
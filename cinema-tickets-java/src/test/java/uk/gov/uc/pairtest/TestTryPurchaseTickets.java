@@ -0,0 +1,178 @@
+package uk.gov.uc.pairtest;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.account.AccountPurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.codec.PurchaseOrderCodec;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.GatewayUnavailableException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidAccountException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidNumberOfTicketsException;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.UnaccompaniedTicketsException;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+
+public class TestTryPurchaseTickets {
+    @Mock
+    private TicketPaymentServiceImpl ticketPaymentService;
+
+    @Mock
+    private SeatReservationServiceImpl seatReservationService;
+
+    @InjectMocks
+    private TicketServiceImpl ticketService;
+
+    private final TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+    private final TicketTypeRequest child = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /* ==================================================================== */
+
+    // Outcomes
+
+    @Test
+    public void testTryPurchaseTickets_Success() {
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, ticketService.tryPurchaseTickets(1L, adult, child));
+        verify(ticketPaymentService).makePayment(1L, 3000);
+        verify(seatReservationService).reserveSeat(1L, 2);
+    }
+
+    @Test
+    public void testTryPurchaseTickets_RejectionsReturnedNotThrown() {
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, ticketService.tryPurchaseTickets(null, adult));
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, ticketService.tryPurchaseTickets(-1L, adult));
+        Assert.assertEquals(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS,
+                ticketService.tryPurchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 21)));
+        Assert.assertEquals(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS,
+                ticketService.tryPurchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, -1)));
+        Assert.assertEquals(PurchaseOutcome.INVALID_TICKET_TYPE,
+                ticketService.tryPurchaseTickets(1L, new TicketTypeRequest(null, 1)));
+        Assert.assertEquals(PurchaseOutcome.UNACCOMPANIED_TICKETS, ticketService.tryPurchaseTickets(1L, child));
+        verify(ticketPaymentService, never()).makePayment(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testTryPurchaseTicketsEncoded_Outcomes() {
+        ByteBuffer encodedOrders = ByteBuffer.allocate(3 * PurchaseOrderCodec.encodedLength);
+        PurchaseOrderCodec.encode(encodedOrders, 1L, 1, 1, 0);
+        PurchaseOrderCodec.encode(encodedOrders, -1L, 1, 0, 0);
+        PurchaseOrderCodec.encode(encodedOrders, 1L, 0, 0, 1);
+        encodedOrders.flip();
+
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, ticketService.tryPurchaseTickets(encodedOrders));
+        Assert.assertEquals(PurchaseOutcome.INVALID_ACCOUNT, ticketService.tryPurchaseTickets(encodedOrders));
+        Assert.assertEquals(PurchaseOutcome.UNACCOMPANIED_TICKETS, ticketService.tryPurchaseTickets(encodedOrders));
+        Assert.assertFalse(encodedOrders.hasRemaining());
+    }
+
+    @Test
+    public void testTryPurchaseTickets_AccountLimitExceeded() {
+        ticketService.accountPurchaseLimiter = new AccountPurchaseLimiter(2, Duration.ofMinutes(1));
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, ticketService.tryPurchaseTickets(1L, adult, child));
+        Assert.assertEquals(PurchaseOutcome.INVALID_NUMBER_OF_TICKETS, ticketService.tryPurchaseTickets(1L, adult));
+    }
+
+    @Test
+    public void testTryPurchaseTickets_GatewayUnavailable() {
+        ticketService.accountPurchaseLimiter = new AccountPurchaseLimiter(1, Duration.ofMinutes(1));
+        doThrow(GatewayUnavailableException.stackless).when(ticketPaymentService).makePayment(anyLong(), anyInt());
+
+        Assert.assertEquals(PurchaseOutcome.GATEWAY_UNAVAILABLE, ticketService.tryPurchaseTickets(1L, adult));
+        // The tickets are given back to the limit
+        doThrow(new IllegalStateException()).doNothing().when(ticketPaymentService).makePayment(anyLong(), anyInt());
+        assertGatewayFails(() -> ticketService.tryPurchaseTickets(1L, adult));
+        Assert.assertEquals(PurchaseOutcome.SUCCESS, ticketService.tryPurchaseTickets(1L, adult));
+    }
+
+    @Test
+    public void testTryPurchaseTickets_RecordsOutcomes() {
+        PurchaseMetrics metrics = new PurchaseMetrics();
+        ticketService.purchaseMetrics = metrics;
+        doThrow(new IllegalStateException()).when(seatReservationService).reserveSeat(2L, 1);
+
+        ticketService.tryPurchaseTickets(1L, adult);
+        ticketService.tryPurchaseTickets(1L, child);
+        assertGatewayFails(() -> ticketService.tryPurchaseTickets(2L, adult));
+
+        Assert.assertEquals(1, metrics.snapshot().getCount(PurchaseOutcome.SUCCESS));
+        Assert.assertEquals(1, metrics.snapshot().getCount(PurchaseOutcome.UNACCOMPANIED_TICKETS));
+        Assert.assertEquals(1, metrics.snapshot().getCount(PurchaseOutcome.GATEWAY_FAILURE));
+    }
+
+    /* ==================================================================== */
+
+    // Stackless exceptions
+
+    @Test
+    public void testPurchaseTickets_ThrowsStacklessInstance() {
+        InvalidPurchaseException first = getRejection(() -> ticketService.purchaseTickets(-1L, adult));
+        InvalidPurchaseException second = getRejection(() -> ticketService.purchaseTickets(-1L, adult));
+        Assert.assertSame(InvalidAccountException.stackless, first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0, first.getStackTrace().length);
+        Assert.assertSame(UnaccompaniedTicketsException.stackless, getRejection(() -> ticketService.purchaseTickets(1L, child)));
+    }
+
+    @Test
+    public void testGetRejection_MapsBackToOutcome() {
+        for (PurchaseOutcome outcome : PurchaseOutcome.values()) {
+            if (outcome != PurchaseOutcome.SUCCESS && outcome != PurchaseOutcome.GATEWAY_FAILURE) {
+                Assert.assertEquals(outcome, PurchaseOutcome.forRejection(outcome.getRejection()));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetRejection_SuccessIsNotARejection() {
+        PurchaseOutcome.SUCCESS.getRejection();
+    }
+
+    @Test
+    public void testStacklessInstance_IgnoresSuppressed() {
+        InvalidNumberOfTicketsException stackless = InvalidNumberOfTicketsException.stackless;
+        stackless.addSuppressed(new IllegalStateException());
+        Assert.assertEquals(0, stackless.getSuppressed().length);
+        Assert.assertTrue(new InvalidNumberOfTicketsException().getStackTrace().length > 0);
+    }
+
+    private static InvalidPurchaseException getRejection(Runnable purchase) {
+        try {
+            purchase.run();
+        } catch (InvalidPurchaseException e) {
+            return e;
+        }
+        throw new AssertionError("Expected the purchase to be rejected");
+    }
+
+    private static void assertGatewayFails(Runnable purchase) {
+        try {
+            purchase.run();
+            Assert.fail("Expected the gateway call to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}